@@ -2,8 +2,10 @@ package com.bancoai;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BancoAiApplication {
     public static void main(String[] args) {
         SpringApplication.run(BancoAiApplication.class, args);
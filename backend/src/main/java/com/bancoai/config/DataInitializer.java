@@ -1,11 +1,15 @@
 package com.bancoai.config;
 
+import com.bancoai.model.Carro;
 import com.bancoai.model.Empresa;
 import com.bancoai.model.Usuario;
 import com.bancoai.model.enums.Role;
+import com.bancoai.repository.CarroRepository;
 import com.bancoai.repository.EmpresaRepository;
 import com.bancoai.repository.UsuarioRepository;
+import com.bancoai.service.MigracaoFotoCarroService;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
@@ -14,13 +18,19 @@ public class DataInitializer implements CommandLineRunner {
     
     private final UsuarioRepository usuarioRepository;
     private final EmpresaRepository empresaRepository;
+    private final CarroRepository carroRepository;
+    private final MigracaoFotoCarroService migracaoFotoCarro;
     private final PasswordEncoder passwordEncoder;
     
     public DataInitializer(UsuarioRepository usuarioRepository, 
                           EmpresaRepository empresaRepository,
+                          CarroRepository carroRepository,
+                          MigracaoFotoCarroService migracaoFotoCarro,
                           PasswordEncoder passwordEncoder) {
         this.usuarioRepository = usuarioRepository;
         this.empresaRepository = empresaRepository;
+        this.carroRepository = carroRepository;
+        this.migracaoFotoCarro = migracaoFotoCarro;
         this.passwordEncoder = passwordEncoder;
     }
     
@@ -50,6 +60,41 @@ public class DataInitializer implements CommandLineRunner {
             usuarioRepository.save(admin);
             System.out.println("Usuário administrador criado: admin@bancoai.com / admin123");
         }
+        
+        // Preencher placa normalizada de carros cadastrados antes da coluna existir, com a mesma
+        // normalização das buscas (Carro.normalizarPlaca). Um carro por vez: uma placa duplicada
+        // na mesma empresa (ex: ABC-1234 e ABC.1234) não impede o preenchimento das demais
+        try {
+            int atualizados = 0;
+            int duplicadas = 0;
+            for (Object[] linha : carroRepository.listarSemPlacaNormalizada()) {
+                try {
+                    atualizados += carroRepository.preencherPlacaNormalizada((Long) linha[0], Carro.normalizarPlaca((String) linha[1]));
+                } catch (DataIntegrityViolationException e) {
+                    duplicadas++;
+                    System.err.println("AVISO: placa duplicada na empresa, carro " + linha[0] + " (" + linha[1] + ") sem placa normalizada");
+                }
+            }
+            if (atualizados > 0) {
+                System.out.println("Placa normalizada preenchida em " + atualizados + " carro(s)");
+            }
+            if (duplicadas > 0) {
+                System.err.println("Execute o script migracao-placa-normalizada.sql para localizar as duplicidades");
+            }
+        } catch (Exception e) {
+            System.err.println("AVISO: Não foi possível preencher placa_normalizada: " + e.getMessage());
+        }
+        
+        // Copiar fotos da tabela antiga carro_fotos para fotos_carro (uma única vez)
+        try {
+            int migradas = migracaoFotoCarro.migrarTabelaLegada();
+            if (migradas > 0) {
+                System.out.println("Fotos migradas para fotos_carro: " + migradas);
+            }
+        } catch (Exception e) {
+            System.err.println("AVISO: Não foi possível migrar as fotos de carro_fotos: " + e.getMessage());
+            System.err.println("Execute o script migracao-fotos-carro.sql manualmente.");
+        }
     }
 }
 
@@ -68,7 +68,7 @@ public class SecurityConfig {
             "http://www.bancoai.com.br"
         );
         configuration.setAllowedOrigins(allowedOrigins);
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
         configuration.setAllowCredentials(true);
         configuration.setExposedHeaders(List.of("Authorization"));
@@ -76,8 +76,9 @@ public class SecurityConfig {
         // Configuração específica para API pública (permite qualquer origem, mas requer X-API-Key)
         CorsConfiguration publicApiConfiguration = new CorsConfiguration();
         publicApiConfiguration.setAllowedOriginPatterns(List.of("*"));
-        publicApiConfiguration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        publicApiConfiguration.setAllowedHeaders(Arrays.asList("X-API-Key", "Authorization", "Content-Type"));
+        publicApiConfiguration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        publicApiConfiguration.setAllowedHeaders(Arrays.asList("X-API-Key", "Authorization", "Content-Type", "Idempotency-Key"));
+        publicApiConfiguration.setExposedHeaders(List.of("Idempotent-Replayed"));
         publicApiConfiguration.setAllowCredentials(false);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
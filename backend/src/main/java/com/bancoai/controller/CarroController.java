@@ -2,23 +2,40 @@ package com.bancoai.controller;
 
 import com.bancoai.dto.BuscaCarroDTO;
 import com.bancoai.dto.CarroDTO;
+import com.bancoai.dto.FacetasCarroDTO;
+import com.bancoai.dto.OperacaoLoteCarroDTO;
+import com.bancoai.dto.PaginaCursorDTO;
+import com.bancoai.dto.ResultadoImportacaoDTO;
+import com.bancoai.dto.ResultadoOperacaoLoteDTO;
+import com.bancoai.service.ArmazenamentoFotoService;
+import com.bancoai.service.CacheBuscaCarroService;
 import com.bancoai.service.CarroService;
+import com.bancoai.service.CatalogoVersaoService;
+import com.bancoai.service.DiretorioFragmentado;
+import com.bancoai.service.EntregaArquivoService;
+import com.bancoai.service.ExecucaoCompartilhadaService;
+import com.bancoai.service.ImportacaoCarroService;
+import com.bancoai.service.MigracaoDiretorioFotoService;
+import com.bancoai.service.OperacaoLoteCarroService;
 import com.bancoai.service.UsuarioService;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/carros")
@@ -27,11 +44,33 @@ public class CarroController {
     
     private final CarroService carroService;
     private final UsuarioService usuarioService;
-    private final String uploadDir = "uploads/carros";
+    private final CatalogoVersaoService catalogoVersao;
+    private final CacheBuscaCarroService cacheBusca;
+    private final ExecucaoCompartilhadaService execucaoCompartilhada;
+    private final ImportacaoCarroService importacaoCarroService;
+    private final OperacaoLoteCarroService operacaoLoteCarroService;
+    private final EntregaArquivoService entregaArquivo;
+    private final ArmazenamentoFotoService armazenamentoFoto;
+    private final MigracaoDiretorioFotoService migracaoDiretorioFoto;
     
-    public CarroController(CarroService carroService, UsuarioService usuarioService) {
+    public CarroController(CarroService carroService, UsuarioService usuarioService,
+                           CatalogoVersaoService catalogoVersao, CacheBuscaCarroService cacheBusca,
+                           ExecucaoCompartilhadaService execucaoCompartilhada,
+                           ImportacaoCarroService importacaoCarroService,
+                           OperacaoLoteCarroService operacaoLoteCarroService,
+                           EntregaArquivoService entregaArquivo,
+                           ArmazenamentoFotoService armazenamentoFoto,
+                           MigracaoDiretorioFotoService migracaoDiretorioFoto) {
         this.carroService = carroService;
         this.usuarioService = usuarioService;
+        this.catalogoVersao = catalogoVersao;
+        this.cacheBusca = cacheBusca;
+        this.execucaoCompartilhada = execucaoCompartilhada;
+        this.importacaoCarroService = importacaoCarroService;
+        this.operacaoLoteCarroService = operacaoLoteCarroService;
+        this.entregaArquivo = entregaArquivo;
+        this.armazenamentoFoto = armazenamentoFoto;
+        this.migracaoDiretorioFoto = migracaoDiretorioFoto;
     }
     
     private Long obterEmpresaId(Authentication authentication) {
@@ -73,14 +112,104 @@ public class CarroController {
         }
     }
     
+    /**
+     * Importação em massa: corpo em CSV (text/csv, com cabeçalho placa,quilometragem,modelo,marca[,valor,observacoes])
+     * ou NDJSON (application/x-ndjson, um carro JSON por linha). O arquivo é lido em fluxo,
+     * validado em paralelo e gravado em lotes; a resposta traz o relatório de erros por linha.
+     */
+    @PostMapping(value = "/importar", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importarCarros(
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeCriar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            boolean ndjson = contentType.toLowerCase().startsWith("application/x-ndjson");
+            ResultadoImportacaoDTO resultado = importacaoCarroService.importar(
+                    request.getInputStream(), ndjson, empresaId, email);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao importar carros: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao importar carros: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Reajuste de valor em lote: {"ids": [...]} ou {"filtro": {...}}, com tipoAjuste
+     * PERCENTUAL ou ABSOLUTO e o ajuste. Executado com UPDATEs set-based, em lotes de ids.
+     */
+    @PostMapping("/lote/valor")
+    public ResponseEntity<?> ajustarValorEmLote(
+            @RequestBody OperacaoLoteCarroDTO operacao,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeEditar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            ResultadoOperacaoLoteDTO resultado = operacaoLoteCarroService.ajustarValor(operacao, empresaId, email);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao ajustar valor em lote: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao ajustar valor em lote: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Exclusão em lote: {"ids": [...]} ou {"filtro": {...}}. Fotos e auditoria são
+     * tratadas por lote de ids, não por carro.
+     */
+    @PostMapping("/lote/excluir")
+    public ResponseEntity<?> excluirEmLote(
+            @RequestBody OperacaoLoteCarroDTO operacao,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeDeletar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            ResultadoOperacaoLoteDTO resultado = operacaoLoteCarroService.excluir(operacao, empresaId, email);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao excluir carros em lote: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao excluir carros em lote: " + e.getMessage());
+        }
+    }
+    
     @GetMapping
     public ResponseEntity<List<CarroDTO>> listarTodos(
             @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         try {
             Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            
+            // Catálogo inalterado desde a última leitura do cliente: 304 sem consultar os carros
+            String etag = catalogoVersao.gerarEtag("carros", empresaId);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            
             List<CarroDTO> carros = carroService.listarTodos(empresaId);
-            return ResponseEntity.ok(carros);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(carros);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -98,6 +227,13 @@ public class CarroController {
             }
             
             Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            
+            // Modo cursor (keyset): sem OFFSET e sem COUNT, a não ser que contarTotal seja solicitado
+            if (Boolean.TRUE.equals(buscaDTO.getUsarCursor())) {
+                PaginaCursorDTO<CarroDTO> carros = carroService.buscarComCursor(buscaDTO, empresaId);
+                return ResponseEntity.ok(carros);
+            }
+            
             Page<CarroDTO> carros = carroService.buscarComFiltros(buscaDTO, empresaId);
             return ResponseEntity.ok(carros);
         } catch (IllegalArgumentException e) {
@@ -115,6 +251,57 @@ public class CarroController {
         }
     }
     
+    /**
+     * Contagens por marca, modelo e faixas de valor/quilometragem para os filtros da busca,
+     * calculadas em uma única consulta agrupada
+     */
+    @PostMapping("/facetas")
+    public ResponseEntity<?> calcularFacetas(
+            @RequestBody(required = false) BuscaCarroDTO buscaDTO,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            FacetasCarroDTO facetas = carroService.calcularFacetas(
+                    buscaDTO != null ? buscaDTO : new BuscaCarroDTO(), empresaId);
+            return ResponseEntity.ok(facetas);
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao calcular facetas: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao calcular facetas: " + e.getMessage());
+        }
+    }
+    
+    // Métricas do cache de buscas (acertos, falhas, remoções), para dimensionar app.busca.cache.max-bytes,
+    // e do single-flight (execuções reais x requisições que aguardaram uma execução em andamento)
+    @GetMapping("/cache-busca/metricas")
+    public ResponseEntity<Map<String, Object>> obterMetricasCacheBusca(Authentication authentication) {
+        if (!usuarioService.isAdmin(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Map<String, Object> metricas = cacheBusca.obterMetricas();
+        metricas.put("execucoesSingleFlight", execucaoCompartilhada.getExecucoes());
+        metricas.put("execucoesCompartilhadas", execucaoCompartilhada.getCompartilhadas());
+        return ResponseEntity.ok(metricas);
+    }
+    
+    // Migração das fotos de carros e usuários para os subdiretórios ab/cd (ver MigracaoDiretorioFotoService)
+    @GetMapping("/armazenamento/migracao")
+    public ResponseEntity<Map<String, Object>> obterMigracaoArmazenamento(Authentication authentication) {
+        if (!usuarioService.isAdmin(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(migracaoDiretorioFoto.obterSituacao());
+    }
+    
+    @PostMapping("/armazenamento/migracao")
+    public ResponseEntity<Map<String, Object>> iniciarMigracaoArmazenamento(Authentication authentication) {
+        if (!usuarioService.isAdmin(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        HttpStatus status = migracaoDiretorioFoto.iniciar() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(migracaoDiretorioFoto.obterSituacao());
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<CarroDTO> buscarPorId(
             @PathVariable Long id,
@@ -150,6 +337,30 @@ public class CarroController {
         }
     }
     
+    /**
+     * Atualização parcial (application/merge-patch+json): só os campos enviados são alterados,
+     * ex: {"quilometragem": 52000}. null apaga valor ou observacoes.
+     */
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> atualizarCarroParcial(
+            @PathVariable Long id,
+            @RequestBody JsonNode patch,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeEditar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(carroService.atualizarParcial(id, patch, empresaId, email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Erro ao atualizar carro: " + e.getMessage());
+        }
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletarCarro(
             @PathVariable Long id,
@@ -168,31 +379,121 @@ public class CarroController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Desfaz a exclusão de um carro dentro da janela de retenção.
+     */
+    @PostMapping("/{id}/restaurar")
+    public ResponseEntity<?> restaurarCarro(
+            @PathVariable Long id,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeDeletar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(carroService.restaurarCarro(id, empresaId, email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}/fotos/{fotoId}")
+    public ResponseEntity<CarroDTO> removerFoto(
+            @PathVariable Long id,
+            @PathVariable Long fotoId,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeEditar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(carroService.removerFoto(id, fotoId, empresaId, email));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
     
-    @GetMapping("/fotos/{nomeArquivo}")
-    public ResponseEntity<Resource> obterFoto(@PathVariable String nomeArquivo) {
+    /**
+     * Inclui fotos em um carro existente (multipart/form-data, uma ou mais partes "fotos"). O corpo
+     * é lido direto da requisição: cada foto vai para o disco enquanto chega, sem passar antes pelo
+     * buffer do suporte multipart, e o tratamento das imagens roda em paralelo com o recebimento
+     * das seguintes. A transação só abre depois que todas chegaram.
+     */
+    @PostMapping(value = "/{id}/fotos", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> adicionarFotos(
+            @PathVariable Long id,
+            HttpServletRequest request,
+            Authentication authentication) {
+        String email = authentication.getName();
+        if (!usuarioService.podeEditar(email)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        List<ArmazenamentoFotoService.FotoRecebida> recebidas = List.of();
         try {
-            Path caminhoArquivo = Paths.get(uploadDir).resolve(nomeArquivo).normalize();
-            Resource resource = new UrlResource(caminhoArquivo.toUri());
-            
-            if (resource.exists() && resource.isReadable()) {
-                // Detectar o tipo de conteúdo automaticamente
-                String contentType = Files.probeContentType(caminhoArquivo);
-                if (contentType == null || !contentType.startsWith("image/")) {
-                    // Fallback para JPEG se não conseguir detectar
-                    contentType = MediaType.IMAGE_JPEG_VALUE;
-                }
-                
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + nomeArquivo + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            // empresaId vem da URL: request.getParameter faria o servlet ler o corpo multipart inteiro
+            String empresaIdSelecionada = UriComponentsBuilder.newInstance().query(request.getQueryString()).build()
+                    .getQueryParams().getFirst("empresaId");
+            Long empresaId = obterEmpresaIdParaFiltro(authentication,
+                    empresaIdSelecionada != null ? Long.valueOf(empresaIdSelecionada) : null);
+            recebidas = armazenamentoFoto.receberFotos(request.getInputStream(), request.getContentType());
+            if (recebidas.isEmpty()) {
+                return ResponseEntity.badRequest().body("Nenhuma foto enviada");
             }
-        } catch (Exception e) {
+            return ResponseEntity.ok(carroService.adicionarFotosRecebidas(id, recebidas, empresaId, email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().body("Erro ao adicionar fotos: " + e.getMessage());
+        } finally {
+            armazenamentoFoto.descartar(recebidas);
+        }
+    }
+    
+    /**
+     * Nova ordem das fotos: lista com todos os ids das fotos do carro, na ordem de exibição.
+     */
+    @PutMapping("/{id}/fotos/ordem")
+    public ResponseEntity<?> reordenarFotos(
+            @PathVariable Long id,
+            @RequestBody List<Long> fotoIds,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeEditar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(carroService.reordenarFotos(id, fotoIds, empresaId, email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    /**
+     * Foto do carro: ETag, cache imutável, Range e envio por sendfile (ver EntregaArquivoService).
+     * Com ?w= serve a variante reduzida mais próxima da largura pedida; se ela ainda não foi
+     * gerada, serve o original sem cache imutável, para a URL passar a entregar a variante depois.
+     */
+    @GetMapping("/fotos/{nomeArquivo}")
+    public void obterFoto(@PathVariable String nomeArquivo, @RequestParam(required = false) Integer w,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (w != null && w > 0) {
+            String variante = armazenamentoFoto.nomeVariante(nomeArquivo, w);
+            entregaArquivo.enviar(DiretorioFragmentado.FOTOS_CARROS, variante != null ? variante : nomeArquivo,
+                    MediaType.IMAGE_JPEG_VALUE, true, variante != null, request, response);
+            return;
+        }
+        entregaArquivo.enviar(DiretorioFragmentado.FOTOS_CARROS, nomeArquivo, MediaType.IMAGE_JPEG_VALUE, true, request, response);
+    }
 }
 
@@ -1,17 +1,35 @@
 package com.bancoai.controller;
 
+import com.bancoai.dto.AlteracaoCarroDTO;
 import com.bancoai.dto.CarroDTO;
+import com.bancoai.dto.PaginaCursorDTO;
+import com.bancoai.dto.ResultadoUpsertCarroDTO;
 import com.bancoai.service.CarroService;
+import com.bancoai.service.CatalogoVersaoService;
+import com.bancoai.service.IdempotenciaService;
+import com.bancoai.service.UpsertCarroService;
 import com.bancoai.service.UsuarioService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -21,6 +39,10 @@ public class PublicCarroController {
     
     private final CarroService carroService;
     private final UsuarioService usuarioService;
+    private final ObjectMapper objectMapper;
+    private final CatalogoVersaoService catalogoVersao;
+    private final UpsertCarroService upsertCarroService;
+    private final IdempotenciaService idempotenciaService;
     
     @Value("${server.port:8080}")
     private int serverPort;
@@ -31,9 +53,15 @@ public class PublicCarroController {
     @Value("${app.base-url:}")
     private String baseUrlOverride;
     
-    public PublicCarroController(CarroService carroService, UsuarioService usuarioService) {
+    public PublicCarroController(CarroService carroService, UsuarioService usuarioService,
+                                 ObjectMapper objectMapper, CatalogoVersaoService catalogoVersao,
+                                 UpsertCarroService upsertCarroService, IdempotenciaService idempotenciaService) {
         this.carroService = carroService;
         this.usuarioService = usuarioService;
+        this.objectMapper = objectMapper;
+        this.catalogoVersao = catalogoVersao;
+        this.upsertCarroService = upsertCarroService;
+        this.idempotenciaService = idempotenciaService;
     }
     
     /**
@@ -85,21 +113,75 @@ public class PublicCarroController {
      * GET http://localhost:8080/api/public/carros
      * Header: X-API-Key: sua_chave_api_aqui
      * 
+     * Responde com ETag fraco da versão do catálogo; com If-None-Match igual retorna 304
+     * sem consultar os carros.
+     * 
      * @param request HttpServletRequest para obter a URL base
      * @return Lista de todos os carros com informações completas
      */
     @GetMapping
-    public ResponseEntity<List<CarroDTO>> listarTodosCarros(HttpServletRequest request) {
+    public ResponseEntity<List<CarroDTO>> listarTodosCarros(HttpServletRequest request, WebRequest webRequest) {
+        String baseUrl = getBaseUrl(request);
+        
+        // As URLs das fotos dependem da URL base, então ela também entra no ETag
+        String etag = catalogoVersao.gerarEtagGlobal("publico-" + Integer.toHexString(baseUrl.hashCode()));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        
         // API pública retorna todos os carros de todas as empresas
         List<CarroDTO> carros = carroService.listarTodosPublico();
-        String baseUrl = getBaseUrl(request);
         
         // Converter URLs relativas das fotos para URLs absolutas
         List<CarroDTO> carrosComUrlsCompletas = carros.stream()
                 .map(carro -> adicionarUrlsCompletas(carro, baseUrl))
                 .collect(Collectors.toList());
         
-        return ResponseEntity.ok(carrosComUrlsCompletas);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(carrosComUrlsCompletas);
+    }
+    
+    /**
+     * Endpoint público para listar todos os carros em fluxo (NDJSON - um carro JSON por linha)
+     * Requer autenticação via X-API-Key no header
+     * 
+     * Os carros são lidos do banco com cursor e escritos direto na resposta,
+     * então o uso de memória não cresce com a quantidade de carros e o primeiro
+     * registro é enviado antes da última linha ser lida.
+     * 
+     * Exemplo de uso no n8n:
+     * GET http://localhost:8080/api/public/carros/stream
+     * Header: X-API-Key: sua_chave_api_aqui
+     * 
+     * @param request HttpServletRequest para obter a URL base
+     * @param response HttpServletResponse onde os carros são escritos
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public void listarTodosCarrosStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String baseUrl = getBaseUrl(request);
+        ObjectWriter writer = objectMapper.writerFor(CarroDTO.class);
+        
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        
+        try {
+            carroService.percorrerTodosPublico(carro -> {
+                try {
+                    out.write(writer.writeValueAsBytes(adicionarUrlsCompletas(carro, baseUrl)));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        } catch (UncheckedIOException e) {
+            // Cliente desconectou no meio da transmissão; a transação de leitura já foi encerrada
+            System.err.println("Transmissão de carros interrompida: " + e.getCause().getMessage());
+        }
     }
     
     /**
@@ -150,6 +232,80 @@ public class PublicCarroController {
         }
     }
     
+    /**
+     * Endpoint público para buscar vários carros por placa em uma única requisição
+     * Requer autenticação via X-API-Key no header
+     * 
+     * Exemplo de uso no n8n:
+     * POST http://localhost:8080/api/public/carros/placas
+     * Header: X-API-Key: sua_chave_api_aqui
+     * Content-Type: application/json
+     * Body: ["ABC-1234", "XYZ9876"]
+     * 
+     * @param placas Placas a buscar (no máximo 500)
+     * @param request HttpServletRequest para obter a URL base
+     * @return Mapa placa normalizada (ABC1234) -> carro; placas não encontradas ficam de fora
+     */
+    @PostMapping("/placas")
+    public ResponseEntity<?> buscarCarrosPorPlacas(@RequestBody List<String> placas, HttpServletRequest request) {
+        try {
+            Map<String, CarroDTO> carros = carroService.buscarPorPlacasPublico(placas);
+            String baseUrl = getBaseUrl(request);
+            carros.values().forEach(carro -> adicionarUrlsCompletas(carro, baseUrl));
+            return ResponseEntity.ok(carros);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    /**
+     * Endpoint público de alterações incrementais (feed)
+     * Requer autenticação via X-API-Key no header
+     * 
+     * Devolve os carros criados/atualizados (UPSERT, com o estado atual) e excluídos (DELETE)
+     * depois do cursor informado, em ordem de commit. A integração guarda o proximoCursor
+     * e o envia na próxima chamada; enquanto temProximo for true há mais páginas.
+     * O log guarda app.alteracoes.retencao-dias (padrão 30): um cursor mais antigo que isso
+     * recebe 410 Gone e a integração precisa refazer a carga completa.
+     * 
+     * Exemplo de uso no n8n:
+     * GET http://localhost:8080/api/public/carros/changes?since=0&tamanho=500
+     * Header: X-API-Key: sua_chave_api_aqui
+     * 
+     * @param since Cursor devolvido pela chamada anterior (0 ou vazio para ler desde o início)
+     * @param tamanho Quantidade máxima de alterações por página (1 a 1000)
+     * @param request HttpServletRequest para obter a URL base
+     * @return Página de alterações com o próximo cursor
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<?> listarAlteracoes(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "tamanho", defaultValue = "500") int tamanho,
+            HttpServletRequest request) {
+        long desde;
+        try {
+            desde = (since == null || since.isBlank()) ? 0L : Long.parseLong(since.trim());
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("Cursor inválido");
+        }
+        if (desde < 0 || tamanho < 1 || tamanho > 1000) {
+            return ResponseEntity.badRequest().body("Parâmetros inválidos: since >= 0 e tamanho entre 1 e 1000");
+        }
+        
+        PaginaCursorDTO<AlteracaoCarroDTO> pagina = carroService.listarAlteracoesPublico(desde, tamanho);
+        // Conferido depois da leitura: uma limpeza que rodou no meio também é detectada
+        if (carroService.cursorAlteracoesExpirado(desde)) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body("Cursor expirado: o log de alterações já foi limpo após ele. " +
+                          "Refaça a carga completa (GET /api/public/carros) e recomece com since=0");
+        }
+        String baseUrl = getBaseUrl(request);
+        pagina.getConteudo().stream()
+                .filter(alteracao -> alteracao.getCarro() != null)
+                .forEach(alteracao -> adicionarUrlsCompletas(alteracao.getCarro(), baseUrl));
+        return ResponseEntity.ok(pagina);
+    }
+    
     /**
      * Endpoint público para criar um novo carro
      * Requer autenticação via X-API-Key no header
@@ -167,7 +323,12 @@ public class PublicCarroController {
      *   "observacoes": "Carro em bom estado"
      * }
      * 
+     * Com o header opcional Idempotency-Key (ex: um UUID por carro), repetições da mesma requisição
+     * (retry após timeout) devolvem a resposta da primeira, com o header Idempotent-Replayed: true,
+     * sem criar outro carro nem enviar outro email
+     * 
      * @param carroDTO Dados do carro a ser criado
+     * @param chaveIdempotencia Chave de idempotência escolhida pelo cliente (até 100 caracteres)
      * @param authentication Autenticação do usuário via API Key
      * @param request HttpServletRequest para obter a URL base
      * @return Carro criado com informações completas
@@ -175,6 +336,7 @@ public class PublicCarroController {
     @PostMapping
     public ResponseEntity<?> criarCarro(
             @Valid @RequestBody CarroDTO carroDTO,
+            @RequestHeader(value = IdempotenciaService.CABECALHO, required = false) String chaveIdempotencia,
             Authentication authentication,
             HttpServletRequest request) {
         try {
@@ -187,15 +349,23 @@ public class PublicCarroController {
             
             // Obter empresa do usuário autenticado
             Long empresaId = usuarioService.obterUsuarioCompleto(usuarioEmail).getEmpresa().getId();
+            String baseUrl = getBaseUrl(request);
+            
+            if (chaveIdempotencia != null) {
+                return idempotenciaService.executar(usuarioEmail + " POST /api/public/carros", chaveIdempotencia,
+                        carroDTO, HttpStatus.CREATED,
+                        () -> adicionarUrlsCompletas(carroService.criarCarro(carroDTO, null, empresaId, usuarioEmail), baseUrl));
+            }
             
             // Criar carro (sem fotos inicialmente - pode ser adicionado depois via endpoint de atualização)
             CarroDTO carroCriado = carroService.criarCarro(carroDTO, null, empresaId, usuarioEmail);
             
             // Adicionar URLs completas das fotos
-            String baseUrl = getBaseUrl(request);
             carroCriado = adicionarUrlsCompletas(carroCriado, baseUrl);
             
             return ResponseEntity.status(HttpStatus.CREATED).body(carroCriado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
         } catch (RuntimeException e) {
             System.err.println("Erro ao criar carro via API pública: " + e.getMessage());
             e.printStackTrace();
@@ -208,25 +378,115 @@ public class PublicCarroController {
         }
     }
     
+    /**
+     * Endpoint público para criar ou atualizar um carro pela placa (upsert), na empresa do usuário
+     * Requer autenticação via X-API-Key no header e permissão para criar e editar
+     * 
+     * Um único comando no banco (INSERT ... ON CONFLICT no PostgreSQL), sem consulta prévia:
+     * ideal para sincronizar o catálogo a partir de outro sistema
+     * 
+     * Exemplo de uso no n8n:
+     * PUT http://localhost:8080/api/public/carros/placa/ABC-1234
+     * Header: X-API-Key: sua_chave_api_aqui
+     * Content-Type: application/json
+     * Body: {
+     *   "quilometragem": 50000,
+     *   "modelo": "Corolla",
+     *   "marca": "Toyota",
+     *   "valor": 89900.00
+     * }
+     * 
+     * @param placa Placa do carro (a do corpo, se enviada, é ignorada)
+     * @return 201 com o id se o carro foi criado, 200 se já existia e foi atualizado
+     */
+    @PutMapping("/placa/{placa}")
+    public ResponseEntity<?> gravarCarroPorPlaca(
+            @PathVariable String placa,
+            @RequestBody CarroDTO carroDTO,
+            Authentication authentication) {
+        try {
+            String usuarioEmail = authentication.getName();
+            if (!usuarioService.podeCriar(usuarioEmail) || !usuarioService.podeEditar(usuarioEmail)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Você não tem permissão para criar e editar carros");
+            }
+            
+            Long empresaId = usuarioService.obterUsuarioCompleto(usuarioEmail).getEmpresa().getId();
+            ResultadoUpsertCarroDTO resultado = upsertCarroService.gravarPorPlaca(placa, carroDTO, empresaId, usuarioEmail);
+            
+            return ResponseEntity.status(resultado.getCriado() ? HttpStatus.CREATED : HttpStatus.OK).body(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao gravar carro por placa via API pública: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao gravar carro: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Endpoint público para atualizar só alguns campos de um carro da empresa do usuário
+     * Requer autenticação via X-API-Key no header e permissão para editar
+     * 
+     * Corpo no formato JSON Merge Patch: só os campos enviados são alterados e null apaga
+     * valor ou observacoes. O UPDATE grava só as colunas que mudaram; ideal para sincronizar
+     * a quilometragem com frequência
+     * 
+     * Exemplo de uso no n8n:
+     * PATCH http://localhost:8080/api/public/carros/123
+     * Header: X-API-Key: sua_chave_api_aqui
+     * Content-Type: application/merge-patch+json
+     * Body: { "quilometragem": 52000 }
+     * 
+     * @param id ID do carro
+     * @return Carro atualizado
+     */
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> atualizarCarroParcial(
+            @PathVariable Long id,
+            @RequestBody JsonNode patch,
+            Authentication authentication,
+            HttpServletRequest request) {
+        try {
+            String usuarioEmail = authentication.getName();
+            if (!usuarioService.podeEditar(usuarioEmail)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body("Você não tem permissão para editar carros");
+            }
+            
+            Long empresaId = usuarioService.obterUsuarioCompleto(usuarioEmail).getEmpresa().getId();
+            CarroDTO carro = carroService.atualizarParcial(id, patch, empresaId, usuarioEmail);
+            return ResponseEntity.ok(adicionarUrlsCompletas(carro, getBaseUrl(request)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro de validação: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao atualizar carro via API pública: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao atualizar carro: " + e.getMessage());
+        }
+    }
+    
     /**
      * Converte URLs relativas das fotos para URLs absolutas
      */
     private CarroDTO adicionarUrlsCompletas(CarroDTO carro, String baseUrl) {
         if (carro.getFotos() != null && !carro.getFotos().isEmpty()) {
             List<String> fotosCompletas = carro.getFotos().stream()
-                    .map(foto -> {
-                        if (foto.startsWith("http")) {
-                            return foto; // Já é uma URL completa
-                        } else if (foto.startsWith("/")) {
-                            return baseUrl + foto; // URL relativa
-                        } else {
-                            return baseUrl + "/api/carros/fotos/" + foto; // Apenas nome do arquivo
-                        }
-                    })
+                    .map(foto -> urlCompleta(foto, baseUrl))
                     .collect(Collectors.toList());
             carro.setFotos(fotosCompletas);
         }
+        if (carro.getFotosDetalhes() != null) {
+            carro.getFotosDetalhes().forEach(foto -> foto.setUrl(urlCompleta(foto.getUrl(), baseUrl)));
+        }
         return carro;
     }
+    
+    private static String urlCompleta(String foto, String baseUrl) {
+        if (foto.startsWith("http")) {
+            return foto; // Já é uma URL completa
+        } else if (foto.startsWith("/")) {
+            return baseUrl + foto; // URL relativa
+        } else {
+            return baseUrl + "/api/carros/fotos/" + foto; // Apenas nome do arquivo
+        }
+    }
 }
-
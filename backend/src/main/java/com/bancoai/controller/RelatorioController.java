@@ -1,11 +1,14 @@
 package com.bancoai.controller;
 
 import com.bancoai.dto.RelatorioDTO;
+import com.bancoai.service.CatalogoVersaoService;
 import com.bancoai.service.RelatorioService;
 import com.bancoai.service.UsuarioService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/relatorios")
@@ -14,20 +17,32 @@ public class RelatorioController {
     
     private final RelatorioService relatorioService;
     private final UsuarioService usuarioService;
+    private final CatalogoVersaoService catalogoVersao;
     
-    public RelatorioController(RelatorioService relatorioService, UsuarioService usuarioService) {
+    public RelatorioController(RelatorioService relatorioService, UsuarioService usuarioService,
+                               CatalogoVersaoService catalogoVersao) {
         this.relatorioService = relatorioService;
         this.usuarioService = usuarioService;
+        this.catalogoVersao = catalogoVersao;
     }
     
     @GetMapping
-    public ResponseEntity<RelatorioDTO> gerarRelatorio(Authentication authentication) {
+    public ResponseEntity<RelatorioDTO> gerarRelatorio(Authentication authentication, WebRequest webRequest) {
         try {
             String email = authentication.getName();
             Long empresaId = usuarioService.obterUsuarioCompleto(email).getEmpresa().getId();
             
+            // O relatório só depende dos carros da empresa: mesma versão, mesmo relatório
+            String etag = catalogoVersao.gerarEtag("relatorio", empresaId);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            
             RelatorioDTO relatorio = relatorioService.gerarRelatorio(empresaId);
-            return ResponseEntity.ok(relatorio);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(relatorio);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -0,0 +1,186 @@
+package com.bancoai.controller;
+
+import com.bancoai.dto.OperacaoLoteCarroDTO;
+import com.bancoai.dto.TarefaDTO;
+import com.bancoai.service.TarefaService;
+import com.bancoai.service.UsuarioService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Operações longas em segundo plano. Os POSTs respondem 202 com a tarefa (e o header Location);
+ * o cliente acompanha o status e o progresso em GET /api/tarefas/{id} e, com a tarefa CONCLUIDA,
+ * baixa o resultado em GET /api/tarefas/{id}/resultado.
+ */
+@RestController
+@RequestMapping("/api/tarefas")
+@CrossOrigin(origins = "http://localhost:3000")
+public class TarefaController {
+    
+    private final TarefaService tarefaService;
+    private final UsuarioService usuarioService;
+    
+    public TarefaController(TarefaService tarefaService, UsuarioService usuarioService) {
+        this.tarefaService = tarefaService;
+        this.usuarioService = usuarioService;
+    }
+    
+    private Long obterEmpresaIdParaFiltro(Authentication authentication, Long empresaIdSelecionada) {
+        String email = authentication.getName();
+        // Se for admin e tiver selecionado uma empresa, usar a selecionada
+        if (usuarioService.isAdmin(email) && empresaIdSelecionada != null) {
+            return empresaIdSelecionada;
+        }
+        com.bancoai.model.Usuario usuario = usuarioService.obterUsuarioCompleto(email);
+        if (usuario.getEmpresa() == null) {
+            throw new RuntimeException("Usuário não possui empresa associada");
+        }
+        return usuario.getEmpresa().getId();
+    }
+    
+    /**
+     * Importação em massa (mesmo formato de POST /api/carros/importar). O corpo é gravado em
+     * arquivo e a importação roda em segundo plano; o resultado é o relatório de erros por linha.
+     */
+    @PostMapping(value = "/importacao", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> agendarImportacao(
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            if (!usuarioService.podeCriar(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            boolean ndjson = contentType.toLowerCase().startsWith("application/x-ndjson");
+            return aceita(tarefaService.agendarImportacao(request.getInputStream(), ndjson, empresaId, email));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erro ao agendar importação: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao agendar importação: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Exportação dos carros da empresa em NDJSON (um carro por linha).
+     */
+    @PostMapping("/exportacao")
+    public ResponseEntity<?> agendarExportacao(
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        return agendar(TarefaService.EXPORTACAO_CARROS, null, empresaIdSelecionada, authentication);
+    }
+    
+    /**
+     * Reajuste de valor em lote (mesmo corpo de POST /api/carros/lote/valor).
+     */
+    @PostMapping("/lote/valor")
+    public ResponseEntity<?> agendarReajuste(
+            @RequestBody OperacaoLoteCarroDTO operacao,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        if (!usuarioService.podeEditar(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return agendar(TarefaService.REAJUSTE_VALOR, operacao, empresaIdSelecionada, authentication);
+    }
+    
+    /**
+     * Exclusão em lote (mesmo corpo de POST /api/carros/lote/excluir).
+     */
+    @PostMapping("/lote/excluir")
+    public ResponseEntity<?> agendarExclusao(
+            @RequestBody OperacaoLoteCarroDTO operacao,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        if (!usuarioService.podeDeletar(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return agendar(TarefaService.EXCLUSAO_LOTE, operacao, empresaIdSelecionada, authentication);
+    }
+    
+    @PostMapping("/relatorio")
+    public ResponseEntity<?> agendarRelatorio(
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        return agendar(TarefaService.RELATORIO, null, empresaIdSelecionada, authentication);
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<TarefaDTO>> listar(
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(tarefaService.listar(empresaId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<TarefaDTO> buscar(
+            @PathVariable Long id,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return ResponseEntity.ok(tarefaService.buscar(id, empresaId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/{id}/resultado")
+    public ResponseEntity<?> baixarResultado(
+            @PathVariable Long id,
+            @RequestParam(value = "empresaId", required = false) Long empresaIdSelecionada,
+            Authentication authentication) {
+        try {
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            TarefaService.ResultadoTarefa resultado = tarefaService.obterResultado(id, empresaId);
+            Resource arquivo = new FileSystemResource(resultado.arquivo());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(resultado.tipoConteudo()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resultado.nomeArquivo() + "\"")
+                    .body(arquivo);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    private ResponseEntity<?> agendar(String tipo, Object parametros, Long empresaIdSelecionada,
+                                      Authentication authentication) {
+        try {
+            Long empresaId = obterEmpresaIdParaFiltro(authentication, empresaIdSelecionada);
+            return aceita(tarefaService.agendar(tipo, parametros, empresaId, authentication.getName()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao agendar tarefa " + tipo + ": " + e.getMessage());
+            return ResponseEntity.badRequest().body("Erro ao agendar tarefa: " + e.getMessage());
+        }
+    }
+    
+    private static ResponseEntity<TarefaDTO> aceita(TarefaDTO tarefa) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/tarefas/" + tarefa.getId()))
+                .body(tarefa);
+    }
+}
@@ -7,12 +7,13 @@ import com.bancoai.dto.UpdateSenhaDTO;
 import com.bancoai.dto.UsuarioCompletoDTO;
 import com.bancoai.dto.UsuarioDTO;
 import com.bancoai.model.enums.Role;
+import com.bancoai.service.DiretorioFragmentado;
+import com.bancoai.service.EntregaArquivoService;
 import com.bancoai.service.UsuarioService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -22,9 +23,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -34,9 +32,11 @@ import java.util.stream.Collectors;
 public class UsuarioController {
     
     private final UsuarioService usuarioService;
+    private final EntregaArquivoService entregaArquivo;
     
-    public UsuarioController(UsuarioService usuarioService) {
+    public UsuarioController(UsuarioService usuarioService, EntregaArquivoService entregaArquivo) {
         this.usuarioService = usuarioService;
+        this.entregaArquivo = entregaArquivo;
     }
     
     @GetMapping("/perfil")
@@ -141,27 +141,11 @@ public class UsuarioController {
     }
     
     @GetMapping("/fotos/{nomeArquivo}")
-    public ResponseEntity<Resource> obterFoto(@PathVariable String nomeArquivo) {
-        try {
-            Path caminhoArquivo = Paths.get("uploads/usuarios").resolve(nomeArquivo).normalize();
-            Resource resource = new UrlResource(caminhoArquivo.toUri());
-            
-            if (resource.exists() && resource.isReadable()) {
-                String contentType = Files.probeContentType(caminhoArquivo);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-                
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            return ResponseEntity.notFound().build();
-        }
+    public void obterFoto(@PathVariable String nomeArquivo, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        // Fotos de perfil exigem autenticação: cache só no navegador (private)
+        entregaArquivo.enviar(DiretorioFragmentado.FOTOS_USUARIOS, nomeArquivo, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                false, request, response);
     }
     
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -0,0 +1,14 @@
+package com.bancoai.dto;
+
+import lombok.Data;
+
+@Data
+public class AlteracaoCarroDTO {
+    private Long sequencia;
+    private String tipo; // UPSERT ou DELETE
+    private Long carroId;
+    private Long empresaId;
+    private String placa;
+    private String dataAlteracao;
+    private CarroDTO carro; // estado atual do carro; null em DELETE
+}
@@ -25,5 +25,11 @@ public class BuscaCarroDTO {
     private String direcao = "DESC"; // ASC, DESC
     private Integer pagina = 0;
     private Integer tamanho = 20;
+    
+    // Paginação por cursor (keyset): com usarCursor = true o campo "pagina" é ignorado
+    // e a busca continua a partir do "proximoCursor" devolvido na página anterior
+    private Boolean usarCursor = false;
+    private String cursor;
+    private Boolean contarTotal = false; // no modo cursor a contagem só é feita se solicitada
 }
 
@@ -35,6 +35,8 @@ public class CarroDTO {
     
     private String observacoes;
     private List<String> fotos;
+    // Mesmas fotos de "fotos", com id, tamanho, dimensões e hash (somente leitura)
+    private List<FotoCarroDTO> fotosDetalhes;
     private String dataCadastro;
     private String dataAtualizacao;
 }
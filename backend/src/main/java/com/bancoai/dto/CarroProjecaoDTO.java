@@ -0,0 +1,29 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Linha de leitura de carro (projeção por construtor), sem hidratar a entidade Carro.
+ * A ordem dos campos é a do construtor usado nas consultas do CarroRepository.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarroProjecaoDTO {
+    private Long id;
+    private Long empresaId;
+    private String empresaNome;
+    private String placa;
+    private Integer quilometragem;
+    private String modelo;
+    private String marca;
+    private BigDecimal valor;
+    private String observacoes;
+    private LocalDateTime dataCadastro;
+    private LocalDateTime dataAtualizacao;
+}
@@ -0,0 +1,14 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ErroImportacaoDTO {
+    private Long linha; // número da linha no arquivo enviado (1 = primeira linha)
+    private String placa;
+    private String mensagem;
+}
@@ -0,0 +1,17 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetaDTO {
+    private String rotulo;
+    private Long quantidade;
+    private BigDecimal minimo; // faixas: limite inferior inclusivo (null = sem limite)
+    private BigDecimal maximo; // faixas: limite superior exclusivo (null = sem limite)
+}
@@ -0,0 +1,14 @@
+package com.bancoai.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class FacetasCarroDTO {
+    private Long total;
+    private List<FacetaDTO> marcas;
+    private List<FacetaDTO> modelos;
+    private List<FacetaDTO> faixasValor;
+    private List<FacetaDTO> faixasQuilometragem;
+}
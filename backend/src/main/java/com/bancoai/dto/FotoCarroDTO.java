@@ -0,0 +1,25 @@
+package com.bancoai.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Metadados de uma foto de carro (projeção por construtor).
+ * A ordem dos campos é a do construtor usado nas consultas do CarroFotoRepository.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FotoCarroDTO {
+    @JsonIgnore
+    private Long carroId;
+    private Long id;
+    private String url;
+    private Integer ordem;
+    private Long tamanhoBytes;
+    private Integer largura;
+    private Integer altura;
+    private String hashConteudo;
+}
@@ -0,0 +1,20 @@
+package com.bancoai.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Alvo e parâmetros de uma operação em lote sobre carros.
+ * Informe os ids OU um filtro de busca (paginação e ordenação do filtro são ignoradas).
+ */
+@Data
+public class OperacaoLoteCarroDTO {
+    private List<Long> ids;
+    private BuscaCarroDTO filtro;
+    
+    // Só para ajuste de valor
+    private String tipoAjuste; // PERCENTUAL (ex: -5 = 5% de desconto) ou ABSOLUTO (soma ao valor atual)
+    private BigDecimal ajuste;
+}
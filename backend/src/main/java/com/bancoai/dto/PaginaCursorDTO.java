@@ -0,0 +1,18 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDTO<T> {
+    private List<T> conteudo;
+    private Integer tamanho;
+    private Boolean temProximo;
+    private String proximoCursor; // null quando não há próxima página (no feed de alterações vem sempre preenchido)
+    private Long totalElementos; // null quando a contagem não foi solicitada
+}
@@ -0,0 +1,17 @@
+package com.bancoai.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ResultadoImportacaoDTO {
+    private Long totalLinhas = 0L;
+    private Long importados = 0L;
+    private Long comErro = 0L;
+    private Long lotes = 0L;
+    private Long duracaoMs;
+    private List<ErroImportacaoDTO> erros = new ArrayList<>();
+    private Long errosOmitidos = 0L; // erros além do limite do relatório (só contados)
+}
@@ -0,0 +1,11 @@
+package com.bancoai.dto;
+
+import lombok.Data;
+
+@Data
+public class ResultadoOperacaoLoteDTO {
+    private Long selecionados = 0L; // carros que atenderam aos ids/filtro
+    private Long afetados = 0L;     // carros efetivamente alterados ou excluídos
+    private Long lotes = 0L;
+    private Long duracaoMs;
+}
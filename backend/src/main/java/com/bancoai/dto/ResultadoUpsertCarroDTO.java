@@ -0,0 +1,14 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoUpsertCarroDTO {
+    private Long id;
+    private String placa;
+    private Boolean criado; // true = carro novo, false = carro existente atualizado
+}
@@ -0,0 +1,22 @@
+package com.bancoai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TarefaDTO {
+    private Long id;
+    private String tipo;
+    private String status; // PENDENTE, EXECUTANDO, CONCLUIDA, FALHA
+    private Long processados; // na importação, bytes lidos do arquivo; nas demais, carros
+    private Long total;
+    private Integer percentual; // nulo enquanto o total não é conhecido
+    private String mensagem;
+    private String urlResultado; // preenchida quando a tarefa é concluída
+    private String dataCriacao;
+    private String dataInicio;
+    private String dataConclusao;
+}
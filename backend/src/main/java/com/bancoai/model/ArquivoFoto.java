@@ -0,0 +1,38 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Arquivo de foto de carro em disco, identificado pelo SHA-256 do conteúdo (nome {hash}.{ext}).
+ * Fotos iguais enviadas para o mesmo carro ou para carros diferentes apontam para o mesmo
+ * arquivo; referencias conta as linhas de fotos_carro que o usam, e o arquivo só é removido
+ * quando a contagem chega a zero. Gravada por SQL em ArmazenamentoFotoService.
+ */
+@Entity
+@Table(name = "arquivos_foto")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArquivoFoto {
+    // SHA-256 do conteúdo gravado (já sem metadados), em hexadecimal
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "nome_arquivo", nullable = false, length = 100)
+    private String nomeArquivo;
+
+    @Column(name = "tamanho_bytes", nullable = false)
+    private Long tamanhoBytes;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    @Column(name = "data_cadastro", nullable = false)
+    private LocalDateTime dataCadastro;
+}
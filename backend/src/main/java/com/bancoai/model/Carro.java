@@ -3,20 +3,37 @@ package com.bancoai.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carros")
+@Table(name = "carros",
+       uniqueConstraints = @UniqueConstraint(name = "uk_carros_empresa_placa_normalizada",
+                                             columnNames = {"empresa_id", "placa_normalizada"}),
+       indexes = {
+           @Index(name = "idx_carros_placa_normalizada", columnList = "placa_normalizada"),
+           @Index(name = "idx_carros_data_atualizacao", columnList = "data_atualizacao")
+       })
+// UPDATE só com as colunas alteradas (atualizações parciais via PATCH, ex: sincronização de quilometragem)
+@DynamicUpdate
+// Exclusão lógica: carros excluídos ficam fora de todas as consultas JPA até serem removidos pelo PurgaCarroService
+@SQLRestriction("data_exclusao IS NULL")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Carro {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequência com alocação em blocos de 50 (otimizador pooled): o id sai da memória no persist,
+    // então o INSERT pode ser adiado e agrupado em batch (com IDENTITY o Hibernate desliga o batch de INSERT)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carros_seq")
+    @SequenceGenerator(name = "carros_seq", sequenceName = "carros_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.EAGER)
@@ -26,6 +43,10 @@ public class Carro {
     @Column(nullable = false, length = 10)
     private String placa;
     
+    // Placa em maiúsculas, só letras e números (ABC-1234, abc.1234 -> ABC1234), usada nas buscas por placa
+    @Column(name = "placa_normalizada", length = 10)
+    private String placaNormalizada;
+    
     @Column(nullable = false)
     private Integer quilometragem;
     
@@ -41,10 +62,12 @@ public class Carro {
     @Column(columnDefinition = "TEXT")
     private String observacoes;
     
-    @ElementCollection
-    @CollectionTable(name = "carro_fotos", joinColumns = @JoinColumn(name = "carro_id"))
-    @Column(name = "foto_url")
-    private List<String> fotos = new ArrayList<>();
+    // Fotos na ordem de exibição; cada foto é uma linha de fotos_carro (ver CarroFoto)
+    @OneToMany(mappedBy = "carro", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("ordem ASC, id ASC")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<CarroFoto> fotos = new ArrayList<>();
     
     @Column(nullable = false, updatable = false)
     private LocalDateTime dataCadastro;
@@ -52,15 +75,25 @@ public class Carro {
     @Column(nullable = false)
     private LocalDateTime dataAtualizacao;
     
+    // Preenchida na exclusão; a placa normalizada é zerada para liberar a placa para um novo cadastro
+    @Column(name = "data_exclusao")
+    private LocalDateTime dataExclusao;
+    
     @PrePersist
     protected void onCreate() {
         dataCadastro = LocalDateTime.now();
         dataAtualizacao = LocalDateTime.now();
+        placaNormalizada = normalizarPlaca(placa);
     }
     
     @PreUpdate
     protected void onUpdate() {
         dataAtualizacao = LocalDateTime.now();
+        placaNormalizada = dataExclusao == null ? normalizarPlaca(placa) : null;
+    }
+    
+    public static String normalizarPlaca(String placa) {
+        return placa == null ? null : placa.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
     }
 }
 
@@ -0,0 +1,47 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Log de alterações de carros (append-only), base do feed incremental da API pública.
+ * O id é a posição no log e serve de cursor para as integrações; AlteracaoCarroService garante
+ * que ele é atribuído em ordem de commit. O índice por data atende a limpeza por retenção.
+ */
+@Entity
+@Table(name = "carro_alteracoes", indexes = {
+    @Index(name = "idx_carro_alteracoes_data", columnList = "data_alteracao")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarroAlteracao {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 20)
+    private String tipo; // UPSERT, DELETE
+    
+    // Sem chave estrangeira: o registro precisa sobreviver à exclusão do carro
+    @Column(name = "carro_id", nullable = false)
+    private Long carroId;
+    
+    @Column(name = "empresa_id", nullable = false)
+    private Long empresaId;
+    
+    @Column(length = 20)
+    private String placa;
+    
+    @Column(name = "data_alteracao", nullable = false)
+    private LocalDateTime dataAlteracao;
+    
+    @PrePersist
+    protected void onCreate() {
+        dataAlteracao = LocalDateTime.now();
+    }
+}
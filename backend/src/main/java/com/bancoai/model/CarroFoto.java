@@ -0,0 +1,62 @@
+package com.bancoai.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Foto de um carro. Cada foto é uma linha própria: incluir ou remover uma foto grava
+ * exatamente uma linha, e a ordem de exibição fica na coluna ordem (sem renumerar as demais).
+ */
+@Entity
+@Table(name = "fotos_carro", indexes = {
+    @Index(name = "idx_fotos_carro_carro_ordem", columnList = "carro_id, ordem")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarroFoto {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fotos_carro_seq")
+    @SequenceGenerator(name = "fotos_carro_seq", sequenceName = "fotos_carro_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "carro_id", nullable = false)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Carro carro;
+
+    @Column(nullable = false, length = 500)
+    private String url;
+
+    @Column(nullable = false)
+    private Integer ordem;
+
+    @Column(name = "tamanho_bytes")
+    private Long tamanhoBytes;
+
+    // Dimensões em pixels (nulas quando o formato não é reconhecido)
+    private Integer largura;
+
+    private Integer altura;
+
+    // SHA-256 do conteúdo em hexadecimal
+    @Column(name = "hash_conteudo", length = 64)
+    private String hashConteudo;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime dataCadastro;
+
+    @PrePersist
+    protected void onCreate() {
+        dataCadastro = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,53 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resposta já enviada para um Idempotency-Key, reaproveitada quando o cliente repete a requisição.
+ * A restrição única (escopo, chave) é o que impede duas execuções com a mesma chave.
+ */
+@Entity
+@Table(name = "chaves_idempotencia",
+       uniqueConstraints = @UniqueConstraint(name = "uk_chaves_idempotencia_escopo_chave",
+                                             columnNames = {"escopo", "chave"}),
+       indexes = @Index(name = "idx_chaves_idempotencia_expiracao", columnList = "data_expiracao"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChaveIdempotencia {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // Usuário + operação (ex: "admin@bancoai.com POST /api/public/carros")
+    @Column(nullable = false, length = 200)
+    private String escopo;
+    
+    @Column(nullable = false, length = 100)
+    private String chave;
+    
+    // SHA-256 do corpo da requisição: a mesma chave com outro corpo é rejeitada
+    @Column(name = "hash_requisicao", nullable = false, length = 64)
+    private String hashRequisicao;
+    
+    @Column(name = "status_http")
+    private Integer statusHttp;
+    
+    @Column(columnDefinition = "TEXT")
+    private String resposta;
+    
+    @Column(name = "data_criacao", nullable = false)
+    private LocalDateTime dataCriacao;
+    
+    @Column(name = "data_expiracao", nullable = false)
+    private LocalDateTime dataExpiracao;
+    
+    public boolean isExpirada() {
+        return LocalDateTime.now().isAfter(dataExpiracao);
+    }
+}
@@ -0,0 +1,25 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Linha única de controle do log carro_alteracoes. Toda gravação no log bloqueia esta linha
+ * antes do INSERT e só a libera no commit, então os ids do log são atribuídos na ordem de
+ * commit. ultimoIdRemovido marca até onde a limpeza já apagou o log: cursores anteriores a
+ * ele não podem mais ser continuados. Gravada por SQL em AlteracaoCarroService.
+ */
+@Entity
+@Table(name = "carro_alteracoes_controle")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ControleAlteracaoCarro {
+    @Id
+    private Integer id;
+
+    @Column(name = "ultimo_id_removido", nullable = false)
+    private Long ultimoIdRemovido;
+}
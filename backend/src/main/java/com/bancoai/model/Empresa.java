@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Empresa {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "empresas_seq")
+    @SequenceGenerator(name = "empresas_seq", sequenceName = "empresas_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true, length = 100)
@@ -35,6 +36,12 @@ public class Empresa {
     @Column(nullable = false)
     private Boolean ativa = true;
     
+    // Versão do catálogo de carros da empresa: incrementada a cada escrita de carro.
+    // Só é alterada via UPDATE direto (EmpresaRepository.incrementarVersaoCatalogo),
+    // por isso não é inserida nem atualizada pelo save da entidade.
+    @Column(name = "versao_catalogo", insertable = false, updatable = false)
+    private Long versaoCatalogo;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime dataCadastro;
     
@@ -0,0 +1,64 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Efeito colateral (email, remoção de arquivos) gravado na mesma transação da escrita que o
+ * originou e executado depois do commit pelo despachante do outbox. Eventos executados com
+ * sucesso são apagados; os que esgotam as tentativas ficam com status FALHA para inspeção.
+ */
+@Entity
+@Table(name = "outbox_eventos", indexes = {
+    @Index(name = "idx_outbox_eventos_pendentes", columnList = "status, proxima_tentativa"),
+    @Index(name = "idx_outbox_eventos_lote", columnList = "lote")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoOutbox {
+    @Id
+    // Sequência (e não IDENTITY) para o INSERT entrar no mesmo batch da escrita do carro
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_eventos_seq")
+    @SequenceGenerator(name = "outbox_eventos_seq", sequenceName = "outbox_eventos_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String tipo;
+    
+    // Dados do efeito em JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(nullable = false, length = 20)
+    private String status = "PENDENTE"; // PENDENTE, FALHA
+    
+    @Column(nullable = false)
+    private Integer tentativas = 0;
+    
+    // Quando o evento pode ser (re)processado; enquanto um despachante o processa, marca o fim da reserva
+    @Column(name = "proxima_tentativa", nullable = false)
+    private LocalDateTime proximaTentativa;
+    
+    // Reserva do despachante que está processando o evento
+    @Column(length = 36)
+    private String lote;
+    
+    @Column(name = "ultimo_erro", length = 500)
+    private String ultimoErro;
+    
+    @Column(name = "data_criacao", nullable = false)
+    private LocalDateTime dataCriacao;
+    
+    @PrePersist
+    protected void onCreate() {
+        dataCriacao = LocalDateTime.now();
+        if (proximaTentativa == null) {
+            proximaTentativa = dataCriacao;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bancoai.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Operação longa (importação, exportação, operação em lote, relatório) executada em segundo
+ * plano. O estado e o progresso ficam gravados para o cliente acompanhar pelo id; o resultado
+ * é um arquivo em uploads/tarefas, apagado junto com a tarefa após o período de retenção.
+ */
+@Entity
+@Table(name = "tarefas", indexes = {
+    @Index(name = "idx_tarefas_empresa", columnList = "empresa_id, data_criacao"),
+    @Index(name = "idx_tarefas_status", columnList = "status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Tarefa {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tarefas_seq")
+    @SequenceGenerator(name = "tarefas_seq", sequenceName = "tarefas_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, length = 30)
+    private String tipo;
+    
+    @Column(nullable = false, length = 20)
+    private String status = "PENDENTE"; // PENDENTE, EXECUTANDO, CONCLUIDA, FALHA
+    
+    @Column(name = "empresa_id", nullable = false)
+    private Long empresaId;
+    
+    @Column(nullable = false)
+    private String usuarioEmail;
+    
+    // Parâmetros da operação em JSON (ex: filtro e ajuste do reajuste em lote)
+    @Column(columnDefinition = "TEXT")
+    private String parametros;
+    
+    @Column(nullable = false)
+    private Long processados = 0L;
+    
+    // Nulo enquanto o total não é conhecido
+    private Long total;
+    
+    // Resumo do resultado ou mensagem de erro
+    @Column(length = 500)
+    private String mensagem;
+    
+    private String arquivoResultado;
+    
+    @Column(length = 100)
+    private String tipoConteudoResultado;
+    
+    // Instância que pegou a tarefa para executar (ver TarefaService) e o último sinal de vida dela;
+    // uma tarefa EXECUTANDO sem sinal recente foi interrompida junto com a instância
+    @Column(length = 100)
+    private String instancia;
+    
+    private LocalDateTime ultimoSinal;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime dataCriacao;
+    
+    private LocalDateTime dataInicio;
+    
+    private LocalDateTime dataConclusao;
+    
+    @Column(nullable = false)
+    private LocalDateTime dataAtualizacao;
+    
+    @PrePersist
+    protected void onCreate() {
+        dataCriacao = LocalDateTime.now();
+        dataAtualizacao = dataCriacao;
+    }
+}
@@ -0,0 +1,18 @@
+package com.bancoai.repository;
+
+import com.bancoai.model.CarroAlteracao;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CarroAlteracaoRepository extends JpaRepository<CarroAlteracao, Long> {
+    
+    // Alterações após o cursor, em ordem do log (que é a ordem de commit)
+    @Query("SELECT a FROM CarroAlteracao a WHERE a.id > :desde ORDER BY a.id")
+    List<CarroAlteracao> buscarDesde(@Param("desde") Long desde, Pageable pageable);
+}
@@ -0,0 +1,29 @@
+package com.bancoai.repository;
+
+import com.bancoai.dto.FotoCarroDTO;
+import com.bancoai.model.CarroFoto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CarroFotoRepository extends JpaRepository<CarroFoto, Long> {
+    
+    String PROJECAO = "SELECT new com.bancoai.dto.FotoCarroDTO(f.carro.id, f.id, f.url, f.ordem, " +
+                      "f.tamanhoBytes, f.largura, f.altura, f.hashConteudo) FROM CarroFoto f ";
+    
+    // Fotos de uma página de carros em uma única consulta, já na ordem de exibição de cada carro
+    @Query(PROJECAO + "WHERE f.carro.id IN :ids ORDER BY f.carro.id, f.ordem, f.id")
+    List<FotoCarroDTO> buscarPorCarroIds(@Param("ids") Collection<Long> ids);
+    
+    @Query(PROJECAO + "WHERE f.carro.empresa.id = :empresaId ORDER BY f.carro.id, f.ordem, f.id")
+    List<FotoCarroDTO> buscarPorEmpresa(@Param("empresaId") Long empresaId);
+    
+    // Só f.carro.id não gera join com carros; o filtro deixa de fora as fotos de carros excluídos
+    @Query(PROJECAO + "WHERE f.carro.dataExclusao IS NULL ORDER BY f.carro.id, f.ordem, f.id")
+    List<FotoCarroDTO> buscarTodas();
+}
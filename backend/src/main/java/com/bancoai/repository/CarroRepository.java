@@ -1,22 +1,40 @@
 package com.bancoai.repository;
 
+import com.bancoai.dto.CarroProjecaoDTO;
 import com.bancoai.model.Carro;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface CarroRepository extends JpaRepository<Carro, Long>, JpaSpecificationExecutor<Carro> {
+public interface CarroRepository extends JpaRepository<Carro, Long>, JpaSpecificationExecutor<Carro>,
+                                         CarroRepositoryCustom {
     Optional<Carro> findByPlacaAndEmpresaId(String placa, Long empresaId);
+    
+    // Trava a linha do carro até o commit: inclusões de fotos concorrentes no mesmo carro
+    // calculam a próxima ordem uma depois da outra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Carro c WHERE c.id = :id")
+    Optional<Carro> findByIdParaAtualizar(@Param("id") Long id);
     boolean existsByPlacaAndEmpresaId(String placa, Long empresaId);
     
+    boolean existsByPlacaNormalizadaAndEmpresaId(String placaNormalizada, Long empresaId);
+    
     // Busca por empresa
     List<Carro> findByEmpresaId(Long empresaId);
     Page<Carro> findByEmpresaId(Long empresaId, Pageable pageable);
@@ -59,8 +77,77 @@ public interface CarroRepository extends JpaRepository<Carro, Long>, JpaSpecific
                                   @Param("dataFim") java.time.LocalDateTime dataFim,
                                   Pageable pageable);
     
-    // Busca otimizada por placa (sem carregar todos os carros)
-    @Query("SELECT c FROM Carro c WHERE UPPER(c.placa) = UPPER(:placa) ORDER BY c.dataCadastro DESC")
-    List<Carro> findByPlacaIgnoreCase(@Param("placa") String placa, Pageable pageable);
+    // Carros criados antes da coluna placa_normalizada existir: [id, placa]
+    @Query("SELECT c.id, c.placa FROM Carro c WHERE c.placaNormalizada IS NULL")
+    List<Object[]> listarSemPlacaNormalizada();
+    
+    // O valor vem de Carro.normalizarPlaca: a mesma normalização das buscas e dos cadastros
+    @Transactional
+    @Modifying
+    @Query("UPDATE Carro c SET c.placaNormalizada = :placaNormalizada WHERE c.id = :id AND c.placaNormalizada IS NULL")
+    int preencherPlacaNormalizada(@Param("id") Long id, @Param("placaNormalizada") String placaNormalizada);
+    
+    // Carros excluídos logicamente ficam fora do @SQLRestriction da entidade: só SQL nativo os enxerga
+    @Query(value = "SELECT placa FROM carros WHERE id = :id AND empresa_id = :empresaId " +
+                   "AND data_exclusao > :limite", nativeQuery = true)
+    Optional<String> buscarPlacaExcluidoDesde(@Param("id") Long id, @Param("empresaId") Long empresaId,
+                                              @Param("limite") java.time.LocalDateTime limite);
+    
+    @Modifying
+    @Query(value = "UPDATE carros SET data_exclusao = NULL, placa_normalizada = :placaNormalizada, " +
+                   "data_atualizacao = :agora WHERE id = :id AND data_exclusao > :limite", nativeQuery = true)
+    int restaurar(@Param("id") Long id, @Param("placaNormalizada") String placaNormalizada,
+                  @Param("agora") java.time.LocalDateTime agora, @Param("limite") java.time.LocalDateTime limite);
+    
+    // Campos do índice de busca em memória: [id, empresaId, placa, modelo, marca]
+    @Query("SELECT c.id, c.empresa.id, c.placa, c.modelo, c.marca FROM Carro c")
+    List<Object[]> listarCamposBusca();
+    
+    @Query("SELECT c.id, c.empresa.id, c.placa, c.modelo, c.marca FROM Carro c WHERE c.dataAtualizacao > :desde")
+    List<Object[]> listarCamposBuscaAlteradosDesde(@Param("desde") java.time.LocalDateTime desde);
+    
+    // Caminho de leitura por projeção: lê só as colunas do CarroDTO, sem hidratar entidades
+    // (as fotos vêm de uma única consulta em lote, veja buscarFotosPorCarroIds)
+    String PROJECAO = "SELECT new com.bancoai.dto.CarroProjecaoDTO(c.id, e.id, e.nome, c.placa, " +
+                      "c.quilometragem, c.modelo, c.marca, c.valor, c.observacoes, c.dataCadastro, c.dataAtualizacao) " +
+                      "FROM Carro c JOIN c.empresa e ";
+    
+    @Query(PROJECAO)
+    List<CarroProjecaoDTO> listarProjecoes();
+    
+    @Query(PROJECAO + "WHERE e.id = :empresaId")
+    List<CarroProjecaoDTO> listarProjecoesPorEmpresa(@Param("empresaId") Long empresaId);
+    
+    @Query(PROJECAO + "WHERE c.id IN :ids")
+    List<CarroProjecaoDTO> listarProjecoesPorIds(@Param("ids") Collection<Long> ids);
+    
+    @Query(PROJECAO + "WHERE c.id = :id")
+    Optional<CarroProjecaoDTO> buscarProjecaoPorId(@Param("id") Long id);
+    
+    // Busca por placa normalizada (usa o índice único empresa_id + placa_normalizada)
+    @Query(PROJECAO + "WHERE c.placaNormalizada = :placa AND e.id = :empresaId")
+    Optional<CarroProjecaoDTO> buscarProjecaoPorPlaca(@Param("placa") String placaNormalizada,
+                                                      @Param("empresaId") Long empresaId);
+    
+    // Busca por placas em todas as empresas (usa o índice idx_carros_placa_normalizada),
+    // mais recentes primeiro; várias placas em uma única ida ao banco
+    @Query(PROJECAO + "WHERE c.placaNormalizada IN :placas ORDER BY c.dataCadastro DESC")
+    List<CarroProjecaoDTO> listarProjecoesPorPlacas(@Param("placas") Collection<String> placasNormalizadas,
+                                                    Pageable pageable);
+    
+    // Leitura em fluxo para a API pública: cursor forward-only com fetch size fixo,
+    // assim o driver traz as linhas aos poucos em vez de materializar a tabela inteira
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query(PROJECAO + "ORDER BY c.id")
+    Stream<CarroProjecaoDTO> streamProjecoes();
+    
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query(PROJECAO + "WHERE e.id = :empresaId ORDER BY c.id")
+    Stream<CarroProjecaoDTO> streamProjecoesPorEmpresa(@Param("empresaId") Long empresaId);
 }
-
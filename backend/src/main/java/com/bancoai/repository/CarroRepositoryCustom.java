@@ -0,0 +1,22 @@
+package com.bancoai.repository;
+
+import com.bancoai.dto.CarroProjecaoDTO;
+import com.bancoai.model.Carro;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface CarroRepositoryCustom {
+    
+    // Listagem com filtros dinâmicos retornando projeções (um único SELECT, sem N+1)
+    List<CarroProjecaoDTO> buscarProjecoes(Specification<Carro> spec, Sort sort, long offset, int limite);
+    
+    // Facetas em uma única passada: cada linha é [marca, modelo, faixaValor, faixaQuilometragem, quantidade].
+    // As faixas são índices nos limites informados (faixa i = [limites[i-1], limites[i]); -1 = valor nulo)
+    List<Object[]> contarFacetas(Specification<Carro> spec, BigDecimal[] limitesValor, Integer[] limitesQuilometragem);
+    
+    // Só os ids dos carros que atendem aos filtros, em ordem de id (alvo das operações em lote)
+    List<Long> listarIds(Specification<Carro> spec);
+}
@@ -0,0 +1,95 @@
+package com.bancoai.repository;
+
+import com.bancoai.dto.CarroProjecaoDTO;
+import com.bancoai.model.Carro;
+import com.bancoai.model.Empresa;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class CarroRepositoryCustomImpl implements CarroRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<CarroProjecaoDTO> buscarProjecoes(Specification<Carro> spec, Sort sort, long offset, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CarroProjecaoDTO> query = cb.createQuery(CarroProjecaoDTO.class);
+        Root<Carro> root = query.from(Carro.class);
+        Join<Carro, Empresa> empresa = root.join("empresa");
+        
+        query.select(cb.construct(CarroProjecaoDTO.class,
+                root.get("id"), empresa.get("id"), empresa.get("nome"),
+                root.get("placa"), root.get("quilometragem"), root.get("modelo"), root.get("marca"),
+                root.get("valor"), root.get("observacoes"),
+                root.get("dataCadastro"), root.get("dataAtualizacao")));
+        
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+    
+    @Override
+    public List<Long> listarIds(Specification<Carro> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Carro> root = query.from(Carro.class);
+        
+        query.select(root.get("id"));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("id")));
+        
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    @Override
+    public List<Object[]> contarFacetas(Specification<Carro> spec, BigDecimal[] limitesValor, Integer[] limitesQuilometragem) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Carro> root = query.from(Carro.class);
+        
+        Expression<Integer> faixaValor = criarFaixa(cb, root.get("valor"), limitesValor);
+        Expression<Integer> faixaQuilometragem = criarFaixa(cb, root.get("quilometragem"), limitesQuilometragem);
+        
+        query.multiselect(root.get("marca"), root.get("modelo"), faixaValor, faixaQuilometragem, cb.count(root));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.groupBy(root.get("marca"), root.get("modelo"), faixaValor, faixaQuilometragem);
+        
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    // CASE WHEN campo IS NULL THEN -1 WHEN campo < l0 THEN 0 WHEN campo < l1 THEN 1 ... ELSE n END
+    // (limites como literais, para o GROUP BY repetir exatamente a mesma expressão do SELECT)
+    private <T extends Comparable<? super T>> Expression<Integer> criarFaixa(CriteriaBuilder cb, Expression<T> campo, T[] limites) {
+        CriteriaBuilder.Case<Integer> faixa = cb.<Integer>selectCase().when(cb.isNull(campo), cb.literal(-1));
+        for (int i = 0; i < limites.length; i++) {
+            faixa = faixa.when(cb.lessThan(campo, cb.literal(limites[i])), cb.literal(i));
+        }
+        return faixa.otherwise(cb.literal(limites.length));
+    }
+}
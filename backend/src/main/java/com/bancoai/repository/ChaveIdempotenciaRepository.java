@@ -0,0 +1,22 @@
+package com.bancoai.repository;
+
+import com.bancoai.model.ChaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ChaveIdempotenciaRepository extends JpaRepository<ChaveIdempotencia, Long> {
+    Optional<ChaveIdempotencia> findByEscopoAndChave(String escopo, String chave);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChaveIdempotencia c WHERE c.dataExpiracao < :agora")
+    int removerExpiradas(@Param("agora") LocalDateTime agora);
+}
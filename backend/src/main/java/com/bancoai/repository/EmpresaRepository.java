@@ -67,5 +67,16 @@ public interface EmpresaRepository extends JpaRepository<Empresa, Long> {
     @Modifying(clearAutomatically = true, flushAutomatically = true)
     @Query(value = "DELETE FROM usuario_empresas WHERE empresa_id = :empresaId", nativeQuery = true)
     void deletarRelacionamentosUsuarioEmpresa(@Param("empresaId") Long empresaId);
+    
+    // Versão do catálogo de carros (ETag): UPDATE atômico, sem carregar a entidade
+    @Modifying
+    @Query("UPDATE Empresa e SET e.versaoCatalogo = COALESCE(e.versaoCatalogo, 0) + 1 WHERE e.id = :empresaId")
+    int incrementarVersaoCatalogo(@Param("empresaId") Long empresaId);
+    
+    @Query("SELECT COALESCE(e.versaoCatalogo, 0) FROM Empresa e WHERE e.id = :empresaId")
+    Optional<Long> buscarVersaoCatalogo(@Param("empresaId") Long empresaId);
+    
+    // Versão global (API pública): soma das versões, quantidade e maior id de empresa
+    @Query("SELECT COALESCE(SUM(COALESCE(e.versaoCatalogo, 0)), 0), COUNT(e), COALESCE(MAX(e.id), 0) FROM Empresa e")
+    List<Object[]> buscarVersaoCatalogoGlobal();
 }
-
@@ -0,0 +1,32 @@
+package com.bancoai.repository;
+
+import com.bancoai.model.EventoOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EventoOutboxRepository extends JpaRepository<EventoOutbox, Long> {
+    
+    @Query("SELECT e.id FROM EventoOutbox e WHERE e.status = 'PENDENTE' AND e.proximaTentativa <= :agora ORDER BY e.id")
+    List<Long> buscarIdsDisponiveis(@Param("agora") LocalDateTime agora, Pageable pageable);
+    
+    // Reserva condicional: se outro despachante reservou o evento antes, a linha não atende mais
+    // ao WHERE e fica de fora deste lote
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventoOutbox e SET e.lote = :lote, e.proximaTentativa = :fimReserva " +
+           "WHERE e.id IN :ids AND e.status = 'PENDENTE' AND e.proximaTentativa <= :agora")
+    int reservar(@Param("ids") Collection<Long> ids, @Param("lote") String lote,
+                 @Param("agora") LocalDateTime agora, @Param("fimReserva") LocalDateTime fimReserva);
+    
+    List<EventoOutbox> findByLote(String lote);
+}
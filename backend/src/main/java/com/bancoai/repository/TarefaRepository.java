@@ -0,0 +1,74 @@
+package com.bancoai.repository;
+
+import com.bancoai.model.Tarefa;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TarefaRepository extends JpaRepository<Tarefa, Long> {
+    
+    List<Tarefa> findByEmpresaIdOrderByIdDesc(Long empresaId, Pageable pageable);
+    
+    List<Tarefa> findByStatusOrderByIdAsc(String status);
+    
+    long countByEmpresaIdAndStatusIn(Long empresaId, List<String> status);
+    
+    // Início condicional: só uma execução (de qualquer instância) consegue passar a tarefa de
+    // PENDENTE para EXECUTANDO, e ela fica registrada como dona da tarefa
+    @Transactional
+    @Modifying
+    @Query("UPDATE Tarefa t SET t.status = 'EXECUTANDO', t.instancia = :instancia, t.dataInicio = :agora, " +
+           "t.ultimoSinal = :agora, t.dataAtualizacao = :agora WHERE t.id = :id AND t.status = 'PENDENTE'")
+    int iniciar(@Param("id") Long id, @Param("instancia") String instancia, @Param("agora") LocalDateTime agora);
+    
+    // Sinal de vida de todas as tarefas em execução na instância
+    @Transactional
+    @Modifying
+    @Query("UPDATE Tarefa t SET t.ultimoSinal = :agora WHERE t.instancia = :instancia AND t.status = 'EXECUTANDO'")
+    int sinalizar(@Param("instancia") String instancia, @Param("agora") LocalDateTime agora);
+    
+    // Tarefas gravadas antes do sinal de vida não têm ultimoSinal: vale a última atualização
+    @Query("SELECT t FROM Tarefa t WHERE t.status = 'EXECUTANDO' AND COALESCE(t.ultimoSinal, t.dataAtualizacao) < :limite")
+    List<Tarefa> buscarSemSinalDesde(@Param("limite") LocalDateTime limite);
+    
+    // Falha condicional: não atinge uma tarefa cuja instância voltou a sinalizar depois da leitura
+    @Transactional
+    @Modifying
+    @Query("UPDATE Tarefa t SET t.status = 'FALHA', t.mensagem = :mensagem, t.dataConclusao = :agora, " +
+           "t.dataAtualizacao = :agora WHERE t.id = :id AND t.status = 'EXECUTANDO' " +
+           "AND COALESCE(t.ultimoSinal, t.dataAtualizacao) < :limite")
+    int interromper(@Param("id") Long id, @Param("limite") LocalDateTime limite,
+                    @Param("agora") LocalDateTime agora, @Param("mensagem") String mensagem);
+    
+    // Conclusão condicional: só a instância dona grava o resultado, e só se a tarefa não foi
+    // dada como interrompida enquanto isso
+    @Transactional
+    @Modifying
+    @Query("UPDATE Tarefa t SET t.status = :status, t.mensagem = :mensagem, t.processados = :processados, " +
+           "t.total = :total, t.arquivoResultado = :arquivoResultado, " +
+           "t.tipoConteudoResultado = :tipoConteudoResultado, t.dataConclusao = :agora, t.dataAtualizacao = :agora " +
+           "WHERE t.id = :id AND t.instancia = :instancia AND t.status = 'EXECUTANDO'")
+    int concluir(@Param("id") Long id, @Param("instancia") String instancia, @Param("status") String status,
+                 @Param("mensagem") String mensagem, @Param("processados") long processados, @Param("total") Long total,
+                 @Param("arquivoResultado") String arquivoResultado,
+                 @Param("tipoConteudoResultado") String tipoConteudoResultado,
+                 @Param("agora") LocalDateTime agora);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE Tarefa t SET t.processados = :processados, t.total = :total, t.dataAtualizacao = :agora " +
+           "WHERE t.id = :id")
+    int atualizarProgresso(@Param("id") Long id, @Param("processados") long processados,
+                           @Param("total") Long total, @Param("agora") LocalDateTime agora);
+    
+    @Query("SELECT t FROM Tarefa t WHERE t.status IN ('CONCLUIDA', 'FALHA') AND t.dataConclusao < :limite")
+    List<Tarefa> buscarConcluidasAntesDe(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,235 @@
+package com.bancoai.service;
+
+import com.bancoai.model.Carro;
+import com.bancoai.model.CarroAlteracao;
+import com.bancoai.repository.CarroAlteracaoRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log de alterações de carros para o feed incremental (changes since cursor).
+ *
+ * O registro é gravado na mesma transação da escrita do carro, mas só no beforeCommit, e
+ * depois de bloquear a linha de carro_alteracoes_controle. O bloqueio só é liberado no commit,
+ * então uma transação só recebe um id (IDENTITY) do log depois que as anteriores commitaram:
+ * os ids visíveis para o leitor são sempre um prefixo do log, inclusive com várias instâncias,
+ * e o feed pode ler tudo depois do cursor sem janela de tempo. Um rollback só deixa um buraco
+ * na numeração. O custo é serializar o trecho final (INSERT no log + commit) das escritas.
+ *
+ * Registros com mais de app.alteracoes.retencao-dias são apagados por uma rodada agendada
+ * (app.alteracoes.limpeza.cron, padrão 3h30). Essa é a idade máxima de um cursor: uma
+ * integração que passar mais tempo sem ler recebe cursor expirado e refaz a carga completa.
+ */
+@Service
+public class AlteracaoCarroService {
+    
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+    
+    private static final String SQL_REGISTRAR =
+            "INSERT INTO carro_alteracoes (tipo, carro_id, empresa_id, placa, data_alteracao) " +
+            "VALUES (:tipo, :carroId, :empresaId, :placa, :agora)";
+    
+    private static final int ID_CONTROLE = 1;
+    
+    private static final String SQL_CRIAR_CONTROLE =
+            "INSERT INTO carro_alteracoes_controle (id, ultimo_id_removido) " +
+            "SELECT " + ID_CONTROLE + ", 0 WHERE NOT EXISTS " +
+            "(SELECT 1 FROM carro_alteracoes_controle WHERE id = " + ID_CONTROLE + ")";
+    
+    // UPDATE sem efeito só para bloquear a linha até o fim da transação
+    private static final String SQL_BLOQUEAR =
+            "UPDATE carro_alteracoes_controle SET ultimo_id_removido = ultimo_id_removido WHERE id = " + ID_CONTROLE;
+    
+    private static final String SQL_ULTIMO_REMOVIDO =
+            "SELECT ultimo_id_removido FROM carro_alteracoes_controle WHERE id = " + ID_CONTROLE;
+    
+    private static final int TAMANHO_LOTE_LIMPEZA = 1000;
+    
+    private static final String SQL_IDS_ANTIGOS =
+            "SELECT id FROM carro_alteracoes WHERE data_alteracao < :limite ORDER BY id LIMIT " + TAMANHO_LOTE_LIMPEZA;
+    
+    private static final String SQL_EXCLUIR_ANTIGOS =
+            "DELETE FROM carro_alteracoes WHERE id IN (:ids)";
+    
+    private static final String SQL_AVANCAR_REMOVIDO =
+            "UPDATE carro_alteracoes_controle SET ultimo_id_removido = GREATEST(ultimo_id_removido, :id) " +
+            "WHERE id = " + ID_CONTROLE;
+    
+    private final CarroAlteracaoRepository alteracaoRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacao;
+    
+    @Value("${app.alteracoes.retencao-dias:30}")
+    private long retencaoDias;
+    
+    @Value("${app.alteracoes.limpeza.pausa-ms:200}")
+    private long pausaMs;
+    
+    public AlteracaoCarroService(CarroAlteracaoRepository alteracaoRepository,
+                                 NamedParameterJdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager) {
+        this.alteracaoRepository = alteracaoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacao = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Cria a linha de controle, fora de qualquer transação de escrita (um erro de chave
+     * duplicada dentro do beforeCommit abortaria a transação do carro no PostgreSQL).
+     */
+    @PostConstruct
+    public void criarControle() {
+        try {
+            jdbcTemplate.update(SQL_CRIAR_CONTROLE, Map.of());
+        } catch (DuplicateKeyException e) {
+            // Outra instância criou a linha ao mesmo tempo
+        }
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarUpsert(Carro carro) {
+        registrar(UPSERT, carro.getId(), carro.getEmpresa().getId(), carro.getPlaca());
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarExclusao(Long carroId, Long empresaId, String placa) {
+        registrar(DELETE, carroId, empresaId, placa);
+    }
+    
+    /**
+     * Versão em lote para escritas set-based (importação, operações em lote): um único
+     * INSERT em batch via JDBC, também no beforeCommit.
+     *
+     * @param placasPorCarroId id do carro -> placa
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrarEmLote(String tipo, Long empresaId, Map<Long, String> placasPorCarroId) {
+        if (placasPorCarroId.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                bloquearOrdem();
+                Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+                SqlParameterSource[] parametros = placasPorCarroId.entrySet().stream()
+                        .map(entrada -> new MapSqlParameterSource("tipo", tipo)
+                                .addValue("carroId", entrada.getKey())
+                                .addValue("empresaId", empresaId)
+                                .addValue("placa", entrada.getValue())
+                                .addValue("agora", agora))
+                        .toArray(SqlParameterSource[]::new);
+                jdbcTemplate.batchUpdate(SQL_REGISTRAR, parametros);
+            }
+        });
+    }
+    
+    private void registrar(String tipo, Long carroId, Long empresaId, String placa) {
+        CarroAlteracao alteracao = new CarroAlteracao();
+        alteracao.setTipo(tipo);
+        alteracao.setCarroId(carroId);
+        alteracao.setEmpresaId(empresaId);
+        alteracao.setPlaca(placa);
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                bloquearOrdem();
+                alteracaoRepository.save(alteracao);
+            }
+        });
+    }
+    
+    /**
+     * Bloqueia a linha de controle até o commit. Antes, descarrega as escritas pendentes da
+     * transação, para que os bloqueios de linhas de carros sejam sempre obtidos antes deste
+     * (ordem fixa, sem deadlock entre escritas que disputam o mesmo carro).
+     */
+    private void bloquearOrdem() {
+        alteracaoRepository.flush();
+        if (jdbcTemplate.update(SQL_BLOQUEAR, Map.of()) == 0) {
+            throw new IllegalStateException("Linha de controle de carro_alteracoes não encontrada");
+        }
+    }
+    
+    /**
+     * Lê até {@code limite} alterações posteriores ao cursor, em ordem do log.
+     */
+    @Transactional(readOnly = true)
+    public List<CarroAlteracao> buscarDesde(long desde, int limite) {
+        return alteracaoRepository.buscarDesde(desde, PageRequest.of(0, limite));
+    }
+    
+    /**
+     * Indica se registros posteriores ao cursor já foram apagados pela limpeza, caso em que
+     * continuar a partir dele perderia alterações. O cursor 0 (início) nunca expira: quem começa
+     * do zero já faz a carga completa antes de acompanhar o feed.
+     */
+    @Transactional(readOnly = true)
+    public boolean cursorExpirado(long desde) {
+        if (desde <= 0) {
+            return false;
+        }
+        Long ultimoRemovido = jdbcTemplate.queryForObject(SQL_ULTIMO_REMOVIDO, Map.of(), Long.class);
+        return ultimoRemovido != null && desde < ultimoRemovido;
+    }
+    
+    /**
+     * Apaga do log os registros mais antigos que a retenção, em lotes pequenos e em ordem de id.
+     * Cada lote avança ultimo_id_removido na mesma transação do DELETE.
+     */
+    @Scheduled(cron = "${app.alteracoes.limpeza.cron:0 30 3 * * *}")
+    public void limpar() {
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minusDays(retencaoDias));
+        long inicio = System.currentTimeMillis();
+        int total = 0;
+        try {
+            while (true) {
+                Integer removidos = transacao.execute(status -> limparLote(limite));
+                total += removidos;
+                if (removidos < TAMANHO_LOTE_LIMPEZA) {
+                    break;
+                }
+                // Pausa entre lotes: cada lote bloqueia a linha de controle e segura as escritas no log
+                Thread.sleep(pausaMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Erro na limpeza do log de alterações de carros: " + e.getMessage());
+        }
+        if (total > 0) {
+            System.out.println("Registros antigos removidos do log de alterações de carros: " + total +
+                    " (" + (System.currentTimeMillis() - inicio) + " ms)");
+        }
+    }
+    
+    private int limparLote(Timestamp limite) {
+        List<Long> ids = jdbcTemplate.queryForList(SQL_IDS_ANTIGOS, new MapSqlParameterSource("limite", limite), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.update(SQL_AVANCAR_REMOVIDO, new MapSqlParameterSource("id", ids.get(ids.size() - 1)));
+        jdbcTemplate.update(SQL_EXCLUIR_ANTIGOS, new MapSqlParameterSource("ids", ids));
+        return ids.size();
+    }
+}
@@ -0,0 +1,608 @@
+package com.bancoai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Arquivos de foto dos carros em disco (uploads/carros/ab/cd/, ver DiretorioFragmentado),
+ * referenciados no banco pela URL /api/carros/fotos/{nomeArquivo}. O original é gravado sem metadados EXIF e com a orientação
+ * já aplicada; as variantes reduzidas (nome_w320.jpg, nome_w960.jpg) ficam ao lado dele.
+ *
+ * O armazenamento é endereçado por conteúdo: o arquivo se chama {sha256}.{ext} e fotos iguais
+ * (a mesma foto reenviada por uma integração, a foto de estoque de vários carros) ocupam um
+ * único arquivo. A tabela arquivos_foto (ver ArquivoFoto) conta as linhas de fotos_carro que
+ * usam cada arquivo. Quem grava ou libera referências trava a linha do hash até o commit, e a
+ * remoção do arquivo confere a contagem com a mesma trava, então um upload concorrente nunca
+ * fica apontando para um arquivo apagado. Arquivos antigos ({placa}_{uuid}.ext) não têm linha
+ * em arquivos_foto e continuam com uma única referência.
+ */
+@Service
+public class ArmazenamentoFotoService {
+    
+    private static final String SQL_REFERENCIAR_POSTGRESQL =
+            "INSERT INTO arquivos_foto (hash, nome_arquivo, tamanho_bytes, referencias, data_cadastro) " +
+            "VALUES (:hash, :nomeArquivo, :tamanhoBytes, 1, :agora) " +
+            "ON CONFLICT (hash) DO UPDATE SET referencias = arquivos_foto.referencias + 1 " +
+            "RETURNING nome_arquivo";
+    
+    // H2 (desenvolvimento): MERGE padrão, sem RETURNING; o nome é lido em seguida
+    private static final String SQL_REFERENCIAR_H2 =
+            "MERGE INTO arquivos_foto a USING (SELECT CAST(:hash AS VARCHAR(64)) AS hash) s " +
+            "ON (a.hash = s.hash) " +
+            "WHEN MATCHED THEN UPDATE SET referencias = a.referencias + 1 " +
+            "WHEN NOT MATCHED THEN INSERT (hash, nome_arquivo, tamanho_bytes, referencias, data_cadastro) " +
+            "VALUES (:hash, :nomeArquivo, :tamanhoBytes, 1, :agora)";
+    
+    private static final String SQL_NOME_POR_HASH =
+            "SELECT nome_arquivo FROM arquivos_foto WHERE hash = :hash";
+    
+    private static final String SQL_LIBERAR =
+            "UPDATE arquivos_foto SET referencias = referencias - :quantidade WHERE hash = :hash";
+    
+    private static final String SQL_SEM_REFERENCIAS =
+            "SELECT hash FROM arquivos_foto WHERE hash IN (:hashes) AND referencias <= 0";
+    
+    // Linha provisória (sem referências) antes da conferência: se um upload ainda não confirmado
+    // estiver inserindo o mesmo hash, o INSERT espera por ele em vez de não enxergar a linha
+    private static final String SQL_GARANTIR_LINHA_POSTGRESQL =
+            "INSERT INTO arquivos_foto (hash, nome_arquivo, tamanho_bytes, referencias, data_cadastro) " +
+            "VALUES (:hash, :nomeArquivo, 0, 0, :agora) ON CONFLICT (hash) DO NOTHING";
+    
+    private static final String SQL_GARANTIR_LINHA_H2 =
+            "MERGE INTO arquivos_foto a USING (SELECT CAST(:hash AS VARCHAR(64)) AS hash) s " +
+            "ON (a.hash = s.hash) " +
+            "WHEN NOT MATCHED THEN INSERT (hash, nome_arquivo, tamanho_bytes, referencias, data_cadastro) " +
+            "VALUES (:hash, :nomeArquivo, 0, 0, :agora)";
+    
+    private static final String SQL_REFERENCIAS_TRAVANDO =
+            "SELECT referencias FROM arquivos_foto WHERE hash = :hash FOR UPDATE";
+    
+    private static final String SQL_EXCLUIR_ARQUIVO =
+            "DELETE FROM arquivos_foto WHERE hash = :hash";
+    
+    // {sha256}.ext, {sha256}_w320.jpg: o hash é o começo do nome
+    private static final Pattern NOME_POR_HASH = Pattern.compile("^([0-9a-f]{64})(?:[._].*)?$");
+    
+    private static final Pattern EXTENSAO = Pattern.compile("\\.[a-z0-9]{1,5}");
+    
+    private final DiretorioFragmentado diretorio = DiretorioFragmentado.FOTOS_CARROS;
+    
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize tamanhoMaximo;
+    
+    @Value("${app.fotos.upload.maximo-arquivos:20}")
+    private int maximoArquivos;
+    
+    private final ProcessamentoImagemService processamentoImagem;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SequenciaService sequenciaService;
+    private final TransactionTemplate transacao;
+    
+    public ArmazenamentoFotoService(ProcessamentoImagemService processamentoImagem,
+                                    NamedParameterJdbcTemplate jdbcTemplate,
+                                    SequenciaService sequenciaService,
+                                    PlatformTransactionManager transactionManager) {
+        this.processamentoImagem = processamentoImagem;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenciaService = sequenciaService;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.transacao.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        createUploadDirectory();
+    }
+    
+    private void createUploadDirectory() {
+        try {
+            Files.createDirectories(diretorio.getBase());
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao criar diretório de uploads", e);
+        }
+    }
+    
+    /**
+     * Arquivo gravado e seus metadados: tamanho, dimensões (nulas se o formato não for
+     * reconhecido) e SHA-256 do conteúdo, calculado durante a cópia.
+     */
+    public record FotoArmazenada(String url, long tamanhoBytes, Integer largura, Integer altura, String hashConteudo) {
+    }
+    
+    /**
+     * Foto já lida e gravada sem metadados em um arquivo temporário do diretório de fotos, com
+     * hash, tamanho e dimensões do conteúdo final; ainda sem referência no banco (ver
+     * {@link #armazenar(FotoRecebida)}). Quem recebe é responsável por {@link #descartar(List)}.
+     */
+    public record FotoRecebida(Path temporario, String hash, long tamanhoBytes, Integer largura, Integer altura,
+                               String extensao) {
+    }
+    
+    /**
+     * Recebe as fotos de um upload multipart tratado pelo servlet, várias em paralelo no pool de
+     * imagens. Arquivos vazios são ignorados.
+     */
+    public List<FotoRecebida> receberFotos(List<MultipartFile> fotos) {
+        List<Future<FotoRecebida>> pendentes = new ArrayList<>();
+        for (MultipartFile foto : fotos) {
+            if (foto.isEmpty()) {
+                continue;
+            }
+            pendentes.add(processamentoImagem.executar(() -> {
+                try (InputStream entrada = foto.getInputStream()) {
+                    return concluirRecebimento(gravarSemMetadados(entrada, foto.getOriginalFilename()));
+                }
+            }));
+        }
+        return aguardarTodas(pendentes);
+    }
+    
+    /**
+     * Recebe as fotos direto do corpo multipart/form-data da requisição, sem o buffer do suporte
+     * multipart do servlet: cada parte com arquivo vai do socket para o diretório de fotos (sem
+     * metadados, com o hash calculado no caminho) e, enquanto a próxima chega, a anterior é
+     * concluída no pool de imagens (rotação, dimensões). Partes sem arquivo são ignoradas.
+     */
+    public List<FotoRecebida> receberFotos(InputStream corpo, String tipoConteudo) {
+        LeitorMultipart leitor = new LeitorMultipart(corpo, tipoConteudo);
+        List<Future<FotoRecebida>> pendentes = new ArrayList<>();
+        try {
+            LeitorMultipart.Parte parte;
+            while ((parte = leitor.proximaParte()) != null) {
+                if (parte.nomeArquivo() == null || parte.nomeArquivo().isEmpty()) {
+                    continue;
+                }
+                if (pendentes.size() >= maximoArquivos) {
+                    throw new IllegalArgumentException("Envie no máximo " + maximoArquivos + " fotos por vez");
+                }
+                Gravacao gravacao = gravarSemMetadados(new EntradaLimitada(parte.conteudo()), parte.nomeArquivo());
+                pendentes.add(processamentoImagem.executar(() -> concluirRecebimento(gravacao)));
+            }
+        } catch (IOException | RuntimeException e) {
+            descartar(aguardarTodasIgnorandoFalhas(pendentes));
+            if (e instanceof IllegalArgumentException erro) {
+                throw erro;
+            }
+            throw new RuntimeException("Erro ao receber fotos", e);
+        }
+        return aguardarTodas(pendentes);
+    }
+    
+    /**
+     * Registra uma referência ao arquivo da foto recebida e move o temporário para o lugar final
+     * (se ainda não existe um arquivo com o mesmo conteúdo, que é reaproveitado). Precisa da
+     * transação de quem cria a linha de fotos_carro: a referência vale a partir do commit, e só
+     * então as variantes são agendadas (com a fila cheia elas rodam na thread que chamou, e não
+     * devem segurar a linha travada nem a conexão). Se a transação for desfeita, o arquivo movido
+     * por ela passa pela mesma conferência da remoção: sem a linha criada aqui (desfeita junto)
+     * ou sem referências, o arquivo e as variantes são apagados.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public FotoArmazenada armazenar(FotoRecebida foto) {
+        try {
+            // A linha do hash fica travada até o commit: a remoção do arquivo espera por este upload
+            String nomeArquivo = referenciar(foto.hash(), foto.hash() + foto.extensao(), foto.tamanhoBytes());
+            String url = "/api/carros/fotos/" + nomeArquivo;
+            Path caminhoArquivo = diretorio.localizar(nomeArquivo);
+            boolean movido = !Files.exists(caminhoArquivo);
+            if (movido) {
+                caminhoArquivo = diretorio.caminhoParaGravar(nomeArquivo);
+                Files.move(foto.temporario(), caminhoArquivo, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                removerTemporario(foto.temporario());
+            }
+            
+            Path original = caminhoArquivo;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    processamentoImagem.gerarVariantes(original);
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK && movido) {
+                        try {
+                            // Transações próprias (REQUIRES_NEW): a original já foi desfeita
+                            deletarFotos(List.of(url));
+                        } catch (RuntimeException e) {
+                            System.err.println("Erro ao remover foto de transação desfeita: " + url);
+                        }
+                    }
+                }
+            });
+            
+            return new FotoArmazenada(url, foto.tamanhoBytes(),
+                    foto.largura(), foto.altura(), foto.hash());
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao salvar foto", e);
+        }
+    }
+    
+    /**
+     * Remove os temporários das fotos recebidas que não chegaram a ser armazenadas.
+     */
+    public void descartar(List<FotoRecebida> fotos) {
+        for (FotoRecebida foto : fotos) {
+            removerTemporario(foto.temporario());
+        }
+    }
+    
+    // Conteúdo já sem metadados no temporário, com o hash calculado durante a cópia
+    private record Gravacao(Path arquivo, String hash, int orientacao, String extensao) {
+    }
+    
+    // Uma única passada pela entrada: os bytes vão direto para o diretório de fotos, onde o
+    // arquivo final só ganha nome (o hash) no fim; a troca é um rename no mesmo sistema de arquivos.
+    // Nomes próprios em vez de createTempFile, que criaria o arquivo final só com permissão do dono
+    private Gravacao gravarSemMetadados(InputStream entrada, String nomeOriginal) throws IOException {
+        Path temporario = novoTemporario();
+        try {
+            MessageDigest digest = novoDigest();
+            int orientacao;
+            try (OutputStream saida = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporario)), digest)) {
+                orientacao = processamentoImagem.copiarSemMetadados(entrada, saida);
+            }
+            return new Gravacao(temporario, HexFormat.of().formatHex(digest.digest()), orientacao, extensao(nomeOriginal));
+        } catch (IOException | RuntimeException e) {
+            removerTemporario(temporario);
+            throw e;
+        }
+    }
+    
+    // Parte que decodifica a imagem: roda no pool. Devolve null para arquivos vazios
+    private FotoRecebida concluirRecebimento(Gravacao gravacao) throws IOException {
+        Path arquivo = gravacao.arquivo();
+        String hash = gravacao.hash();
+        try {
+            if (Files.size(arquivo) == 0) {
+                removerTemporario(arquivo);
+                return null;
+            }
+            if (ProcessamentoImagemService.precisaGirar(gravacao.orientacao())) {
+                Path girado = novoTemporario();
+                MessageDigest digest = novoDigest();
+                try (OutputStream saida = new DigestOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(girado)), digest)) {
+                    processamentoImagem.aplicarOrientacao(arquivo, gravacao.orientacao(), saida);
+                } catch (IOException e) {
+                    // JPEG que o ImageIO não decodifica: fica como veio, só sem os metadados
+                    removerTemporario(girado);
+                    girado = null;
+                }
+                if (girado != null) {
+                    removerTemporario(arquivo);
+                    arquivo = girado;
+                    hash = HexFormat.of().formatHex(digest.digest());
+                }
+            }
+            int[] dimensoes = lerDimensoes(arquivo);
+            return new FotoRecebida(arquivo, hash, Files.size(arquivo),
+                    dimensoes != null ? dimensoes[0] : null, dimensoes != null ? dimensoes[1] : null, gravacao.extensao());
+        } catch (IOException | RuntimeException e) {
+            removerTemporario(arquivo);
+            throw e;
+        }
+    }
+    
+    // Espera todas as fotos; se alguma falhar, descarta as que deram certo e repassa o erro
+    private List<FotoRecebida> aguardarTodas(List<Future<FotoRecebida>> pendentes) {
+        List<FotoRecebida> recebidas = new ArrayList<>();
+        Exception falha = null;
+        for (Future<FotoRecebida> pendente : pendentes) {
+            try {
+                FotoRecebida foto = ProcessamentoImagemService.aguardar(pendente);
+                if (foto != null) {
+                    recebidas.add(foto);
+                }
+            } catch (IOException | RuntimeException e) {
+                falha = falha == null ? e : falha;
+            }
+        }
+        if (falha != null) {
+            descartar(recebidas);
+            if (falha instanceof IllegalArgumentException erro) {
+                throw erro;
+            }
+            throw new RuntimeException("Erro ao salvar foto", falha);
+        }
+        return recebidas;
+    }
+    
+    private List<FotoRecebida> aguardarTodasIgnorandoFalhas(List<Future<FotoRecebida>> pendentes) {
+        try {
+            return aguardarTodas(pendentes);
+        } catch (RuntimeException e) {
+            return List.of();
+        }
+    }
+    
+    private Path novoTemporario() {
+        return diretorio.getBase().resolve("foto-" + UUID.randomUUID() + ".tmp");
+    }
+    
+    private static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Limita o tamanho de cada foto lida do corpo bruto (o limite do servlet não se aplica a ele)
+    private class EntradaLimitada extends FilterInputStream {
+        private long lidos;
+        
+        EntradaLimitada(InputStream entrada) {
+            super(entrada);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int lido = super.read();
+            if (lido >= 0) {
+                contar(1);
+            }
+            return lido;
+        }
+        
+        @Override
+        public int read(byte[] destino, int inicio, int quantidade) throws IOException {
+            int lidos = super.read(destino, inicio, quantidade);
+            if (lidos > 0) {
+                contar(lidos);
+            }
+            return lidos;
+        }
+        
+        private void contar(int quantidade) {
+            lidos += quantidade;
+            if (lidos > tamanhoMaximo.toBytes()) {
+                throw new IllegalArgumentException("Foto maior que o limite de " + tamanhoMaximo.toMegabytes() + "MB");
+            }
+        }
+    }
+    
+    /**
+     * Libera uma referência por URL (fotos cujas linhas de fotos_carro foram apagadas na
+     * transação atual) e devolve as URLs cujos arquivos ficaram sem referência, para a
+     * remoção pelo outbox depois do commit.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<String> liberarFotos(List<String> fotoUrls) {
+        Map<String, Integer> quantidadePorHash = new LinkedHashMap<>();
+        Map<String, String> urlPorHash = new LinkedHashMap<>();
+        List<String> semReferencia = new ArrayList<>();
+        for (String url : fotoUrls) {
+            // O hash vem do nome, não de fotos_carro.hash_conteudo: arquivos antigos têm o hash do
+            // conteúdo sem o nome correspondente, e não podem descontar referências de outro arquivo
+            String hash = hashDoNome(url.substring(url.lastIndexOf("/") + 1));
+            if (hash == null) {
+                semReferencia.add(url);
+                continue;
+            }
+            quantidadePorHash.merge(hash, 1, Integer::sum);
+            urlPorHash.putIfAbsent(hash, url);
+        }
+        if (quantidadePorHash.isEmpty()) {
+            return semReferencia;
+        }
+        
+        // Ordem estável dos hashes: duas transações liberando os mesmos arquivos não se travam
+        SqlParameterSource[] lote = quantidadePorHash.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entrada -> new MapSqlParameterSource("hash", entrada.getKey())
+                        .addValue("quantidade", entrada.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(SQL_LIBERAR, lote);
+        for (String hash : jdbcTemplate.queryForList(SQL_SEM_REFERENCIAS,
+                new MapSqlParameterSource("hashes", quantidadePorHash.keySet()), String.class)) {
+            semReferencia.add(urlPorHash.get(hash));
+        }
+        return semReferencia;
+    }
+    
+    // Conta mais uma referência ao hash (criando a linha se for o primeiro) e devolve o nome do arquivo
+    private String referenciar(String hash, String nomeArquivo, long tamanho) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("hash", hash)
+                .addValue("nomeArquivo", nomeArquivo)
+                .addValue("tamanhoBytes", tamanho)
+                .addValue("agora", Timestamp.valueOf(LocalDateTime.now()));
+        if (sequenciaService.isPostgreSQL()) {
+            return jdbcTemplate.queryForObject(SQL_REFERENCIAR_POSTGRESQL, parametros, String.class);
+        }
+        try {
+            jdbcTemplate.update(SQL_REFERENCIAR_H2, parametros);
+        } catch (DuplicateKeyException e) {
+            // O MERGE do H2 não é atômico: outro upload do mesmo conteúdo inseriu a linha antes
+            jdbcTemplate.update(SQL_REFERENCIAR_H2, parametros);
+        }
+        return jdbcTemplate.queryForObject(SQL_NOME_POR_HASH, parametros, String.class);
+    }
+    
+    // Extensão do arquivo enviado, em minúsculas; .jpg quando ausente ou com caracteres inesperados
+    private static String extensao(String nome) {
+        if (nome != null && nome.lastIndexOf('.') >= 0) {
+            String extensao = nome.substring(nome.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+            if (EXTENSAO.matcher(extensao).matches()) {
+                return extensao;
+            }
+        }
+        return ".jpg";
+    }
+    
+    /**
+     * SHA-256 do conteúdo quando o nome do arquivo é endereçado por conteúdo (original ou
+     * variante); null para os nomes antigos.
+     */
+    public static String hashDoNome(String nomeArquivo) {
+        Matcher matcher = NOME_POR_HASH.matcher(nomeArquivo);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+    
+    private static void removerTemporario(Path temporario) {
+        if (temporario == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporario);
+        } catch (IOException e) {
+            System.err.println("Erro ao remover arquivo temporário: " + temporario);
+        }
+    }
+    
+    /**
+     * Arquivo a servir para a largura pedida: a menor variante com largura maior ou igual, ou o
+     * próprio original quando ele já é estreito o bastante (ou a largura passa da maior variante).
+     * Retorna null se a variante ainda não foi gerada; nesse caso a geração é agendada.
+     */
+    public String nomeVariante(String nomeArquivo, int largura) {
+        Integer larguraVariante = ProcessamentoImagemService.larguraVariante(largura);
+        if (larguraVariante == null) {
+            return nomeArquivo;
+        }
+        Path original = diretorio.localizar(nomeArquivo);
+        if (original == null) {
+            return nomeArquivo;
+        }
+        Path variante = ProcessamentoImagemService.caminhoVariante(original, larguraVariante);
+        if (Files.exists(variante)) {
+            return variante.getFileName().toString();
+        }
+        int[] dimensoes = lerDimensoes(original);
+        if (dimensoes == null || dimensoes[0] <= larguraVariante) {
+            return nomeArquivo;
+        }
+        processamentoImagem.gerarVariantes(original);
+        return null;
+    }
+    
+    // Lê só o cabeçalho da imagem (largura e altura), sem decodificar os pixels
+    private static int[] lerDimensoes(Path arquivo) {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(arquivo.toFile())) {
+            if (entrada == null) {
+                return null;
+            }
+            Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+            if (!leitores.hasNext()) {
+                return null;
+            }
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(entrada, true, true);
+                return new int[]{leitor.getWidth(0), leitor.getHeight(0)};
+            } finally {
+                leitor.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Remove os arquivos das fotos e suas variantes. Arquivos endereçados por conteúdo só são
+     * removidos se continuarem sem referência (um upload pode ter voltado a usá-los depois da
+     * liberação), conferindo com a linha travada. Arquivos já inexistentes são ignorados, então
+     * a chamada pode ser repetida com segurança; lança exceção se algum arquivo não puder ser removido.
+     */
+    public void deletarFotos(List<String> fotoUrls) {
+        RuntimeException falha = null;
+        for (String url : fotoUrls) {
+            String nomeArquivo = url.substring(url.lastIndexOf("/") + 1);
+            if (!DiretorioFragmentado.nomeValido(nomeArquivo)) {
+                continue;
+            }
+            String hash = hashDoNome(nomeArquivo);
+            try {
+                if (hash == null) {
+                    excluirArquivos(nomeArquivo);
+                    continue;
+                }
+                transacao.executeWithoutResult(status -> {
+                    MapSqlParameterSource parametros = new MapSqlParameterSource("hash", hash);
+                    garantirLinha(hash, nomeArquivo);
+                    List<Integer> referencias = jdbcTemplate.queryForList(SQL_REFERENCIAS_TRAVANDO, parametros, Integer.class);
+                    if (!referencias.isEmpty() && referencias.get(0) > 0) {
+                        return;
+                    }
+                    excluirArquivos(nomeArquivo);
+                    jdbcTemplate.update(SQL_EXCLUIR_ARQUIVO, parametros);
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Erro ao deletar foto: " + url);
+                falha = e;
+            }
+        }
+        if (falha != null) {
+            throw new RuntimeException("Erro ao deletar fotos", falha);
+        }
+    }
+    
+    private void garantirLinha(String hash, String nomeArquivo) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("hash", hash)
+                .addValue("nomeArquivo", nomeArquivo)
+                .addValue("agora", Timestamp.valueOf(LocalDateTime.now()));
+        if (sequenciaService.isPostgreSQL()) {
+            jdbcTemplate.update(SQL_GARANTIR_LINHA_POSTGRESQL, parametros);
+            return;
+        }
+        try {
+            jdbcTemplate.update(SQL_GARANTIR_LINHA_H2, parametros);
+        } catch (DuplicateKeyException e) {
+            // Outro upload inseriu a linha antes; a conferência a seguir a encontra
+        }
+    }
+    
+    // Primeiro o local antigo, depois o fragmentado: se a migração mover o arquivo no meio, a
+    // segunda remoção o encontra no destino
+    private void excluirArquivos(String nomeArquivo) {
+        try {
+            for (Path caminhoArquivo : List.of(diretorio.caminhoLegado(nomeArquivo), diretorio.caminho(nomeArquivo))) {
+                Files.deleteIfExists(caminhoArquivo);
+                for (Path variante : ProcessamentoImagemService.caminhosVariantes(caminhoArquivo)) {
+                    Files.deleteIfExists(variante);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao deletar " + nomeArquivo, e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.bancoai.service;
+
+import com.bancoai.dto.CarroDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU, limitado por tamanho estimado em bytes, dos resultados de
+ * CarroService.buscarComFiltros.
+ *
+ * A chave inclui empresa, versão do catálogo e o filtro normalizado, então uma entrada
+ * nunca é servida depois de uma escrita na empresa. Além disso as entradas da empresa
+ * são removidas após o commit de cada escrita, para liberar memória imediatamente.
+ * As páginas devolvidas são compartilhadas entre requisições e não devem ser alteradas.
+ */
+@Service
+public class CacheBuscaCarroService {
+    
+    private final long capacidadeBytes;
+    private final long tamanhoMaximoEntrada;
+    
+    // LinkedHashMap em ordem de acesso: o primeiro elemento é o menos usado recentemente
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytesUsados = 0;
+    
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong remocoesPorCapacidade = new AtomicLong();
+    private final AtomicLong invalidacoes = new AtomicLong();
+    private final AtomicLong naoArmazenadas = new AtomicLong();
+    
+    public CacheBuscaCarroService(@Value("${app.busca.cache.max-bytes:33554432}") long capacidadeBytes) {
+        this.capacidadeBytes = capacidadeBytes;
+        // Uma página muito grande não pode expulsar o cache inteiro
+        this.tamanhoMaximoEntrada = capacidadeBytes / 8;
+    }
+    
+    public synchronized Page<CarroDTO> buscar(String chave) {
+        Entrada entrada = entradas.get(chave);
+        if (entrada == null) {
+            falhas.incrementAndGet();
+            return null;
+        }
+        acertos.incrementAndGet();
+        return entrada.pagina;
+    }
+    
+    public void guardar(String chave, Long empresaId, Page<CarroDTO> pagina) {
+        long bytes = estimarBytes(chave, pagina);
+        if (capacidadeBytes <= 0 || bytes > tamanhoMaximoEntrada) {
+            naoArmazenadas.incrementAndGet();
+            return;
+        }
+        synchronized (this) {
+            Entrada anterior = entradas.put(chave, new Entrada(empresaId, pagina, bytes));
+            if (anterior != null) {
+                bytesUsados -= anterior.bytes;
+            }
+            bytesUsados += bytes;
+            
+            Iterator<Entrada> iterator = entradas.values().iterator();
+            while (bytesUsados > capacidadeBytes && iterator.hasNext()) {
+                bytesUsados -= iterator.next().bytes;
+                iterator.remove();
+                remocoesPorCapacidade.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * Remove as entradas da empresa após o commit da transação atual
+     * (imediatamente, se não houver transação).
+     */
+    public void invalidarEmpresaAposCommit(Long empresaId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidarEmpresa(empresaId);
+                }
+            });
+        } else {
+            invalidarEmpresa(empresaId);
+        }
+    }
+    
+    public synchronized void invalidarEmpresa(Long empresaId) {
+        Iterator<Entrada> iterator = entradas.values().iterator();
+        while (iterator.hasNext()) {
+            Entrada entrada = iterator.next();
+            if (entrada.empresaId.equals(empresaId)) {
+                bytesUsados -= entrada.bytes;
+                iterator.remove();
+                invalidacoes.incrementAndGet();
+            }
+        }
+    }
+    
+    public synchronized Map<String, Object> obterMetricas() {
+        long totalAcertos = acertos.get();
+        long totalConsultas = totalAcertos + falhas.get();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("acertos", totalAcertos);
+        metricas.put("falhas", falhas.get());
+        metricas.put("taxaAcerto", totalConsultas == 0 ? 0.0 : (double) totalAcertos / totalConsultas);
+        metricas.put("remocoesPorCapacidade", remocoesPorCapacidade.get());
+        metricas.put("invalidacoes", invalidacoes.get());
+        metricas.put("naoArmazenadas", naoArmazenadas.get());
+        metricas.put("entradas", entradas.size());
+        metricas.put("bytesUsados", bytesUsados);
+        metricas.put("capacidadeBytes", capacidadeBytes);
+        return metricas;
+    }
+    
+    // Estimativa grosseira do heap ocupado: cabeçalhos de objetos + 2 bytes por caractere
+    private static long estimarBytes(String chave, Page<CarroDTO> pagina) {
+        long bytes = 200 + tamanhoString(chave);
+        for (CarroDTO carro : pagina.getContent()) {
+            bytes += 160;
+            bytes += tamanhoString(carro.getEmpresaNome());
+            bytes += tamanhoString(carro.getPlaca());
+            bytes += tamanhoString(carro.getModelo());
+            bytes += tamanhoString(carro.getMarca());
+            bytes += tamanhoString(carro.getObservacoes());
+            bytes += tamanhoString(carro.getDataCadastro());
+            bytes += tamanhoString(carro.getDataAtualizacao());
+            if (carro.getFotos() != null) {
+                bytes += 40;
+                for (String foto : carro.getFotos()) {
+                    bytes += tamanhoString(foto);
+                }
+            }
+            if (carro.getFotosDetalhes() != null) {
+                // Cada detalhe compartilha a URL com "fotos": conta o objeto e o hash (64 caracteres)
+                bytes += 40 + carro.getFotosDetalhes().size() * (80 + 40 + 2L * 64);
+            }
+        }
+        return bytes;
+    }
+    
+    private static long tamanhoString(String valor) {
+        return valor == null ? 0 : 40 + 2L * valor.length();
+    }
+    
+    private static class Entrada {
+        private final Long empresaId;
+        private final Page<CarroDTO> pagina;
+        private final long bytes;
+        
+        private Entrada(Long empresaId, Page<CarroDTO> pagina, long bytes) {
+            this.empresaId = empresaId;
+            this.pagina = pagina;
+            this.bytes = bytes;
+        }
+    }
+}
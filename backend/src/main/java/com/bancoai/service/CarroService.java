@@ -1,64 +1,122 @@
 package com.bancoai.service;
 
+import com.bancoai.dto.AlteracaoCarroDTO;
 import com.bancoai.dto.BuscaCarroDTO;
 import com.bancoai.dto.CarroDTO;
+import com.bancoai.dto.CarroProjecaoDTO;
+import com.bancoai.dto.FacetaDTO;
+import com.bancoai.dto.FacetasCarroDTO;
+import com.bancoai.dto.FotoCarroDTO;
+import com.bancoai.dto.PaginaCursorDTO;
 import com.bancoai.model.Carro;
+import com.bancoai.model.CarroAlteracao;
+import com.bancoai.model.CarroFoto;
 import com.bancoai.model.Empresa;
+import com.bancoai.repository.CarroFotoRepository;
 import com.bancoai.repository.CarroRepository;
 import com.bancoai.repository.EmpresaRepository;
+import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CarroService {
     
     private final CarroRepository carroRepository;
+    private final CarroFotoRepository carroFotoRepository;
     private final EmpresaRepository empresaRepository;
     private final AuditoriaService auditoriaService;
-    private final EmailService emailService;
+    private final OutboxService outbox;
+    private final ArmazenamentoFotoService armazenamentoFoto;
     private final UsuarioService usuarioService;
-    private final String uploadDir = "uploads/carros";
+    private final IndiceBuscaCarroService indiceBusca;
+    private final CatalogoVersaoService catalogoVersao;
+    private final AlteracaoCarroService alteracaoCarro;
+    private final CacheBuscaCarroService cacheBusca;
+    private final ExecucaoCompartilhadaService execucaoCompartilhada;
+    private final PurgaCarroService purgaCarro;
+    private final TransactionTemplate transacaoLeitura;
+    
+    private static final int LIMITE_PLACAS_LOTE = 500;
+    private static final int TAMANHO_BLOCO_STREAM = 200;
+    
+    // Limites das faixas das facetas: faixa i = [limite i-1, limite i), a última sem limite superior
+    private static final BigDecimal[] LIMITES_FAIXA_VALOR = {
+        new BigDecimal("30000"), new BigDecimal("50000"), new BigDecimal("80000"),
+        new BigDecimal("120000"), new BigDecimal("200000")
+    };
+    private static final Integer[] LIMITES_FAIXA_QUILOMETRAGEM = {20000, 50000, 100000, 150000};
+    
+    // Campos aceitos como chave de ordenação na paginação por cursor (precisam ser NOT NULL)
+    private static final Set<String> CAMPOS_ORDENACAO_CURSOR =
+            Set.of("dataCadastro", "quilometragem", "modelo", "marca", "placa");
+    
+    // Campos aceitos na atualização parcial (PATCH)
+    private static final Set<String> CAMPOS_PATCH =
+            Set.of("placa", "quilometragem", "modelo", "marca", "valor", "observacoes");
     
     public CarroService(CarroRepository carroRepository, 
+                       CarroFotoRepository carroFotoRepository,
                        EmpresaRepository empresaRepository,
                        AuditoriaService auditoriaService,
-                       EmailService emailService,
-                       UsuarioService usuarioService) {
+                       OutboxService outbox,
+                       ArmazenamentoFotoService armazenamentoFoto,
+                       UsuarioService usuarioService,
+                       IndiceBuscaCarroService indiceBusca,
+                       CatalogoVersaoService catalogoVersao,
+                       AlteracaoCarroService alteracaoCarro,
+                       CacheBuscaCarroService cacheBusca,
+                       ExecucaoCompartilhadaService execucaoCompartilhada,
+                       PurgaCarroService purgaCarro,
+                       PlatformTransactionManager transactionManager) {
         this.carroRepository = carroRepository;
+        this.carroFotoRepository = carroFotoRepository;
         this.empresaRepository = empresaRepository;
         this.auditoriaService = auditoriaService;
-        this.emailService = emailService;
+        this.outbox = outbox;
+        this.armazenamentoFoto = armazenamentoFoto;
         this.usuarioService = usuarioService;
-        createUploadDirectory();
-    }
-    
-    private void createUploadDirectory() {
-        try {
-            Path path = Paths.get(uploadDir);
-            if (!Files.exists(path)) {
-                Files.createDirectories(path);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao criar diretório de uploads", e);
-        }
+        this.indiceBusca = indiceBusca;
+        this.catalogoVersao = catalogoVersao;
+        this.alteracaoCarro = alteracaoCarro;
+        this.cacheBusca = cacheBusca;
+        this.execucaoCompartilhada = execucaoCompartilhada;
+        this.purgaCarro = purgaCarro;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
     }
     
     @Transactional
@@ -66,7 +124,7 @@ public class CarroService {
         Empresa empresa = empresaRepository.findById(empresaId)
                 .orElseThrow(() -> new RuntimeException("Empresa não encontrada"));
         
-        if (carroRepository.existsByPlacaAndEmpresaId(carroDTO.getPlaca().toUpperCase(), empresaId)) {
+        if (carroRepository.existsByPlacaNormalizadaAndEmpresaId(Carro.normalizarPlaca(carroDTO.getPlaca()), empresaId)) {
             throw new RuntimeException("Já existe um carro cadastrado com esta placa nesta empresa");
         }
         
@@ -80,34 +138,31 @@ public class CarroService {
         carro.setObservacoes(carroDTO.getObservacoes());
         
         if (fotos != null && !fotos.isEmpty()) {
-            List<String> fotoUrls = salvarFotos(fotos, carro.getPlaca());
-            carro.setFotos(fotoUrls);
+            adicionarFotos(carro, fotos);
         }
         
         Carro carroSalvo = carroRepository.save(carro);
+        indiceBusca.atualizarAposCommit(carroSalvo);
+        alteracaoCarro.registrarUpsert(carroSalvo);
         
         // Registrar auditoria
         auditoriaService.registrarAcao("CREATE", "CARRO", carroSalvo.getId(), 
                                      usuarioEmail, empresaId, null, carroSalvo, 
                                      "Carro criado");
         
-        // Enviar email de notificação se o usuário tiver habilitado
-        try {
-            com.bancoai.model.Usuario usuario = usuarioService.obterUsuarioCompleto(usuarioEmail);
-            if (usuario.getEmailNotificacoesAtivadas() != null && usuario.getEmailNotificacoesAtivadas()) {
-                emailService.enviarEmailNotificacaoCarro(
-                    usuario.getEmail(),
-                    usuario.getNome(),
-                    carroSalvo.getMarca(),
-                    carroSalvo.getModelo(),
-                    carroSalvo.getPlaca()
-                );
-            }
-        } catch (Exception e) {
-            // Não interromper o fluxo se houver erro ao enviar email
-            System.err.println("AVISO: Erro ao enviar email de notificação: " + e.getMessage());
+        // Email de notificação (se o usuário tiver habilitado): só entra no outbox, o envio
+        // acontece depois do commit, fora da requisição
+        com.bancoai.model.Usuario usuario = usuarioService.obterUsuarioCompleto(usuarioEmail);
+        if (usuario.getEmailNotificacoesAtivadas() != null && usuario.getEmailNotificacoesAtivadas()) {
+            outbox.registrar(OutboxService.EMAIL_NOTIFICACAO_CARRO, new OutboxService.NotificacaoCarro(
+                    usuario.getEmail(), usuario.getNome(),
+                    carroSalvo.getMarca(), carroSalvo.getModelo(), carroSalvo.getPlaca()));
         }
         
+        // Por último: o UPDATE da versão força o flush, e os INSERTs pendentes
+        // (carro, fotos, auditoria e outbox) saem juntos em batch
+        catalogoVersao.incrementar(empresaId);
+        
         return converterParaDTO(carroSalvo);
     }
     
@@ -124,8 +179,9 @@ public class CarroService {
         // Salvar dados anteriores para auditoria
         CarroDTO dadosAnteriores = converterParaDTO(carro);
         
-        if (!carro.getPlaca().equals(carroDTO.getPlaca().toUpperCase()) && 
-            carroRepository.existsByPlacaAndEmpresaId(carroDTO.getPlaca().toUpperCase(), empresaId)) {
+        String placaNormalizada = Carro.normalizarPlaca(carroDTO.getPlaca());
+        if (!placaNormalizada.equals(carro.getPlacaNormalizada()) && 
+            carroRepository.existsByPlacaNormalizadaAndEmpresaId(placaNormalizada, empresaId)) {
             throw new RuntimeException("Já existe um carro cadastrado com esta placa nesta empresa");
         }
         
@@ -136,29 +192,173 @@ public class CarroService {
         carro.setValor(carroDTO.getValor());
         carro.setObservacoes(carroDTO.getObservacoes());
         
+        // Só as fotos novas são inseridas (uma linha cada); as existentes não são regravadas
         if (novasFotos != null && !novasFotos.isEmpty()) {
-            List<String> fotoUrls = salvarFotos(novasFotos, carro.getPlaca());
-            carro.getFotos().addAll(fotoUrls);
+            adicionarFotos(carro, novasFotos);
         }
         
         Carro carroAtualizado = carroRepository.save(carro);
+        indiceBusca.atualizarAposCommit(carroAtualizado);
+        alteracaoCarro.registrarUpsert(carroAtualizado);
         
         // Registrar auditoria
         auditoriaService.registrarAcao("UPDATE", "CARRO", carroAtualizado.getId(), 
                                      usuarioEmail, empresaId, dadosAnteriores, 
                                      converterParaDTO(carroAtualizado), 
                                      "Carro atualizado");
+        catalogoVersao.incrementar(empresaId);
         
         return converterParaDTO(carroAtualizado);
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * Atualização parcial (JSON Merge Patch, RFC 7386): só os campos presentes no patch são
+     * alterados e null apaga o valor (apenas valor e observacoes aceitam null). Com @DynamicUpdate
+     * o UPDATE grava só as colunas que mudaram, e a auditoria registra só esses campos.
+     * Um patch sem mudança efetiva não grava nada.
+     */
+    @Transactional
+    public CarroDTO atualizarParcial(Long id, JsonNode patch, Long empresaId, String usuarioEmail) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("O patch deve ser um objeto JSON");
+        }
+        Iterator<String> nomes = patch.fieldNames();
+        while (nomes.hasNext()) {
+            String campo = nomes.next();
+            if (!CAMPOS_PATCH.contains(campo)) {
+                throw new IllegalArgumentException("Campo não pode ser alterado: " + campo);
+            }
+        }
+        
+        Carro carro = buscarCarroDaEmpresa(id, empresaId);
+        Map<String, Object> anteriores = new LinkedHashMap<>();
+        Map<String, Object> novos = new LinkedHashMap<>();
+        
+        if (patch.has("placa")) {
+            String placa = lerTexto(patch, "placa", 10).toUpperCase();
+            if (!placa.equals(carro.getPlaca())) {
+                String placaNormalizada = Carro.normalizarPlaca(placa);
+                if (!placaNormalizada.equals(carro.getPlacaNormalizada()) &&
+                    carroRepository.existsByPlacaNormalizadaAndEmpresaId(placaNormalizada, empresaId)) {
+                    throw new RuntimeException("Já existe um carro cadastrado com esta placa nesta empresa");
+                }
+                registrarMudanca(anteriores, novos, "placa", carro.getPlaca(), placa);
+                carro.setPlaca(placa);
+            }
+        }
+        if (patch.has("quilometragem")) {
+            JsonNode valor = patch.get("quilometragem");
+            if (!valor.canConvertToInt() || !valor.isIntegralNumber() || valor.intValue() < 0) {
+                throw new IllegalArgumentException("Quilometragem deve ser um número inteiro maior ou igual a zero");
+            }
+            if (valor.intValue() != carro.getQuilometragem()) {
+                registrarMudanca(anteriores, novos, "quilometragem", carro.getQuilometragem(), valor.intValue());
+                carro.setQuilometragem(valor.intValue());
+            }
+        }
+        if (patch.has("modelo")) {
+            String modelo = lerTexto(patch, "modelo", 100);
+            if (!modelo.equals(carro.getModelo())) {
+                registrarMudanca(anteriores, novos, "modelo", carro.getModelo(), modelo);
+                carro.setModelo(modelo);
+            }
+        }
+        if (patch.has("marca")) {
+            String marca = lerTexto(patch, "marca", 50);
+            if (!marca.equals(carro.getMarca())) {
+                registrarMudanca(anteriores, novos, "marca", carro.getMarca(), marca);
+                carro.setMarca(marca);
+            }
+        }
+        if (patch.has("valor")) {
+            JsonNode valor = patch.get("valor");
+            if (!valor.isNull() && (!valor.isNumber() || valor.decimalValue().signum() < 0)) {
+                throw new IllegalArgumentException("Valor deve ser um número maior ou igual a zero");
+            }
+            // Mesma escala da coluna, para 89900 e 89900.00 não contarem como mudança
+            BigDecimal novoValor = valor.isNull() ? null : valor.decimalValue().setScale(2, RoundingMode.HALF_UP);
+            boolean igual = novoValor == null ? carro.getValor() == null
+                    : carro.getValor() != null && novoValor.compareTo(carro.getValor()) == 0;
+            if (!igual) {
+                registrarMudanca(anteriores, novos, "valor", carro.getValor(), novoValor);
+                carro.setValor(novoValor);
+            }
+        }
+        if (patch.has("observacoes")) {
+            JsonNode valor = patch.get("observacoes");
+            if (!valor.isNull() && !valor.isTextual()) {
+                throw new IllegalArgumentException("Observações devem ser texto");
+            }
+            String observacoes = valor.isNull() ? null : valor.textValue();
+            if (!Objects.equals(observacoes, carro.getObservacoes())) {
+                registrarMudanca(anteriores, novos, "observacoes", carro.getObservacoes(), observacoes);
+                carro.setObservacoes(observacoes);
+            }
+        }
+        
+        if (novos.isEmpty()) {
+            return converterParaDTO(carro);
+        }
+        
+        // O índice de busca só guarda placa, modelo e marca
+        if (novos.containsKey("placa") || novos.containsKey("modelo") || novos.containsKey("marca")) {
+            indiceBusca.atualizarAposCommit(carro);
+        }
+        alteracaoCarro.registrarUpsert(carro);
+        auditoriaService.registrarAcao("UPDATE", "CARRO", carro.getId(), usuarioEmail, empresaId,
+                                     anteriores, novos, "Carro atualizado parcialmente: " + String.join(", ", novos.keySet()));
+        // O UPDATE da versão força o flush: o UPDATE do carro (só as colunas alteradas) sai junto
+        catalogoVersao.incrementar(empresaId);
+        
+        return converterParaDTO(carro);
+    }
+    
+    private static String lerTexto(JsonNode patch, String campo, int tamanhoMaximo) {
+        JsonNode valor = patch.get(campo);
+        if (!valor.isTextual() || valor.textValue().isBlank()) {
+            throw new IllegalArgumentException("Campo " + campo + " é obrigatório e deve ser texto");
+        }
+        if (valor.textValue().length() > tamanhoMaximo) {
+            throw new IllegalArgumentException("Campo " + campo + " deve ter no máximo " + tamanhoMaximo + " caracteres");
+        }
+        return valor.textValue();
+    }
+    
+    private static void registrarMudanca(Map<String, Object> anteriores, Map<String, Object> novos,
+                                         String campo, Object valorAnterior, Object valorNovo) {
+        anteriores.put(campo, valorAnterior);
+        novos.put(campo, valorNovo);
+    }
+    
+    /**
+     * Busca paginada com filtros, com cache de resultados por empresa + versão do catálogo
+     * + filtro normalizado. Sem transação no caminho do cache: um acerto custa só a leitura
+     * da versão do catálogo. Em uma falha, requisições idênticas simultâneas esperam a
+     * mesma execução em vez de abrir outra transação.
+     */
     public Page<CarroDTO> buscarComFiltros(BuscaCarroDTO buscaDTO, Long empresaId) {
         // Validar empresaId
         if (empresaId == null) {
             throw new RuntimeException("Empresa não encontrada");
         }
         
+        // A versão é lida antes da consulta: se uma escrita commitar no meio, o resultado
+        // fica guardado sob a versão antiga e nunca mais é servido
+        String chave = criarChaveCache(buscaDTO, empresaId, catalogoVersao.obterVersao(empresaId));
+        Page<CarroDTO> emCache = cacheBusca.buscar(chave);
+        if (emCache != null) {
+            return emCache;
+        }
+        
+        // Buscas idênticas simultâneas (mesma chave) compartilham uma única consulta/conexão
+        return execucaoCompartilhada.executar("busca|" + chave, () -> {
+            Page<CarroDTO> resultado = transacaoLeitura.execute(status -> executarBuscaComFiltros(buscaDTO, empresaId));
+            cacheBusca.guardar(chave, empresaId, resultado);
+            return resultado;
+        });
+    }
+    
+    private Page<CarroDTO> executarBuscaComFiltros(BuscaCarroDTO buscaDTO, Long empresaId) {
         // Preparar ordenação
         String ordenarPor = buscaDTO.getOrdenarPor() != null ? buscaDTO.getOrdenarPor() : "dataCadastro";
         String direcao = buscaDTO.getDirecao() != null ? buscaDTO.getDirecao() : "DESC";
@@ -175,27 +375,212 @@ public class CarroService {
         Integer tamanho = buscaDTO.getTamanho() != null ? buscaDTO.getTamanho() : 20;
         Pageable pageable = PageRequest.of(pagina, tamanho, sort);
         
-        // Usar Specification para construir query dinamicamente (evita problemas com NULL no PostgreSQL)
-        Specification<Carro> spec = (root, query, cb) -> {
+        // Executar query usando Specification: projeção da página + contagem + fotos da página
+        Specification<Carro> spec = criarSpecification(buscaDTO, empresaId);
+        List<CarroProjecaoDTO> carros = carroRepository.buscarProjecoes(spec, sort, pageable.getOffset(), tamanho);
+        
+        // A contagem só é executada quando não dá para deduzir o total pela própria página
+        return PageableExecutionUtils.getPage(montarDTOs(carros), pageable, () -> carroRepository.count(spec));
+    }
+    
+    // Chave do cache: filtros com os mesmos defaults e a mesma normalização aplicados na consulta
+    private String criarChaveCache(BuscaCarroDTO buscaDTO, Long empresaId, long versao) {
+        return empresaId + "|" + versao
+                + "|" + normalizarFiltroTexto(buscaDTO.getPlaca())
+                + "|" + normalizarFiltroTexto(buscaDTO.getModelo())
+                + "|" + normalizarFiltroTexto(buscaDTO.getMarca())
+                + "|" + buscaDTO.getQuilometragemMin()
+                + "|" + buscaDTO.getQuilometragemMax()
+                + "|" + (buscaDTO.getValorMin() != null ? buscaDTO.getValorMin().stripTrailingZeros().toPlainString() : null)
+                + "|" + (buscaDTO.getValorMax() != null ? buscaDTO.getValorMax().stripTrailingZeros().toPlainString() : null)
+                + "|" + buscaDTO.getDataInicio()
+                + "|" + buscaDTO.getDataFim()
+                + "|" + (buscaDTO.getOrdenarPor() != null ? buscaDTO.getOrdenarPor() : "dataCadastro")
+                + "|" + (buscaDTO.getDirecao() == null || "DESC".equalsIgnoreCase(buscaDTO.getDirecao()) ? "DESC" : "ASC")
+                + "|" + (buscaDTO.getPagina() != null ? buscaDTO.getPagina() : 0)
+                + "|" + (buscaDTO.getTamanho() != null ? buscaDTO.getTamanho() : 20);
+    }
+    
+    private static String normalizarFiltroTexto(String valor) {
+        return valor == null ? "" : valor.trim().toUpperCase();
+    }
+    
+    /**
+     * Contagens por marca, modelo, faixa de valor e faixa de quilometragem para os filtros
+     * informados (paginação e ordenação são ignoradas). Todas as facetas saem de um único
+     * GROUP BY (marca, modelo, faixaValor, faixaQuilometragem); os totais de cada faceta
+     * são somados em memória a partir desses grupos.
+     */
+    public FacetasCarroDTO calcularFacetas(BuscaCarroDTO buscaDTO, Long empresaId) {
+        if (empresaId == null) {
+            throw new RuntimeException("Empresa não encontrada");
+        }
+        String chave = "facetas|" + criarChaveCache(buscaDTO, empresaId, catalogoVersao.obterVersao(empresaId));
+        return execucaoCompartilhada.executar(chave, () -> transacaoLeitura.execute(status -> {
+            List<Object[]> grupos = carroRepository.contarFacetas(
+                    criarSpecification(buscaDTO, empresaId), LIMITES_FAIXA_VALOR, LIMITES_FAIXA_QUILOMETRAGEM);
+            return montarFacetas(grupos);
+        }));
+    }
+    
+    private FacetasCarroDTO montarFacetas(List<Object[]> grupos) {
+        Map<String, Long> marcas = new HashMap<>();
+        Map<String, Long> modelos = new HashMap<>();
+        long[] faixasValor = new long[LIMITES_FAIXA_VALOR.length + 1];
+        long[] faixasQuilometragem = new long[LIMITES_FAIXA_QUILOMETRAGEM.length + 1];
+        long semValor = 0;
+        long total = 0;
+        
+        for (Object[] grupo : grupos) {
+            long quantidade = ((Number) grupo[4]).longValue();
+            marcas.merge((String) grupo[0], quantidade, Long::sum);
+            modelos.merge((String) grupo[1], quantidade, Long::sum);
+            int faixaValor = ((Number) grupo[2]).intValue();
+            if (faixaValor < 0) {
+                semValor += quantidade;
+            } else {
+                faixasValor[faixaValor] += quantidade;
+            }
+            // quilometragem é NOT NULL, a faixa -1 não ocorre
+            faixasQuilometragem[Math.max(((Number) grupo[3]).intValue(), 0)] += quantidade;
+            total += quantidade;
+        }
+        
+        FacetasCarroDTO facetas = new FacetasCarroDTO();
+        facetas.setTotal(total);
+        facetas.setMarcas(ordenarPorQuantidade(marcas));
+        facetas.setModelos(ordenarPorQuantidade(modelos));
+        
+        List<FacetaDTO> valor = montarFaixas(faixasValor, LIMITES_FAIXA_VALOR);
+        if (semValor > 0) {
+            valor.add(new FacetaDTO("Sem valor", semValor, null, null));
+        }
+        facetas.setFaixasValor(valor);
+        facetas.setFaixasQuilometragem(montarFaixas(faixasQuilometragem, LIMITES_FAIXA_QUILOMETRAGEM));
+        return facetas;
+    }
+    
+    private List<FacetaDTO> ordenarPorQuantidade(Map<String, Long> contagens) {
+        return contagens.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(entrada -> new FacetaDTO(entrada.getKey(), entrada.getValue(), null, null))
+                .collect(Collectors.toList());
+    }
+    
+    private <T extends Number> List<FacetaDTO> montarFaixas(long[] contagens, T[] limites) {
+        List<FacetaDTO> faixas = new ArrayList<>();
+        for (int i = 0; i < contagens.length; i++) {
+            BigDecimal minimo = i > 0 ? new BigDecimal(limites[i - 1].toString()) : null;
+            BigDecimal maximo = i < limites.length ? new BigDecimal(limites[i].toString()) : null;
+            String rotulo = minimo == null ? "Até " + maximo.toPlainString()
+                    : maximo == null ? minimo.toPlainString() + " ou mais"
+                    : minimo.toPlainString() + " a " + maximo.toPlainString();
+            faixas.add(new FacetaDTO(rotulo, contagens[i], minimo, maximo));
+        }
+        return faixas;
+    }
+    
+    /**
+     * Busca com paginação por cursor (keyset).
+     * Em vez de OFFSET, a página seguinte é obtida com um predicado de "seek" sobre
+     * a chave de ordenação (campo, id) do último carro da página anterior, então a
+     * página N custa o mesmo que a primeira. A contagem total só é executada
+     * quando buscaDTO.contarTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<CarroDTO> buscarComCursor(BuscaCarroDTO buscaDTO, Long empresaId) {
+        if (empresaId == null) {
+            throw new RuntimeException("Empresa não encontrada");
+        }
+        
+        String ordenarPor = buscaDTO.getOrdenarPor() != null ? buscaDTO.getOrdenarPor() : "dataCadastro";
+        String direcao = buscaDTO.getDirecao() != null ? buscaDTO.getDirecao() : "DESC";
+        boolean descendente = "DESC".equalsIgnoreCase(direcao);
+        int tamanho = buscaDTO.getTamanho() != null && buscaDTO.getTamanho() > 0 ? buscaDTO.getTamanho() : 20;
+        
+        // "valor" aceita NULL e por isso não serve como chave de seek
+        if (!CAMPOS_ORDENACAO_CURSOR.contains(ordenarPor)) {
+            throw new IllegalArgumentException("Ordenação por '" + ordenarPor + "' não é suportada no modo cursor");
+        }
+        
+        Specification<Carro> spec = criarSpecification(buscaDTO, empresaId);
+        Specification<Carro> specPagina = spec;
+        if (buscaDTO.getCursor() != null && !buscaDTO.getCursor().isBlank()) {
+            specPagina = spec.and(criarPredicadoSeek(buscaDTO.getCursor(), ordenarPor, descendente));
+        }
+        
+        Sort.Direction direction = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, ordenarPor).and(Sort.by(direction, "id"));
+        
+        // Busca um registro a mais só para saber se existe próxima página
+        List<CarroProjecaoDTO> carros = carroRepository.buscarProjecoes(specPagina, sort, 0, tamanho + 1);
+        boolean temProximo = carros.size() > tamanho;
+        if (temProximo) {
+            carros = carros.subList(0, tamanho);
+        }
+        
+        String proximoCursor = temProximo
+                ? codificarCursor(ordenarPor, direction, carros.get(carros.size() - 1))
+                : null;
+        Long totalElementos = Boolean.TRUE.equals(buscaDTO.getContarTotal()) ? carroRepository.count(spec) : null;
+        
+        List<CarroDTO> carrosDTO = montarDTOs(carros);
+        
+        return new PaginaCursorDTO<>(carrosDTO, carrosDTO.size(), temProximo, proximoCursor, totalElementos);
+    }
+    
+    /**
+     * Ids dos carros da empresa que atendem aos filtros da busca (paginação e ordenação
+     * são ignoradas), para as operações em lote
+     */
+    @Transactional(readOnly = true)
+    public List<Long> listarIdsPorFiltro(BuscaCarroDTO buscaDTO, Long empresaId) {
+        return carroRepository.listarIds(criarSpecification(buscaDTO, empresaId));
+    }
+    
+    // LIKE de substring literal: _, % e \ digitados no filtro não são curingas, a mesma semântica
+    // do String.contains do índice de busca (senão o resultado mudaria conforme o caminho usado)
+    private static String padraoContem(String filtro) {
+        String literal = filtro.trim().toUpperCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + literal + "%";
+    }
+    
+    // Usar Specification para construir query dinamicamente (evita problemas com NULL no PostgreSQL)
+    private Specification<Carro> criarSpecification(BuscaCarroDTO buscaDTO, Long empresaId) {
+        // Filtros de substring resolvidos pelo índice de trigramas em memória (quando disponível)
+        Optional<IndiceBuscaCarroService.Candidatos> candidatos = indiceBusca.buscarCandidatos(
+                empresaId, buscaDTO.getPlaca(), buscaDTO.getModelo(), buscaDTO.getMarca());
+        
+        return (root, query, cb) -> {
             List<Predicate> predicates = new java.util.ArrayList<>();
             
             // Filtro obrigatório: empresa
             predicates.add(cb.equal(root.get("empresa").get("id"), empresaId));
             
+            // Candidatos do índice mais os alterados desde a última sincronização (que o índice
+            // pode não conhecer); o LIKE abaixo continua valendo e é quem decide
+            if (candidatos.isPresent()) {
+                Set<Long> ids = candidatos.get().ids();
+                Predicate alteradosRecentemente = cb.greaterThan(root.get("dataAtualizacao"), candidatos.get().alteradosDesde());
+                predicates.add(ids.isEmpty()
+                    ? alteradosRecentemente
+                    : cb.or(root.get("id").in(ids), alteradosRecentemente));
+            }
+            
             // Filtros opcionais (só adiciona se não for NULL)
             if (buscaDTO.getPlaca() != null && !buscaDTO.getPlaca().trim().isEmpty()) {
-                String placaUpper = "%" + buscaDTO.getPlaca().trim().toUpperCase() + "%";
-                predicates.add(cb.like(cb.upper(root.get("placa")), placaUpper));
+                predicates.add(cb.like(cb.upper(root.get("placa")), padraoContem(buscaDTO.getPlaca()), '\\'));
             }
             
             if (buscaDTO.getModelo() != null && !buscaDTO.getModelo().trim().isEmpty()) {
-                String modeloUpper = "%" + buscaDTO.getModelo().trim().toUpperCase() + "%";
-                predicates.add(cb.like(cb.upper(root.get("modelo")), modeloUpper));
+                predicates.add(cb.like(cb.upper(root.get("modelo")), padraoContem(buscaDTO.getModelo()), '\\'));
             }
             
             if (buscaDTO.getMarca() != null && !buscaDTO.getMarca().trim().isEmpty()) {
-                String marcaUpper = "%" + buscaDTO.getMarca().trim().toUpperCase() + "%";
-                predicates.add(cb.like(cb.upper(root.get("marca")), marcaUpper));
+                predicates.add(cb.like(cb.upper(root.get("marca")), padraoContem(buscaDTO.getMarca()), '\\'));
             }
             
             if (buscaDTO.getQuilometragemMin() != null) {
@@ -224,99 +609,252 @@ public class CarroService {
             
             return cb.and(predicates.toArray(new Predicate[0]));
         };
+    }
+    
+    /**
+     * Cursor opaco: Base64 (URL-safe) de "campo|direcao|id|valor", onde valor é a chave
+     * de ordenação do último carro da página. O valor fica por último porque modelo
+     * e marca podem conter o separador.
+     */
+    private String codificarCursor(String ordenarPor, Sort.Direction direcao, CarroProjecaoDTO ultimo) {
+        Object valor = switch (ordenarPor) {
+            case "dataCadastro" -> ultimo.getDataCadastro();
+            case "quilometragem" -> ultimo.getQuilometragem();
+            case "modelo" -> ultimo.getModelo();
+            case "marca" -> ultimo.getMarca();
+            default -> ultimo.getPlaca();
+        };
+        String conteudo = ordenarPor + "|" + direcao.name() + "|" + ultimo.getId() + "|" + valor;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(conteudo.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Specification<Carro> criarPredicadoSeek(String cursor, String ordenarPor, boolean descendente) {
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (partes.length != 4 || !partes[0].equals(ordenarPor)
+                || !partes[1].equals(descendente ? "DESC" : "ASC")) {
+            throw new IllegalArgumentException("Cursor inválido ou gerado com outra ordenação");
+        }
         
-        // Executar query usando Specification
-        Page<Carro> carrosPage = carroRepository.findAll(spec, pageable);
-        
-        // Converter para DTO
-        List<CarroDTO> carrosDTO = carrosPage.getContent().stream()
-            .map(this::converterParaDTO)
-            .collect(Collectors.toList());
+        Long ultimoId;
+        Comparable valor;
+        try {
+            ultimoId = Long.valueOf(partes[2]);
+            valor = switch (ordenarPor) {
+                case "dataCadastro" -> LocalDateTime.parse(partes[3]);
+                case "quilometragem" -> Integer.valueOf(partes[3]);
+                default -> partes[3];
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
         
-        return new PageImpl<>(carrosDTO, pageable, carrosPage.getTotalElements());
+        // DESC: (campo < valor) OR (campo = valor AND id < ultimoId); ASC é o simétrico
+        return (root, query, cb) -> {
+            jakarta.persistence.criteria.Path<Comparable> campo = root.get(ordenarPor);
+            jakarta.persistence.criteria.Path<Long> id = root.get("id");
+            return descendente
+                ? cb.or(cb.lessThan(campo, valor), cb.and(cb.equal(campo, valor), cb.lessThan(id, ultimoId)))
+                : cb.or(cb.greaterThan(campo, valor), cb.and(cb.equal(campo, valor), cb.greaterThan(id, ultimoId)));
+        };
     }
     
     @Transactional(readOnly = true)
     public List<CarroDTO> listarTodos(Long empresaId) {
-        return carroRepository.findByEmpresaId(empresaId).stream()
-                .map(this::converterParaDTO)
-                .collect(Collectors.toList());
+        // Duas consultas no total: carros da empresa (projeção) e fotos da empresa
+        return montarDTOs(carroRepository.listarProjecoesPorEmpresa(empresaId),
+                          agruparFotos(carroFotoRepository.buscarPorEmpresa(empresaId)));
     }
     
     @Transactional(readOnly = true)
     public CarroDTO buscarPorId(Long id, Long empresaId) {
-        Carro carro = carroRepository.findById(id)
+        CarroProjecaoDTO carro = carroRepository.buscarProjecaoPorId(id)
                 .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
         
-        if (!carro.getEmpresa().getId().equals(empresaId)) {
+        if (!carro.getEmpresaId().equals(empresaId)) {
             throw new RuntimeException("Carro não pertence a esta empresa");
         }
         
-        return converterParaDTO(carro);
+        return montarDTOs(List.of(carro)).get(0);
     }
     
     @Transactional(readOnly = true)
     public CarroDTO buscarPorPlaca(String placa, Long empresaId) {
-        Carro carro = carroRepository.findByPlacaAndEmpresaId(placa.toUpperCase(), empresaId)
+        CarroProjecaoDTO carro = carroRepository.buscarProjecaoPorPlaca(Carro.normalizarPlaca(placa), empresaId)
                 .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
-        return converterParaDTO(carro);
+        return montarDTOs(List.of(carro)).get(0);
     }
     
+    /**
+     * Exclusão lógica: marca data_exclusao e libera a placa em um único UPDATE. A linha, as fotos
+     * e os arquivos ficam para o PurgaCarroService; até lá o carro pode ser restaurado.
+     */
     @Transactional
     public void deletarCarro(Long id, Long empresaId, String usuarioEmail) {
-        Carro carro = carroRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
-        
-        if (!carro.getEmpresa().getId().equals(empresaId)) {
-            throw new RuntimeException("Carro não pertence a esta empresa");
-        }
+        Carro carro = buscarCarroDaEmpresa(id, empresaId);
         
         // Salvar dados para auditoria
         CarroDTO dadosAnteriores = converterParaDTO(carro);
         
-        // Deletar fotos do sistema de arquivos
-        deletarFotos(carro.getFotos());
-        
-        carroRepository.delete(carro);
+        carro.setDataExclusao(LocalDateTime.now());
+        indiceBusca.removerAposCommit(empresaId, id);
+        alteracaoCarro.registrarExclusao(id, empresaId, carro.getPlaca());
         
         // Registrar auditoria
         auditoriaService.registrarAcao("DELETE", "CARRO", id, usuarioEmail, empresaId, 
                                      dadosAnteriores, null, "Carro deletado");
+        catalogoVersao.incrementar(empresaId);
     }
     
-    private List<String> salvarFotos(List<MultipartFile> fotos, String placa) {
-        return fotos.stream()
-                .filter(foto -> !foto.isEmpty())
-                .map(foto -> salvarFoto(foto, placa))
-                .collect(Collectors.toList());
+    /**
+     * Desfaz uma exclusão feita dentro da janela de retenção (app.carros.exclusao.retencao-horas).
+     */
+    @Transactional
+    public CarroDTO restaurarCarro(Long id, Long empresaId, String usuarioEmail) {
+        LocalDateTime limite = purgaCarro.limiteRestauracao();
+        String placa = carroRepository.buscarPlacaExcluidoDesde(id, empresaId, limite)
+                .orElseThrow(() -> new RuntimeException("Carro excluído não encontrado ou fora do prazo de restauração"));
+        
+        String placaNormalizada = Carro.normalizarPlaca(placa);
+        if (carroRepository.existsByPlacaNormalizadaAndEmpresaId(placaNormalizada, empresaId)) {
+            throw new IllegalArgumentException("Já existe outro carro cadastrado com a placa " + placa + " nesta empresa");
+        }
+        if (carroRepository.restaurar(id, placaNormalizada, LocalDateTime.now(), limite) == 0) {
+            throw new RuntimeException("Carro excluído não encontrado ou fora do prazo de restauração");
+        }
+        
+        Carro carro = buscarCarroDaEmpresa(id, empresaId);
+        CarroDTO dadosNovos = converterParaDTO(carro);
+        indiceBusca.atualizarAposCommit(carro);
+        alteracaoCarro.registrarUpsert(carro);
+        auditoriaService.registrarAcao("RESTORE", "CARRO", id, usuarioEmail, empresaId,
+                                     null, dadosNovos, "Carro restaurado");
+        catalogoVersao.incrementar(empresaId);
+        return dadosNovos;
     }
     
-    private String salvarFoto(MultipartFile foto, String placa) {
-        try {
-            String extensao = foto.getOriginalFilename() != null 
-                    ? foto.getOriginalFilename().substring(foto.getOriginalFilename().lastIndexOf("."))
-                    : ".jpg";
-            String nomeArquivo = placa + "_" + UUID.randomUUID().toString() + extensao;
-            Path caminhoArquivo = Paths.get(uploadDir, nomeArquivo);
-            
-            Files.copy(foto.getInputStream(), caminhoArquivo, StandardCopyOption.REPLACE_EXISTING);
-            
-            return "/api/carros/fotos/" + nomeArquivo;
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao salvar foto", e);
+    /**
+     * Remove uma foto do carro: apaga só a linha da foto (as demais mantêm a ordem)
+     * e agenda a remoção do arquivo para depois do commit.
+     */
+    @Transactional
+    public CarroDTO removerFoto(Long id, Long fotoId, Long empresaId, String usuarioEmail) {
+        Carro carro = buscarCarroDaEmpresa(id, empresaId);
+        CarroFoto foto = carro.getFotos().stream()
+                .filter(f -> f.getId().equals(fotoId))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Foto não encontrada"));
+        
+        CarroDTO dadosAnteriores = converterParaDTO(carro);
+        carro.getFotos().remove(foto);
+        agendarExclusaoFotos(armazenamentoFoto.liberarFotos(List.of(foto.getUrl())));
+        return registrarAlteracaoFotos(carro, usuarioEmail, dadosAnteriores, "Foto removida");
+    }
+    
+    /**
+     * Inclui no fim do carro fotos já recebidas fora da transação (upload em streaming, ver
+     * ArmazenamentoFotoService.receberFotos); a transação só registra as referências e move os arquivos.
+     */
+    @Transactional
+    public CarroDTO adicionarFotosRecebidas(Long id, List<ArmazenamentoFotoService.FotoRecebida> recebidas,
+                                            Long empresaId, String usuarioEmail) {
+        Carro carro = carroRepository.findByIdParaAtualizar(id)
+                .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
+        if (!carro.getEmpresa().getId().equals(empresaId)) {
+            throw new RuntimeException("Carro não pertence a esta empresa");
         }
+        CarroDTO dadosAnteriores = converterParaDTO(carro);
+        anexarFotos(carro, recebidas);
+        // As fotos novas precisam dos ids na resposta e na auditoria
+        carroRepository.flush();
+        return registrarAlteracaoFotos(carro, usuarioEmail, dadosAnteriores, "Fotos adicionadas");
     }
     
-    private void deletarFotos(List<String> fotoUrls) {
-        fotoUrls.forEach(url -> {
-            try {
-                String nomeArquivo = url.substring(url.lastIndexOf("/") + 1);
-                Path caminhoArquivo = Paths.get(uploadDir, nomeArquivo);
-                Files.deleteIfExists(caminhoArquivo);
-            } catch (IOException e) {
-                System.err.println("Erro ao deletar foto: " + url);
+    /**
+     * Define a ordem de exibição das fotos. A lista deve conter todos os ids das fotos do carro;
+     * só as fotos que mudaram de posição são atualizadas.
+     */
+    @Transactional
+    public CarroDTO reordenarFotos(Long id, List<Long> fotoIds, Long empresaId, String usuarioEmail) {
+        Carro carro = buscarCarroDaEmpresa(id, empresaId);
+        Map<Long, CarroFoto> fotosPorId = carro.getFotos().stream()
+                .collect(Collectors.toMap(CarroFoto::getId, foto -> foto));
+        if (fotoIds == null || fotoIds.size() != fotosPorId.size()
+                || !fotosPorId.keySet().equals(new HashSet<>(fotoIds))) {
+            throw new IllegalArgumentException("Informe todos os ids das fotos do carro, sem repetição");
+        }
+        
+        CarroDTO dadosAnteriores = converterParaDTO(carro);
+        for (int ordem = 0; ordem < fotoIds.size(); ordem++) {
+            CarroFoto foto = fotosPorId.get(fotoIds.get(ordem));
+            if (foto.getOrdem() != ordem) {
+                foto.setOrdem(ordem);
             }
-        });
+        }
+        carro.getFotos().sort(Comparator.comparing(CarroFoto::getOrdem));
+        return registrarAlteracaoFotos(carro, usuarioEmail, dadosAnteriores, "Fotos reordenadas");
+    }
+    
+    private Carro buscarCarroDaEmpresa(Long id, Long empresaId) {
+        Carro carro = carroRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
+        if (!carro.getEmpresa().getId().equals(empresaId)) {
+            throw new RuntimeException("Carro não pertence a esta empresa");
+        }
+        return carro;
+    }
+    
+    // As fotos fazem parte do carro no feed de alterações e no cache de busca
+    private CarroDTO registrarAlteracaoFotos(Carro carro, String usuarioEmail, CarroDTO dadosAnteriores, String observacao) {
+        Long empresaId = carro.getEmpresa().getId();
+        CarroDTO dadosNovos = converterParaDTO(carro);
+        alteracaoCarro.registrarUpsert(carro);
+        auditoriaService.registrarAcao("UPDATE", "CARRO", carro.getId(), usuarioEmail, empresaId,
+                                     dadosAnteriores, dadosNovos, observacao);
+        catalogoVersao.incrementar(empresaId);
+        return dadosNovos;
+    }
+    
+    // Todas as fotos são recebidas (em paralelo) antes de a primeira ser anexada
+    private void adicionarFotos(Carro carro, List<MultipartFile> fotos) {
+        List<ArmazenamentoFotoService.FotoRecebida> recebidas = armazenamentoFoto.receberFotos(fotos);
+        try {
+            anexarFotos(carro, recebidas);
+        } finally {
+            armazenamentoFoto.descartar(recebidas);
+        }
+    }
+    
+    // Novas fotos entram no fim, depois da maior ordem atual
+    private void anexarFotos(Carro carro, List<ArmazenamentoFotoService.FotoRecebida> recebidas) {
+        int proximaOrdem = carro.getFotos().stream()
+                .mapToInt(CarroFoto::getOrdem)
+                .max()
+                .orElse(-1) + 1;
+        for (ArmazenamentoFotoService.FotoRecebida recebida : recebidas) {
+            ArmazenamentoFotoService.FotoArmazenada armazenada = armazenamentoFoto.armazenar(recebida);
+            CarroFoto foto = new CarroFoto();
+            foto.setCarro(carro);
+            foto.setUrl(armazenada.url());
+            foto.setOrdem(proximaOrdem++);
+            foto.setTamanhoBytes(armazenada.tamanhoBytes());
+            foto.setLargura(armazenada.largura());
+            foto.setAltura(armazenada.altura());
+            foto.setHashConteudo(armazenada.hashConteudo());
+            carro.getFotos().add(foto);
+        }
+    }
+    
+    // Exclusões: os arquivos sem referência só são removidos depois do commit, pelo despachante do outbox
+    private void agendarExclusaoFotos(List<String> fotoUrls) {
+        if (!fotoUrls.isEmpty()) {
+            outbox.registrar(OutboxService.EXCLUIR_FOTOS, new ArrayList<>(fotoUrls));
+        }
     }
     
     private CarroDTO converterParaDTO(Carro carro) {
@@ -331,7 +869,62 @@ public class CarroService {
         dto.setMarca(carro.getMarca());
         dto.setValor(carro.getValor());
         dto.setObservacoes(carro.getObservacoes());
-        dto.setFotos(carro.getFotos());
+        List<FotoCarroDTO> fotos = carro.getFotos().stream()
+                .map(foto -> new FotoCarroDTO(carro.getId(), foto.getId(), foto.getUrl(), foto.getOrdem(),
+                        foto.getTamanhoBytes(), foto.getLargura(), foto.getAltura(), foto.getHashConteudo()))
+                .collect(Collectors.toList());
+        dto.setFotos(fotos.stream().map(FotoCarroDTO::getUrl).collect(Collectors.toList()));
+        dto.setFotosDetalhes(fotos);
+        dto.setDataCadastro(carro.getDataCadastro() != null 
+                ? carro.getDataCadastro().format(formatter) 
+                : null);
+        dto.setDataAtualizacao(carro.getDataAtualizacao() != null 
+                ? carro.getDataAtualizacao().format(formatter) 
+                : null);
+        return dto;
+    }
+    
+    /**
+     * Monta os DTOs de uma página de projeções buscando as fotos (com metadados) de todos
+     * os carros em uma única consulta (em vez de uma consulta por carro).
+     */
+    private List<CarroDTO> montarDTOs(List<CarroProjecaoDTO> carros) {
+        if (carros.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = carros.stream().map(CarroProjecaoDTO::getId).collect(Collectors.toList());
+        return montarDTOs(carros, agruparFotos(carroFotoRepository.buscarPorCarroIds(ids)));
+    }
+    
+    private List<CarroDTO> montarDTOs(List<CarroProjecaoDTO> carros, Map<Long, List<FotoCarroDTO>> fotosPorCarro) {
+        return carros.stream()
+                .map(carro -> converterParaDTO(carro, fotosPorCarro.getOrDefault(carro.getId(), new ArrayList<>())))
+                .collect(Collectors.toList());
+    }
+    
+    // As linhas já chegam na ordem de exibição de cada carro
+    private Map<Long, List<FotoCarroDTO>> agruparFotos(List<FotoCarroDTO> fotos) {
+        Map<Long, List<FotoCarroDTO>> fotosPorCarro = new HashMap<>();
+        for (FotoCarroDTO foto : fotos) {
+            fotosPorCarro.computeIfAbsent(foto.getCarroId(), id -> new ArrayList<>()).add(foto);
+        }
+        return fotosPorCarro;
+    }
+    
+    private CarroDTO converterParaDTO(CarroProjecaoDTO carro, List<FotoCarroDTO> fotos) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+        CarroDTO dto = new CarroDTO();
+        dto.setId(carro.getId());
+        dto.setEmpresaId(carro.getEmpresaId());
+        dto.setEmpresaNome(carro.getEmpresaNome());
+        dto.setPlaca(carro.getPlaca());
+        dto.setQuilometragem(carro.getQuilometragem());
+        dto.setModelo(carro.getModelo());
+        dto.setMarca(carro.getMarca());
+        dto.setValor(carro.getValor());
+        dto.setObservacoes(carro.getObservacoes());
+        dto.setFotos(fotos.stream().map(FotoCarroDTO::getUrl).collect(Collectors.toList()));
+        dto.setFotosDetalhes(fotos);
         dto.setDataCadastro(carro.getDataCadastro() != null 
                 ? carro.getDataCadastro().format(formatter) 
                 : null);
@@ -345,30 +938,168 @@ public class CarroService {
     
     @Transactional(readOnly = true)
     public List<CarroDTO> listarTodosPublico() {
-        return carroRepository.findAll().stream()
-                .map(this::converterParaDTO)
-                .collect(Collectors.toList());
+        return montarDTOs(carroRepository.listarProjecoes(), agruparFotos(carroFotoRepository.buscarTodas()));
+    }
+    
+    /**
+     * Percorre todos os carros (de todas as empresas) com um cursor forward-only,
+     * entregando cada um ao consumidor assim que é lido do banco.
+     * As linhas são projeções (nada fica no contexto de persistência) e as fotos são
+     * buscadas em lote a cada bloco de carros, então a memória fica constante
+     * independente da quantidade de carros.
+     *
+     * @return quantidade de carros entregues
+     */
+    @Transactional(readOnly = true)
+    public long percorrerTodosPublico(Consumer<CarroDTO> consumidor) {
+        return percorrer(carroRepository.streamProjecoes(), consumidor);
+    }
+    
+    /**
+     * Igual a {@link #percorrerTodosPublico(Consumer)}, só com os carros da empresa (exportação).
+     */
+    @Transactional(readOnly = true)
+    public long percorrerPorEmpresa(Long empresaId, Consumer<CarroDTO> consumidor) {
+        return percorrer(carroRepository.streamProjecoesPorEmpresa(empresaId), consumidor);
+    }
+    
+    @Transactional(readOnly = true)
+    public long contarPorEmpresa(Long empresaId) {
+        return carroRepository.countByEmpresaId(empresaId);
+    }
+    
+    private long percorrer(Stream<CarroProjecaoDTO> stream, Consumer<CarroDTO> consumidor) {
+        long total = 0;
+        List<CarroProjecaoDTO> bloco = new ArrayList<>(TAMANHO_BLOCO_STREAM);
+        try (Stream<CarroProjecaoDTO> carros = stream) {
+            Iterator<CarroProjecaoDTO> iterator = carros.iterator();
+            while (iterator.hasNext()) {
+                bloco.add(iterator.next());
+                if (bloco.size() == TAMANHO_BLOCO_STREAM || !iterator.hasNext()) {
+                    montarDTOs(bloco).forEach(consumidor);
+                    total += bloco.size();
+                    bloco.clear();
+                }
+            }
+        }
+        return total;
     }
     
     @Transactional(readOnly = true)
     public CarroDTO buscarPorIdPublico(Long id) {
-        Carro carro = carroRepository.findById(id)
+        CarroProjecaoDTO carro = carroRepository.buscarProjecaoPorId(id)
                 .orElseThrow(() -> new RuntimeException("Carro não encontrado"));
-        return converterParaDTO(carro);
+        return montarDTOs(List.of(carro)).get(0);
     }
     
     @Transactional(readOnly = true)
     public CarroDTO buscarPorPlacaPublico(String placa) {
-        // Buscar em todas as empresas (primeira ocorrência)
-        List<Carro> carros = carroRepository.findAll().stream()
-                .filter(c -> c.getPlaca().equalsIgnoreCase(placa))
-                .toList();
+        // Buscar em todas as empresas (ocorrência mais recente) pelo índice de placa normalizada
+        List<CarroProjecaoDTO> carros = carroRepository.listarProjecoesPorPlacas(
+                List.of(Carro.normalizarPlaca(placa)), PageRequest.of(0, 1));
         
         if (carros.isEmpty()) {
             throw new RuntimeException("Carro não encontrado");
         }
         
-        // Retornar o primeiro encontrado
-        return converterParaDTO(carros.get(0));
+        return montarDTOs(carros).get(0);
+    }
+    
+    /**
+     * Resolve várias placas em duas consultas (carros e fotos), para qualquer quantidade de placas.
+     * A chave do mapa é a placa normalizada; placas não encontradas ficam de fora.
+     * Quando a mesma placa existe em mais de uma empresa, vale a mais recente.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, CarroDTO> buscarPorPlacasPublico(Collection<String> placas) {
+        Set<String> placasNormalizadas = placas.stream()
+                .filter(placa -> placa != null && !placa.isBlank())
+                .map(Carro::normalizarPlaca)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        
+        if (placasNormalizadas.size() > LIMITE_PLACAS_LOTE) {
+            throw new IllegalArgumentException("Máximo de " + LIMITE_PLACAS_LOTE + " placas por consulta");
+        }
+        
+        Map<String, CarroDTO> resultado = new LinkedHashMap<>();
+        if (placasNormalizadas.isEmpty()) {
+            return resultado;
+        }
+        
+        // Só a ocorrência mais recente de cada placa é convertida (e tem as fotos buscadas)
+        Map<String, CarroProjecaoDTO> maisRecentes = new LinkedHashMap<>();
+        for (CarroProjecaoDTO carro : carroRepository.listarProjecoesPorPlacas(placasNormalizadas, Pageable.unpaged())) {
+            maisRecentes.putIfAbsent(Carro.normalizarPlaca(carro.getPlaca()), carro);
+        }
+        List<CarroDTO> carros = montarDTOs(new ArrayList<>(maisRecentes.values()));
+        Iterator<String> chaves = maisRecentes.keySet().iterator();
+        for (CarroDTO carro : carros) {
+            resultado.put(chaves.next(), carro);
+        }
+        return resultado;
+    }
+    
+    /**
+     * Se o log já foi limpo além do cursor (integração sem ler há mais que a retenção).
+     */
+    @Transactional(readOnly = true)
+    public boolean cursorAlteracoesExpirado(long desde) {
+        return alteracaoCarro.cursorExpirado(desde);
+    }
+    
+    /**
+     * Feed incremental da API pública: alterações (upserts e exclusões) posteriores ao cursor,
+     * na ordem do log. Dentro de uma página só a última alteração de cada carro é devolvida,
+     * já com o estado atual do carro (as fotos vêm em uma única consulta).
+     *
+     * @param desde cursor da última página lida (0 para começar do início do log)
+     * @param tamanho quantidade máxima de registros do log lidos nesta página
+     */
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<AlteracaoCarroDTO> listarAlteracoesPublico(long desde, int tamanho) {
+        List<CarroAlteracao> lidas = alteracaoCarro.buscarDesde(desde, tamanho + 1);
+        boolean temProximo = lidas.size() > tamanho;
+        if (temProximo) {
+            lidas = lidas.subList(0, tamanho);
+        }
+        
+        // Última alteração de cada carro na página, mantendo a ordem do log
+        Map<Long, CarroAlteracao> ultimas = new LinkedHashMap<>();
+        for (CarroAlteracao alteracao : lidas) {
+            ultimas.remove(alteracao.getCarroId());
+            ultimas.put(alteracao.getCarroId(), alteracao);
+        }
+        
+        List<Long> idsUpsert = ultimas.values().stream()
+                .filter(alteracao -> AlteracaoCarroService.UPSERT.equals(alteracao.getTipo()))
+                .map(CarroAlteracao::getCarroId)
+                .collect(Collectors.toList());
+        Map<Long, CarroDTO> carrosAtuais = new HashMap<>();
+        if (!idsUpsert.isEmpty()) {
+            for (CarroDTO carro : montarDTOs(carroRepository.listarProjecoesPorIds(idsUpsert))) {
+                carrosAtuais.put(carro.getId(), carro);
+            }
+        }
+        
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+        List<AlteracaoCarroDTO> conteudo = new ArrayList<>();
+        for (CarroAlteracao alteracao : ultimas.values()) {
+            AlteracaoCarroDTO dto = new AlteracaoCarroDTO();
+            dto.setSequencia(alteracao.getId());
+            dto.setCarroId(alteracao.getCarroId());
+            dto.setEmpresaId(alteracao.getEmpresaId());
+            dto.setPlaca(alteracao.getPlaca());
+            dto.setDataAlteracao(alteracao.getDataAlteracao().format(formatter));
+            
+            CarroDTO carro = carrosAtuais.get(alteracao.getCarroId());
+            // Carro excluído depois deste upsert: a exclusão aparece em uma página seguinte
+            dto.setTipo(carro != null ? AlteracaoCarroService.UPSERT : AlteracaoCarroService.DELETE);
+            dto.setCarro(carro);
+            conteudo.add(dto);
+        }
+        
+        // O cursor sempre avança até o último registro lido, mesmo os descartados na compactação
+        long proximo = lidas.isEmpty() ? desde : lidas.get(lidas.size() - 1).getId();
+        return new PaginaCursorDTO<>(conteudo, conteudo.size(), temProximo, String.valueOf(proximo), null);
     }
 }
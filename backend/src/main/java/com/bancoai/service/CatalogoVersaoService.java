@@ -0,0 +1,64 @@
+package com.bancoai.service;
+
+import com.bancoai.repository.EmpresaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Versão do catálogo de carros por empresa, usada como ETag fraco nos endpoints de leitura.
+ * 
+ * Toda escrita de carro incrementa a versão da empresa na mesma transação, então um
+ * If-None-Match com a versão atual pode ser respondido com 304 sem consultar os carros.
+ */
+@Service
+public class CatalogoVersaoService {
+    
+    private final EmpresaRepository empresaRepository;
+    private final CacheBuscaCarroService cacheBusca;
+    
+    public CatalogoVersaoService(EmpresaRepository empresaRepository, CacheBuscaCarroService cacheBusca) {
+        this.empresaRepository = empresaRepository;
+        this.cacheBusca = cacheBusca;
+    }
+    
+    /**
+     * Incrementa a versão do catálogo da empresa. Deve ser chamado dentro da transação da escrita.
+     * Após o commit, as buscas em cache da empresa são descartadas.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void incrementar(Long empresaId) {
+        if (empresaId == null) {
+            return;
+        }
+        empresaRepository.incrementarVersaoCatalogo(empresaId);
+        cacheBusca.invalidarEmpresaAposCommit(empresaId);
+    }
+    
+    @Transactional(readOnly = true)
+    public long obterVersao(Long empresaId) {
+        return empresaRepository.buscarVersaoCatalogo(empresaId).orElse(0L);
+    }
+    
+    /**
+     * ETag fraco do catálogo de uma empresa. O prefixo distingue representações diferentes
+     * (ex.: lista de carros e relatório) que compartilham a mesma versão.
+     */
+    public String gerarEtag(String prefixo, Long empresaId) {
+        return "W/\"" + prefixo + "-" + empresaId + "-" + obterVersao(empresaId) + "\"";
+    }
+    
+    /**
+     * ETag fraco do catálogo de todas as empresas (API pública).
+     * A soma das versões só cresce com escritas de carros; quantidade e maior id
+     * mudam quando empresas são criadas ou removidas.
+     */
+    @Transactional(readOnly = true)
+    public String gerarEtagGlobal(String prefixo) {
+        List<Object[]> linhas = empresaRepository.buscarVersaoCatalogoGlobal();
+        Object[] linha = linhas.isEmpty() ? new Object[]{0L, 0L, 0L} : linhas.get(0);
+        return "W/\"" + prefixo + "-" + linha[0] + "-" + linha[1] + "-" + linha[2] + "\"";
+    }
+}
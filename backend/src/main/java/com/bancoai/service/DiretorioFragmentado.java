@@ -0,0 +1,100 @@
+package com.bancoai.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Diretório de uploads distribuído em dois níveis de subdiretórios: {base}/ab/cd/{nome}.
+ *
+ * O fragmento sai do próprio nome do arquivo (o hash do conteúdo nos nomes endereçados por
+ * conteúdo, senão o SHA-256 do nome), então as URLs gravadas no banco continuam só com o nome e
+ * não mudam. Com 65.536 subdiretórios, nenhum diretório passa de algumas dezenas de entradas
+ * mesmo com milhões de arquivos. Arquivos ainda no diretório base (gravados antes da
+ * fragmentação e não migrados) continuam sendo encontrados por {@link #localizar(String)}.
+ */
+public class DiretorioFragmentado {
+
+    public static final DiretorioFragmentado FOTOS_CARROS = new DiretorioFragmentado(Paths.get("uploads/carros"));
+    public static final DiretorioFragmentado FOTOS_USUARIOS = new DiretorioFragmentado(Paths.get("uploads/usuarios"));
+
+    // nome_w320.jpg fica no mesmo subdiretório de nome.png
+    private static final Pattern SUFIXO_VARIANTE = Pattern.compile("_w\\d+$");
+
+    private final Path base;
+
+    public DiretorioFragmentado(Path base) {
+        this.base = base.toAbsolutePath().normalize();
+    }
+
+    public Path getBase() {
+        return base;
+    }
+
+    /**
+     * Caminho fragmentado do arquivo, criando os subdiretórios; usado para gravar arquivos novos.
+     */
+    public Path caminhoParaGravar(String nomeArquivo) throws IOException {
+        Path caminho = caminho(nomeArquivo);
+        Files.createDirectories(caminho.getParent());
+        return caminho;
+    }
+
+    public Path caminho(String nomeArquivo) {
+        String fragmento = fragmento(nomeArquivo);
+        return base.resolve(fragmento.substring(0, 2)).resolve(fragmento.substring(2, 4)).resolve(nomeArquivo);
+    }
+
+    // Local antigo, direto no diretório base
+    public Path caminhoLegado(String nomeArquivo) {
+        return base.resolve(nomeArquivo);
+    }
+
+    /**
+     * Onde o arquivo está: no subdiretório ou, se ainda não foi migrado, no diretório base.
+     * Retorna o caminho fragmentado quando não existe em nenhum dos dois, e null para nomes
+     * inválidos (com separadores de diretório, "." ou "..").
+     */
+    public Path localizar(String nomeArquivo) {
+        if (!nomeValido(nomeArquivo)) {
+            return null;
+        }
+        Path caminho = caminho(nomeArquivo);
+        if (Files.exists(caminho)) {
+            return caminho;
+        }
+        Path legado = caminhoLegado(nomeArquivo);
+        if (Files.exists(legado)) {
+            return legado;
+        }
+        // A migração pode ter movido o arquivo entre as duas verificações
+        return caminho;
+    }
+
+    public static boolean nomeValido(String nomeArquivo) {
+        return nomeArquivo != null && !nomeArquivo.isEmpty() && !nomeArquivo.equals(".") && !nomeArquivo.equals("..")
+                && nomeArquivo.indexOf('/') < 0 && nomeArquivo.indexOf('\\') < 0 && nomeArquivo.indexOf('\0') < 0;
+    }
+
+    // Quatro primeiros dígitos hexadecimais que definem os subdiretórios do arquivo
+    private static String fragmento(String nomeArquivo) {
+        String hash = ArmazenamentoFotoService.hashDoNome(nomeArquivo);
+        if (hash != null) {
+            return hash;
+        }
+        int ponto = nomeArquivo.lastIndexOf('.');
+        String chave = SUFIXO_VARIANTE.matcher(ponto > 0 ? nomeArquivo.substring(0, ponto) : nomeArquivo).replaceFirst("");
+        try {
+            byte[] resumo = MessageDigest.getInstance("SHA-256").digest(chave.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(resumo, 0, 2);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
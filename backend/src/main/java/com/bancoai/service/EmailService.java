@@ -5,6 +5,10 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 public class EmailService {
     
@@ -103,12 +107,7 @@ public class EmailService {
         }
     }
     
-    public void enviarEmailNotificacaoCarro(String email, String nomeUsuario, String marca, String modelo, String placa) {
-        if (!emailEnabled) {
-            System.out.println("AVISO: Envio de email está desabilitado. Notificação de carro não será enviada.");
-            return;
-        }
-        
+    public SimpleMailMessage criarNotificacaoCarro(String email, String nomeUsuario, String marca, String modelo, String placa) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setFrom(fromEmail);
         message.setTo(email);
@@ -124,15 +123,37 @@ public class EmailService {
                 "Equipe BANCO AI";
         
         message.setText(texto);
-        
+        return message;
+    }
+    
+    /**
+     * Envia várias mensagens em uma única conexão SMTP.
+     *
+     * @return mensagens que não puderam ser enviadas (vazio se todas foram); se a falha for
+     *         na conexão ou autenticação, todas voltam como não enviadas
+     */
+    public Set<SimpleMailMessage> enviarLote(List<SimpleMailMessage> mensagens) {
+        if (!emailEnabled) {
+            System.out.println("AVISO: Envio de email está desabilitado. " + mensagens.size() + " notificação(ões) não serão enviadas.");
+            return Set.of();
+        }
         try {
-            mailSender.send(message);
-            System.out.println("Email de notificação de carro enviado com sucesso para: " + email);
-        } catch (Exception e) {
-            // Não lançar exceção para não interromper o cadastro do carro
-            System.err.println("AVISO: Erro ao enviar email de notificação de carro para " + email + ": " + e.getMessage());
-            // Log do erro mas não interrompe o fluxo
+            mailSender.send(mensagens.toArray(new SimpleMailMessage[0]));
+            System.out.println("Emails enviados com sucesso: " + mensagens.size());
+            return Set.of();
+        } catch (org.springframework.mail.MailSendException e) {
+            Set<SimpleMailMessage> falhas = new HashSet<>();
+            e.getFailedMessages().keySet().forEach(mensagem -> {
+                if (mensagem instanceof SimpleMailMessage simples) {
+                    falhas.add(simples);
+                }
+            });
+            System.err.println("AVISO: Erro ao enviar emails (" + (falhas.isEmpty() ? mensagens.size() : falhas.size()) +
+                    " de " + mensagens.size() + "): " + e.getMessage());
+            return falhas.isEmpty() ? new HashSet<>(mensagens) : falhas;
+        } catch (org.springframework.mail.MailException e) {
+            System.err.println("AVISO: Erro ao enviar emails: " + e.getMessage());
+            return new HashSet<>(mensagens);
         }
     }
 }
-
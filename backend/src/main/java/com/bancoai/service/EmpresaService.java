@@ -23,14 +23,20 @@ public class EmpresaService {
     private final EmpresaRepository empresaRepository;
     private final UsuarioRepository usuarioRepository;
     private final CarroRepository carroRepository;
+    private final CatalogoVersaoService catalogoVersao;
+    private final PurgaCarroService purgaCarro;
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     
     public EmpresaService(EmpresaRepository empresaRepository, 
                           UsuarioRepository usuarioRepository,
-                          CarroRepository carroRepository) {
+                          CarroRepository carroRepository,
+                          CatalogoVersaoService catalogoVersao,
+                          PurgaCarroService purgaCarro) {
         this.empresaRepository = empresaRepository;
         this.usuarioRepository = usuarioRepository;
         this.carroRepository = carroRepository;
+        this.catalogoVersao = catalogoVersao;
+        this.purgaCarro = purgaCarro;
     }
     
     @Transactional
@@ -68,6 +74,9 @@ public class EmpresaService {
             throw new RuntimeException("Já existe uma empresa com este nome");
         }
         
+        // O nome da empresa faz parte do CarroDTO: renomear invalida o catálogo
+        boolean nomeAlterado = !empresa.getNome().equals(empresaDTO.getNome());
+        
         empresa.setNome(empresaDTO.getNome());
         empresa.setCnpj(empresaDTO.getCnpj());
         empresa.setEndereco(empresaDTO.getEndereco());
@@ -78,6 +87,9 @@ public class EmpresaService {
         }
         
         Empresa empresaAtualizada = empresaRepository.save(empresa);
+        if (nomeAlterado) {
+            catalogoVersao.incrementar(id);
+        }
         return converterParaDTO(empresaAtualizada);
     }
     
@@ -190,6 +202,9 @@ public class EmpresaService {
             throw new RuntimeException("Não é possível remover a empresa. Existem " + usuariosComEmpresaPrincipal.size() + " usuário(s) com esta empresa como principal. Altere a empresa principal dos usuários primeiro.");
         }
         
+        // Carros excluídos logicamente ainda referenciam a empresa: removidos agora, sem esperar a purga
+        purgaCarro.purgarEmpresa(id);
+        
         // Remover relacionamentos Many-to-Many da tabela usuario_empresas
         // Isso remove todos os registros da tabela de junção antes de deletar a empresa
         empresaRepository.deletarRelacionamentosUsuarioEmpresa(id);
@@ -0,0 +1,278 @@
+package com.bancoai.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Envio de arquivos de foto (carros e usuários) direto do disco para o socket.
+ *
+ * Os nomes dos arquivos contêm um UUID ou o SHA-256 do conteúdo, que nunca muda, então a resposta
+ * leva ETag forte, Last-Modified e Cache-Control immutable de um ano; revalidações recebem 304 sem
+ * corpo. Nos arquivos endereçados por conteúdo o ETag é o próprio hash, igual em todas as cópias
+ * e instâncias; nos demais, data de modificação e tamanho.
+ * Suporta um intervalo de bytes (Range / If-Range, 206 e 416). O corpo é enviado por sendfile
+ * do Tomcat (FileChannel.transferTo do arquivo para o socket, sem passar pela heap) quando o
+ * conector oferece; caso contrário (ex: TLS no próprio Tomcat), por transferTo para o stream
+ * da resposta. O tipo de conteúdo é detectado uma vez por arquivo e guardado em um cache LRU.
+ */
+@Service
+public class EntregaArquivoService {
+
+    private static final String SENDFILE_SUPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARQUIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+
+    private static final long UM_ANO_SEGUNDOS = 365L * 24 * 60 * 60;
+
+    // Intervalo fora do arquivo: resposta 416
+    private static final long[] INTERVALO_INVALIDO = new long[0];
+
+    // Metadados por arquivo; valem enquanto tamanho e data de modificação não mudarem
+    private record Metadados(long tamanho, long modificadoEm, String etag, String tipoConteudo) {
+    }
+
+    private final Map<Path, Metadados> metadados;
+
+    public EntregaArquivoService(@Value("${app.arquivos.cache-metadados:10000}") int maximoEntradas) {
+        // LinkedHashMap em ordem de acesso: o primeiro elemento é o menos usado recentemente
+        this.metadados = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Metadados> maisAntigo) {
+                return size() > maximoEntradas;
+            }
+        };
+    }
+
+    /**
+     * Escreve o arquivo na resposta (200, 206, 304, 404 ou 416).
+     *
+     * @param tipoPadrao tipo de conteúdo usado quando o detectado não é uma imagem
+     * @param publico se a resposta pode ficar em caches compartilhados (CDN, proxy)
+     */
+    public void enviar(DiretorioFragmentado diretorio, String nomeArquivo, String tipoPadrao, boolean publico,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        enviar(diretorio, nomeArquivo, tipoPadrao, publico, true, request, response);
+    }
+
+    /**
+     * Como {@link #enviar(DiretorioFragmentado, String, String, boolean, HttpServletRequest, HttpServletResponse)};
+     * com imutavel = false a resposta pede revalidação a cada uso (no-cache), para URLs cujo
+     * conteúdo ainda pode mudar (ex: o original servido no lugar de uma variante não gerada).
+     */
+    public void enviar(DiretorioFragmentado diretorio, String nomeArquivo, String tipoPadrao, boolean publico,
+                       boolean imutavel, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Subdiretório ab/cd ou, se ainda não migrado, o diretório base; null para nomes inválidos
+        Path arquivo = diretorio.localizar(nomeArquivo);
+        if (arquivo == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Metadados dados;
+        try {
+            dados = obterMetadados(arquivo, tipoPadrao);
+        } catch (NoSuchFileException e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (dados == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, dados.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, dados.modificadoEm());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, (publico ? "public" : "private")
+                + (imutavel ? ", max-age=" + UM_ANO_SEGUNDOS + ", immutable" : ", no-cache"));
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (naoModificado(request, dados)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0;
+        long fim = dados.tamanho() - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && dados.tamanho() > 0 && rangeValido(request, dados)) {
+            long[] intervalo = interpretarRange(range, dados.tamanho());
+            if (intervalo == INTERVALO_INVALIDO) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + dados.tamanho());
+                return;
+            }
+            if (intervalo != null) {
+                inicio = intervalo[0];
+                fim = intervalo[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fim + "/" + dados.tamanho());
+            }
+        }
+
+        long comprimento = fim - inicio + 1;
+        response.setContentType(dados.tipoConteudo());
+        response.setContentLengthLong(comprimento);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + arquivo.getFileName() + "\"");
+
+        if ("HEAD".equals(request.getMethod()) || comprimento == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTADO))) {
+            // O Tomcat envia o arquivo depois que a requisição sai da aplicação
+            request.setAttribute(SENDFILE_ARQUIVO, arquivo.toRealPath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIM, fim + 1);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long posicao = inicio;
+            long restante = comprimento;
+            while (restante > 0) {
+                long enviados = canal.transferTo(posicao, restante, destino);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicao += enviados;
+                restante -= enviados;
+            }
+        } catch (IOException e) {
+            // Cliente desconectou no meio do envio (comum em downloads com Range)
+        }
+    }
+
+    private Metadados obterMetadados(Path arquivo, String tipoPadrao) throws IOException {
+        BasicFileAttributes atributos = Files.readAttributes(arquivo, BasicFileAttributes.class);
+        if (!atributos.isRegularFile()) {
+            return null;
+        }
+        long tamanho = atributos.size();
+        long modificadoEm = atributos.lastModifiedTime().toMillis();
+
+        Metadados dados;
+        synchronized (metadados) {
+            dados = metadados.get(arquivo);
+        }
+        if (dados != null && dados.tamanho() == tamanho && dados.modificadoEm() == modificadoEm) {
+            return dados;
+        }
+
+        String tipoConteudo = Files.probeContentType(arquivo);
+        if (tipoConteudo == null || !tipoConteudo.startsWith("image/")) {
+            tipoConteudo = tipoPadrao;
+        }
+        String etag = "\"" + calcularEtag(arquivo.getFileName().toString(), modificadoEm, tamanho) + "\"";
+        dados = new Metadados(tamanho, modificadoEm, etag, tipoConteudo);
+        synchronized (metadados) {
+            metadados.put(arquivo, dados);
+        }
+        return dados;
+    }
+
+    // {sha256}.ext -> hash; {sha256}_w320.jpg -> hash_w320 (a variante é outro conteúdo)
+    private static String calcularEtag(String nomeArquivo, long modificadoEm, long tamanho) {
+        String hash = ArmazenamentoFotoService.hashDoNome(nomeArquivo);
+        if (hash == null) {
+            return Long.toHexString(modificadoEm) + "-" + Long.toHexString(tamanho);
+        }
+        int ponto = nomeArquivo.lastIndexOf('.');
+        return ponto > 0 ? nomeArquivo.substring(0, ponto) : nomeArquivo;
+    }
+
+    // If-None-Match tem precedência; comparação fraca, como manda a RFC 9110
+    private static boolean naoModificado(HttpServletRequest request, Metadados dados) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String etag : ifNoneMatch.split(",")) {
+                String valor = etag.trim();
+                if (valor.startsWith("W/")) {
+                    valor = valor.substring(2);
+                }
+                if (valor.equals("*") || valor.equals(dados.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = lerData(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && dados.modificadoEm() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // If-Range: o intervalo só vale se o arquivo ainda for o mesmo (ETag forte ou data exata)
+    private static boolean rangeValido(HttpServletRequest request, Metadados dados) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(dados.etag());
+        }
+        long data = lerData(request, HttpHeaders.IF_RANGE);
+        return data >= 0 && data / 1000 == dados.modificadoEm() / 1000;
+    }
+
+    private static long lerData(HttpServletRequest request, String cabecalho) {
+        try {
+            return request.getDateHeader(cabecalho);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Interpreta "bytes=inicio-fim", "bytes=inicio-" ou "bytes=-sufixo".
+     *
+     * @return [inicio, fim] inclusivo; null para ignorar o cabeçalho (sintaxe desconhecida ou
+     *         vários intervalos, respondidos com o arquivo inteiro); INTERVALO_INVALIDO para 416
+     */
+    private static long[] interpretarRange(String range, long tamanho) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String especificacao = range.substring("bytes=".length()).trim();
+        int hifen = especificacao.indexOf('-');
+        if (hifen < 0) {
+            return null;
+        }
+        try {
+            String inicioTexto = especificacao.substring(0, hifen).trim();
+            String fimTexto = especificacao.substring(hifen + 1).trim();
+            if (inicioTexto.isEmpty()) {
+                long sufixo = Long.parseLong(fimTexto);
+                if (sufixo <= 0) {
+                    return INTERVALO_INVALIDO;
+                }
+                return new long[] {Math.max(0, tamanho - sufixo), tamanho - 1};
+            }
+            long inicio = Long.parseLong(inicioTexto);
+            long fim = fimTexto.isEmpty() ? Long.MAX_VALUE : Long.parseLong(fimTexto);
+            if (fim < inicio) {
+                return null;
+            }
+            if (inicio >= tamanho) {
+                return INTERVALO_INVALIDO;
+            }
+            return new long[] {inicio, Math.min(fim, tamanho - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
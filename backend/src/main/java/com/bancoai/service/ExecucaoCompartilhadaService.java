@@ -0,0 +1,64 @@
+package com.bancoai.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight: leituras idênticas e simultâneas compartilham uma única execução.
+ *
+ * A primeira requisição com uma chave executa a consulta; as que chegam enquanto ela está
+ * em andamento esperam e recebem o mesmo resultado (ou a mesma exceção), sem ocupar outra
+ * conexão do pool. Nada é guardado depois que a execução termina. As chaves devem incluir
+ * a versão do catálogo, assim uma requisição feita depois de uma escrita nunca pega
+ * carona em uma execução iniciada antes dela.
+ */
+@Service
+public class ExecucaoCompartilhadaService {
+    
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> emAndamento = new ConcurrentHashMap<>();
+    private final AtomicLong execucoes = new AtomicLong();
+    private final AtomicLong compartilhadas = new AtomicLong();
+    
+    @SuppressWarnings("unchecked")
+    public <T> T executar(String chave, Supplier<T> execucao) {
+        CompletableFuture<Object> novo = new CompletableFuture<>();
+        CompletableFuture<Object> existente = emAndamento.putIfAbsent(chave, novo);
+        
+        if (existente != null) {
+            compartilhadas.incrementAndGet();
+            try {
+                return (T) existente.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        
+        execucoes.incrementAndGet();
+        try {
+            T resultado = execucao.get();
+            novo.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            novo.completeExceptionally(e);
+            throw e;
+        } finally {
+            emAndamento.remove(chave, novo);
+        }
+    }
+    
+    public long getExecucoes() {
+        return execucoes.get();
+    }
+    
+    public long getCompartilhadas() {
+        return compartilhadas.get();
+    }
+}
@@ -0,0 +1,157 @@
+package com.bancoai.service;
+
+import com.bancoai.model.ChaveIdempotencia;
+import com.bancoai.repository.ChaveIdempotenciaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Suporte ao cabeçalho Idempotency-Key: a primeira requisição com uma chave executa a ação
+ * e guarda a resposta; as repetições (retries do cliente) recebem a resposta guardada sem
+ * executar a ação de novo.
+ *
+ * O registro da chave é inserido no início da mesma transação da ação e a resposta é gravada
+ * antes do commit. Uma repetição concorrente fica bloqueada na restrição única até a primeira
+ * terminar: se ela confirmou, a repetição devolve a resposta gravada; se falhou, nada fica
+ * registrado e o cliente pode tentar de novo. Os registros expiram após app.idempotencia.ttl-horas.
+ */
+@Service
+public class IdempotenciaService {
+
+    public static final String CABECALHO = "Idempotency-Key";
+    public static final String CABECALHO_REPETIDA = "Idempotent-Replayed";
+
+    private static final int TAMANHO_MAXIMO_CHAVE = 100;
+
+    private final ChaveIdempotenciaRepository chaveRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transacao;
+
+    @Value("${app.idempotencia.ttl-horas:24}")
+    private long ttlHoras;
+
+    public IdempotenciaService(ChaveIdempotenciaRepository chaveRepository, ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager) {
+        this.chaveRepository = chaveRepository;
+        this.objectMapper = objectMapper;
+        this.transacao = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Executa a ação uma única vez por (escopo, chave).
+     *
+     * @param escopo usuário + operação; a mesma chave pode ser usada em escopos diferentes
+     * @param requisicao corpo da requisição, comparado (por hash) com o da primeira execução
+     * @param statusSucesso status HTTP da resposta quando a ação termina sem exceção
+     * @return a resposta da ação, a resposta guardada (cabeçalho Idempotent-Replayed),
+     *         409 se a primeira requisição ainda estiver em andamento ou 422 se o corpo for diferente
+     */
+    public <T> ResponseEntity<?> executar(String escopo, String chave, Object requisicao,
+                                          HttpStatus statusSucesso, Supplier<T> acao) {
+        if (chave.isBlank() || chave.length() > TAMANHO_MAXIMO_CHAVE) {
+            throw new IllegalArgumentException(CABECALHO + " deve ter entre 1 e " + TAMANHO_MAXIMO_CHAVE + " caracteres");
+        }
+        String hash = calcularHash(requisicao);
+
+        for (int tentativa = 0; tentativa < 2; tentativa++) {
+            try {
+                return transacao.execute(status -> executarComRegistro(escopo, chave, hash, statusSucesso, acao));
+            } catch (ChaveEmUsoException e) {
+                Optional<ChaveIdempotencia> existente = chaveRepository.findByEscopoAndChave(escopo, chave);
+                if (existente.isEmpty()) {
+                    // A primeira requisição ainda não terminou (ou acabou de falhar)
+                    return ResponseEntity.status(HttpStatus.CONFLICT)
+                            .header(HttpHeaders.RETRY_AFTER, "1")
+                            .body("Uma requisição com este " + CABECALHO + " ainda está em andamento");
+                }
+                ChaveIdempotencia registro = existente.get();
+                if (registro.isExpirada()) {
+                    // Expirou mas a limpeza ainda não passou: libera a chave e tenta de novo
+                    chaveRepository.delete(registro);
+                    continue;
+                }
+                if (!registro.getHashRequisicao().equals(hash)) {
+                    return ResponseEntity.unprocessableEntity()
+                            .body(CABECALHO + " já utilizada com outro corpo de requisição");
+                }
+                return ResponseEntity.status(registro.getStatusHttp())
+                        .header(CABECALHO_REPETIDA, "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(registro.getResposta());
+            }
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Uma requisição com este " + CABECALHO + " ainda está em andamento");
+    }
+
+    private <T> ResponseEntity<T> executarComRegistro(String escopo, String chave, String hash,
+                                                      HttpStatus statusSucesso, Supplier<T> acao) {
+        LocalDateTime agora = LocalDateTime.now();
+        ChaveIdempotencia registro = new ChaveIdempotencia();
+        registro.setEscopo(escopo);
+        registro.setChave(chave);
+        registro.setHashRequisicao(hash);
+        registro.setDataCriacao(agora);
+        registro.setDataExpiracao(agora.plusHours(ttlHoras));
+        try {
+            // INSERT imediato: uma repetição concorrente espera aqui até esta transação terminar
+            chaveRepository.saveAndFlush(registro);
+        } catch (DataAccessException e) {
+            throw new ChaveEmUsoException(e);
+        }
+
+        T resultado = acao.get();
+
+        registro.setStatusHttp(statusSucesso.value());
+        try {
+            registro.setResposta(objectMapper.writeValueAsString(resultado));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao serializar resposta para " + CABECALHO, e);
+        }
+        return ResponseEntity.status(statusSucesso).body(resultado);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotencia.limpeza-ms:3600000}")
+    public void removerExpiradas() {
+        int removidas = chaveRepository.removerExpiradas(LocalDateTime.now());
+        if (removidas > 0) {
+            System.out.println("Chaves de idempotência expiradas removidas: " + removidas);
+        }
+    }
+
+    private String calcularHash(Object requisicao) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(requisicao)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new RuntimeException("Erro ao calcular hash da requisição", e);
+        }
+    }
+
+    // A chave já existe (ou está sendo gravada por outra transação)
+    private static final class ChaveEmUsoException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ChaveEmUsoException(Throwable causa) {
+            super(causa);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.bancoai.service;
+
+import com.bancoai.dto.ErroImportacaoDTO;
+import com.bancoai.dto.ResultadoImportacaoDTO;
+import com.bancoai.model.Carro;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Importação em massa de carros (CSV ou NDJSON) em um pipeline de três estágios:
+ *
+ * 1. leitura: a thread da requisição lê o corpo linha a linha e agrupa em lotes;
+ * 2. validação: os lotes são convertidos e validados em paralelo em um pool fixo;
+ * 3. gravação: os lotes validados são gravados em ordem, cada um em uma transação com
+ *    INSERT em batch via JDBC e um único registro de auditoria por lote. As placas já
+ *    cadastradas na empresa são lidas uma vez no início; a constraint única cobre
+ *    cadastros concorrentes feitos durante a importação.
+ *
+ * No máximo alguns lotes ficam em memória ao mesmo tempo (a leitura espera a gravação),
+ * então o consumo de memória não depende do tamanho do arquivo.
+ */
+@Service
+public class ImportacaoCarroService {
+
+    private static final int TAMANHO_LOTE = 1000;
+    private static final int LIMITE_ERROS_RELATORIO = 1000;
+    // Registro CSV com quebras de linha dentro de aspas: acima disso, as aspas são dadas como não fechadas
+    private static final int TAMANHO_MAXIMO_REGISTRO = 64 * 1024;
+
+    // Números: só formatos sem ambiguidade. "45.000" pode ser 45 ou 45 mil, "50000.0" pode ser
+    // 50 mil ou 500 mil; essas linhas vão para o relatório de erros em vez de gravar um palpite
+    // Quilometragem: inteiro, com ou sem separador de milhar (50000, 50.000)
+    private static final Pattern QUILOMETRAGEM = Pattern.compile("^\\d+$|^\\d{1,3}(\\.\\d{3})+$");
+    // Valor com ponto decimal e sem separador de milhar (45000, 45000.5, 45000.50)
+    private static final Pattern VALOR_PONTO_DECIMAL = Pattern.compile("^\\d+(\\.\\d{1,2})?$");
+    // Valor no formato brasileiro completo, com vírgula decimal (45.000,50, 45000,50)
+    private static final Pattern VALOR_BRASILEIRO = Pattern.compile("^(\\d+|\\d{1,3}(\\.\\d{3})+),\\d{1,2}$");
+
+    private static final String SQL_INSERIR =
+            "INSERT INTO carros (id, empresa_id, placa, placa_normalizada, quilometragem, modelo, marca, valor, " +
+            "observacoes, data_cadastro, data_atualizacao) " +
+            "VALUES (:id, :empresaId, :placa, :placaNormalizada, :quilometragem, :modelo, :marca, :valor, " +
+            ":observacoes, :agora, :agora)";
+
+    private static final String SQL_PLACAS_DA_EMPRESA =
+            "SELECT placa_normalizada FROM carros WHERE empresa_id = :empresaId AND placa_normalizada IS NOT NULL";
+
+    private static final String SQL_PLACAS_EXISTENTES =
+            "SELECT placa_normalizada FROM carros WHERE empresa_id = :empresaId AND placa_normalizada IN (:placas)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacao;
+    private final AuditoriaService auditoriaService;
+    private final CatalogoVersaoService catalogoVersao;
+    private final AlteracaoCarroService alteracaoCarro;
+    private final IndiceBuscaCarroService indiceBusca;
+    private final SequenciaService sequenciaService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int lotesEmAndamento;
+
+    public ImportacaoCarroService(NamedParameterJdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  AuditoriaService auditoriaService,
+                                  CatalogoVersaoService catalogoVersao,
+                                  AlteracaoCarroService alteracaoCarro,
+                                  IndiceBuscaCarroService indiceBusca,
+                                  SequenciaService sequenciaService,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.importacao.threads:0}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.auditoriaService = auditoriaService;
+        this.catalogoVersao = catalogoVersao;
+        this.alteracaoCarro = alteracaoCarro;
+        this.indiceBusca = indiceBusca;
+        this.sequenciaService = sequenciaService;
+        this.objectMapper = objectMapper;
+
+        int tamanhoPool = threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(tamanhoPool, tamanhoPool, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "importacao-carros-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.lotesEmAndamento = tamanhoPool * 2;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Importa os carros do corpo da requisição para a empresa.
+     *
+     * @param entrada corpo da requisição (UTF-8)
+     * @param ndjson true para NDJSON (um objeto JSON por linha), false para CSV com cabeçalho
+     */
+    public ResultadoImportacaoDTO importar(InputStream entrada, boolean ndjson, Long empresaId, String usuarioEmail) {
+        long inicio = System.currentTimeMillis();
+        Importacao importacao = new Importacao(empresaId, usuarioEmail, carregarPlacasExistentes(empresaId));
+        ResultadoImportacaoDTO resultado = importacao.resultado;
+        ArrayDeque<CompletableFuture<LoteValidado>> fila = new ArrayDeque<>();
+
+        try (BufferedReader leitor = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 1 << 16)) {
+            long numeroLinha = 0;
+            Cabecalho cabecalho = null;
+            if (!ndjson) {
+                String primeira = leitor.readLine();
+                numeroLinha++;
+                if (primeira == null) {
+                    throw new IllegalArgumentException("Arquivo CSV vazio");
+                }
+                cabecalho = Cabecalho.ler(primeira);
+            }
+
+            List<LinhaLida> lote = new ArrayList<>(TAMANHO_LOTE);
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                numeroLinha++;
+                long inicioRegistro = numeroLinha;
+                // CSV: um campo entre aspas pode ter quebras de linha (ex: observações exportadas de
+                // planilhas); o registro continua nas linhas seguintes até as aspas fecharem
+                if (cabecalho != null && aspasAbertas(linha, false)) {
+                    StringBuilder registro = new StringBuilder(linha);
+                    boolean abertas = true;
+                    String continuacao;
+                    while (abertas && registro.length() <= TAMANHO_MAXIMO_REGISTRO
+                            && (continuacao = leitor.readLine()) != null) {
+                        numeroLinha++;
+                        registro.append('\n').append(continuacao);
+                        abertas = aspasAbertas(continuacao, abertas);
+                    }
+                    if (abertas) {
+                        registrarErro(resultado, new ErroImportacaoDTO(inicioRegistro, null,
+                                "Aspas não fechadas (campo entre aspas sem fim ou maior que 64 KB): linhas " +
+                                inicioRegistro + " a " + numeroLinha + " ignoradas"));
+                        continue;
+                    }
+                    linha = registro.toString();
+                }
+                if (linha.isBlank()) {
+                    continue;
+                }
+                lote.add(new LinhaLida(inicioRegistro, linha));
+                if (lote.size() == TAMANHO_LOTE) {
+                    enfileirar(fila, lote, cabecalho, importacao);
+                    lote = new ArrayList<>(TAMANHO_LOTE);
+                }
+            }
+            if (!lote.isEmpty()) {
+                enfileirar(fila, lote, cabecalho, importacao);
+            }
+            while (!fila.isEmpty()) {
+                gravar(aguardar(fila.poll()), importacao);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao ler arquivo de importação: " + e.getMessage(), e);
+        } finally {
+            fila.forEach(pendente -> pendente.cancel(true));
+            // Os carros importados entram no índice de busca sem esperar a sincronização periódica
+            if (resultado.getImportados() > 0) {
+                indiceBusca.sincronizar();
+            }
+        }
+
+        resultado.getErros().sort(Comparator.comparing(ErroImportacaoDTO::getLinha));
+        resultado.setDuracaoMs(System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    // Cada aspa alterna entre dentro e fora de um campo entre aspas (aspas escapadas "" se anulam),
+    // a mesma regra do Cabecalho.dividir
+    private static boolean aspasAbertas(String linha, boolean abertasAntes) {
+        boolean abertas = abertasAntes;
+        for (int i = 0; i < linha.length(); i++) {
+            if (linha.charAt(i) == '"') {
+                abertas = !abertas;
+            }
+        }
+        return abertas;
+    }
+
+    private void enfileirar(ArrayDeque<CompletableFuture<LoteValidado>> fila, List<LinhaLida> lote,
+                            Cabecalho cabecalho, Importacao importacao) {
+        // Limita os lotes em memória: antes de ler mais, grava o mais antigo
+        if (fila.size() >= lotesEmAndamento) {
+            gravar(aguardar(fila.poll()), importacao);
+        }
+        fila.add(CompletableFuture.supplyAsync(() -> validar(lote, cabecalho), executor));
+    }
+
+    private LoteValidado aguardar(CompletableFuture<LoteValidado> pendente) {
+        try {
+            return pendente.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    // Estágio 2 (paralelo): conversão e validação, sem acesso ao banco
+    private LoteValidado validar(List<LinhaLida> linhas, Cabecalho cabecalho) {
+        LoteValidado lote = new LoteValidado(linhas.size());
+        for (LinhaLida lida : linhas) {
+            String placa = null;
+            try {
+                Map<String, String> campos = cabecalho != null ? cabecalho.mapear(lida.conteudo) : lerJson(lida.conteudo);
+                placa = campos.get("placa");
+                lote.validas.add(converter(lida.numero, campos));
+            } catch (IllegalArgumentException e) {
+                lote.erros.add(new ErroImportacaoDTO(lida.numero, placa, e.getMessage()));
+            }
+        }
+        return lote;
+    }
+
+    private Map<String, String> lerJson(String conteudo) {
+        try {
+            JsonNode node = objectMapper.readTree(conteudo);
+            if (node == null || !node.isObject()) {
+                throw new IllegalArgumentException("Linha não é um objeto JSON");
+            }
+            Map<String, String> campos = new HashMap<>();
+            node.fields().forEachRemaining(campo -> {
+                if (!campo.getValue().isNull()) {
+                    campos.put(campo.getKey().toLowerCase(Locale.ROOT), campo.getValue().asText());
+                }
+            });
+            return campos;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON inválido: " + e.getOriginalMessage());
+        }
+    }
+
+    private static LinhaValida converter(long numero, Map<String, String> campos) {
+        String placa = obrigatorio(campos, "placa").toUpperCase();
+        String placaNormalizada = Carro.normalizarPlaca(placa);
+        if (placa.length() > 10 || placaNormalizada.isEmpty()) {
+            throw new IllegalArgumentException("Placa inválida");
+        }
+        String modelo = obrigatorio(campos, "modelo");
+        String marca = obrigatorio(campos, "marca");
+        if (modelo.length() > 100 || marca.length() > 50) {
+            throw new IllegalArgumentException("Modelo (máx. 100) ou marca (máx. 50) muito longos");
+        }
+
+        String quilometragemTexto = obrigatorio(campos, "quilometragem");
+        if (!QUILOMETRAGEM.matcher(quilometragemTexto).matches()) {
+            throw new IllegalArgumentException("Quilometragem inválida (use 50000 ou 50.000): " + quilometragemTexto);
+        }
+        int quilometragem;
+        try {
+            quilometragem = Integer.parseInt(quilometragemTexto.replace(".", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quilometragem inválida");
+        }
+
+        BigDecimal valor = null;
+        String valorTexto = campos.get("valor");
+        if (valorTexto != null && !valorTexto.isBlank()) {
+            // Aceita 45000.50 e o formato brasileiro 45.000,50
+            String numeroValor = valorTexto.trim();
+            if (VALOR_BRASILEIRO.matcher(numeroValor).matches()) {
+                numeroValor = numeroValor.replace(".", "").replace(",", ".");
+            } else if (!VALOR_PONTO_DECIMAL.matcher(numeroValor).matches()) {
+                throw new IllegalArgumentException("Valor inválido (use 45000.50 ou 45.000,50): " + numeroValor);
+            }
+            valor = new BigDecimal(numeroValor);
+            if (valor.signum() < 0 || valor.precision() - valor.scale() > 8) {
+                throw new IllegalArgumentException("Valor fora do intervalo permitido");
+            }
+        }
+
+        String observacoes = campos.get("observacoes");
+        return new LinhaValida(numero, placa, placaNormalizada, quilometragem, modelo, marca, valor,
+                observacoes != null && !observacoes.isBlank() ? observacoes : null);
+    }
+
+    private static String obrigatorio(Map<String, String> campos, String nome) {
+        String valor = campos.get(nome);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Campo obrigatório ausente: " + nome);
+        }
+        return valor.trim();
+    }
+
+    // Placas já cadastradas na empresa, lidas uma única vez no início (uma consulta em fluxo)
+    private Set<String> carregarPlacasExistentes(Long empresaId) {
+        Set<String> placas = new HashSet<>();
+        jdbcTemplate.query(SQL_PLACAS_DA_EMPRESA, new MapSqlParameterSource("empresaId", empresaId),
+                (ResultSet rs) -> {
+                    placas.add(rs.getString(1));
+                });
+        return placas;
+    }
+
+    // Estágio 3 (sequencial, em ordem): duplicidades + INSERT em batch + auditoria, um lote por transação
+    private void gravar(LoteValidado lote, Importacao importacao) {
+        ResultadoImportacaoDTO resultado = importacao.resultado;
+        resultado.setTotalLinhas(resultado.getTotalLinhas() + lote.totalLinhas);
+        resultado.setLotes(resultado.getLotes() + 1);
+        lote.erros.forEach(erro -> registrarErro(resultado, erro));
+
+        List<LinhaValida> novas = new ArrayList<>(lote.validas.size());
+        for (LinhaValida linha : lote.validas) {
+            if (!importacao.placasDoArquivo.add(linha.placaNormalizada)) {
+                // Placas repetidas dentro do próprio arquivo: vale a primeira ocorrência
+                registrarErro(resultado, new ErroImportacaoDTO(linha.numero, linha.placa, "Placa repetida no arquivo"));
+            } else if (importacao.placasExistentes.contains(linha.placaNormalizada)) {
+                registrarErro(resultado, new ErroImportacaoDTO(linha.numero, linha.placa, "Já existe um carro cadastrado com esta placa nesta empresa"));
+            } else {
+                novas.add(linha);
+            }
+        }
+        if (novas.isEmpty()) {
+            return;
+        }
+
+        try {
+            transacao.executeWithoutResult(status -> inserirLote(novas, importacao));
+        } catch (DataIntegrityViolationException e) {
+            // Outra requisição cadastrou uma das placas depois da leitura inicial: relê só as placas
+            // deste lote no banco e tenta de novo sem as que passaram a existir
+            List<String> placas = novas.stream().map(linha -> linha.placaNormalizada).toList();
+            Set<String> cadastradas = new HashSet<>(jdbcTemplate.queryForList(SQL_PLACAS_EXISTENTES,
+                    new MapSqlParameterSource("empresaId", importacao.empresaId).addValue("placas", placas), String.class));
+            List<LinhaValida> restantes = new ArrayList<>();
+            for (LinhaValida linha : novas) {
+                if (cadastradas.contains(linha.placaNormalizada)) {
+                    registrarErro(resultado, new ErroImportacaoDTO(linha.numero, linha.placa, "Já existe um carro cadastrado com esta placa nesta empresa"));
+                } else {
+                    restantes.add(linha);
+                }
+            }
+            if (restantes.isEmpty()) {
+                return;
+            }
+            try {
+                transacao.executeWithoutResult(status -> inserirLote(restantes, importacao));
+            } catch (DataIntegrityViolationException segundaFalha) {
+                String mensagem = "Lote rejeitado pelo banco: " + segundaFalha.getMostSpecificCause().getMessage();
+                restantes.forEach(linha -> registrarErro(resultado, new ErroImportacaoDTO(linha.numero, linha.placa, mensagem)));
+            }
+        }
+    }
+
+    private void inserirLote(List<LinhaValida> novas, Importacao importacao) {
+        Long empresaId = importacao.empresaId;
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        // Ids reservados em blocos da mesma sequência usada pelo Hibernate
+        long[] ids = sequenciaService.reservarIds(SequenciaService.CARROS, novas.size());
+        SqlParameterSource[] parametros = new SqlParameterSource[novas.size()];
+        for (int i = 0; i < parametros.length; i++) {
+            LinhaValida linha = novas.get(i);
+            parametros[i] = new MapSqlParameterSource()
+                    .addValue("id", ids[i])
+                    .addValue("empresaId", empresaId)
+                    .addValue("placa", linha.placa)
+                    .addValue("placaNormalizada", linha.placaNormalizada)
+                    .addValue("quilometragem", linha.quilometragem)
+                    .addValue("modelo", linha.modelo)
+                    .addValue("marca", linha.marca)
+                    .addValue("valor", linha.valor)
+                    .addValue("observacoes", linha.observacoes)
+                    .addValue("agora", agora);
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERIR, parametros);
+
+        // Entradas do feed de alterações para os carros recém-inseridos do lote
+        Map<Long, String> placasPorId = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            placasPorId.put(ids[i], novas.get(i).placa);
+        }
+        alteracaoCarro.registrarEmLote(AlteracaoCarroService.UPSERT, empresaId, placasPorId);
+        catalogoVersao.incrementar(empresaId);
+
+        Map<String, Object> resumo = new LinkedHashMap<>();
+        resumo.put("linhaInicial", novas.get(0).numero);
+        resumo.put("linhaFinal", novas.get(novas.size() - 1).numero);
+        resumo.put("importados", novas.size());
+        resumo.put("placas", novas.stream().map(linha -> linha.placaNormalizada).toList());
+        auditoriaService.registrarAcao("IMPORT", "CARRO", empresaId, importacao.usuarioEmail, empresaId,
+                null, resumo, "Importação em massa: " + novas.size() + " carro(s)");
+
+        // Só conta como importado depois do commit (em caso de nova tentativa o lote é reavaliado)
+        transacaoConcluida(() -> {
+            ResultadoImportacaoDTO resultado = importacao.resultado;
+            resultado.setImportados(resultado.getImportados() + novas.size());
+            novas.forEach(linha -> importacao.placasExistentes.add(linha.placaNormalizada));
+        });
+    }
+
+    private void transacaoConcluida(Runnable acao) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+
+    private static void registrarErro(ResultadoImportacaoDTO resultado, ErroImportacaoDTO erro) {
+        resultado.setComErro(resultado.getComErro() + 1);
+        if (resultado.getErros().size() < LIMITE_ERROS_RELATORIO) {
+            resultado.getErros().add(erro);
+        } else {
+            resultado.setErrosOmitidos(resultado.getErrosOmitidos() + 1);
+        }
+    }
+
+    // Estado de uma importação em andamento (acessado só pela thread da requisição)
+    private static final class Importacao {
+        private final Long empresaId;
+        private final String usuarioEmail;
+        private final Set<String> placasExistentes;
+        private final Set<String> placasDoArquivo = new HashSet<>();
+        private final ResultadoImportacaoDTO resultado = new ResultadoImportacaoDTO();
+
+        private Importacao(Long empresaId, String usuarioEmail, Set<String> placasExistentes) {
+            this.empresaId = empresaId;
+            this.usuarioEmail = usuarioEmail;
+            this.placasExistentes = placasExistentes;
+        }
+    }
+
+    private record LinhaLida(long numero, String conteudo) {
+    }
+
+    private record LinhaValida(long numero, String placa, String placaNormalizada, int quilometragem,
+                               String modelo, String marca, BigDecimal valor, String observacoes) {
+    }
+
+    private static final class LoteValidado {
+        private final int totalLinhas;
+        private final List<LinhaValida> validas = new ArrayList<>();
+        private final List<ErroImportacaoDTO> erros = new ArrayList<>();
+
+        private LoteValidado(int totalLinhas) {
+            this.totalLinhas = totalLinhas;
+        }
+    }
+
+    /**
+     * Cabeçalho do CSV: posição de cada coluna conhecida. O separador (vírgula ou ponto e
+     * vírgula) é detectado pelo cabeçalho; campos podem vir entre aspas duplas.
+     */
+    private static final class Cabecalho {
+        private final char separador;
+        private final String[] nomes;
+
+        private Cabecalho(char separador, String[] nomes) {
+            this.separador = separador;
+            this.nomes = nomes;
+        }
+
+        static Cabecalho ler(String linha) {
+            if (!linha.isEmpty() && linha.charAt(0) == '\uFEFF') {
+                linha = linha.substring(1);
+            }
+            char separador = linha.indexOf(';') >= 0 && linha.indexOf(',') < 0 ? ';' : ',';
+            List<String> colunas = dividir(linha, separador);
+            String[] nomes = new String[colunas.size()];
+            for (int i = 0; i < nomes.length; i++) {
+                nomes[i] = colunas.get(i).trim().toLowerCase(Locale.ROOT);
+            }
+            for (String obrigatoria : List.of("placa", "quilometragem", "modelo", "marca")) {
+                if (!List.of(nomes).contains(obrigatoria)) {
+                    throw new IllegalArgumentException("Coluna obrigatória ausente no cabeçalho: " + obrigatoria);
+                }
+            }
+            return new Cabecalho(separador, nomes);
+        }
+
+        Map<String, String> mapear(String linha) {
+            List<String> valores = dividir(linha, separador);
+            Map<String, String> campos = new HashMap<>();
+            for (int i = 0; i < nomes.length && i < valores.size(); i++) {
+                campos.put(nomes[i], valores.get(i));
+            }
+            return campos;
+        }
+
+        private static List<String> dividir(String linha, char separador) {
+            List<String> valores = new ArrayList<>();
+            StringBuilder atual = new StringBuilder();
+            boolean entreAspas = false;
+            for (int i = 0; i < linha.length(); i++) {
+                char c = linha.charAt(i);
+                if (entreAspas) {
+                    if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                        atual.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        entreAspas = false;
+                    } else {
+                        atual.append(c);
+                    }
+                } else if (c == '"') {
+                    entreAspas = true;
+                } else if (c == separador) {
+                    valores.add(atual.toString());
+                    atual.setLength(0);
+                } else {
+                    atual.append(c);
+                }
+            }
+            valores.add(atual.toString());
+            return valores;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.bancoai.service;
+
+import com.bancoai.model.Carro;
+import com.bancoai.repository.CarroRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de trigramas em memória, por empresa, para os filtros de substring
+ * (placa, modelo e marca) da busca de carros.
+ *
+ * O LIKE '%x%' não usa os índices btree do banco; este índice resolve o filtro para
+ * um conjunto de IDs candidatos, que a consulta SQL cruza com os filtros numéricos
+ * (id IN ...). O índice é só um pré-filtro: o SQL continua aplicando o LIKE, então
+ * entradas desatualizadas nunca aparecem no resultado. Carros gravados por outra instância
+ * ainda não sincronizados também não ficam de fora: os alterados desde a última
+ * sincronização entram na consulta junto com os candidatos, e o LIKE decide sobre eles.
+ * Quando o índice ainda não foi carregado, a empresa ainda não tem índice nesta instância
+ * ou o filtro é pouco seletivo, a busca volta para o LIKE puro.
+ */
+@Service
+public class IndiceBuscaCarroService {
+
+    // Acima disso o filtro é pouco seletivo e o IN deixaria a consulta mais lenta que o LIKE
+    private static final int LIMITE_CANDIDATOS = 1000;
+
+    // Margem para pegar transações que gravaram antes da última sincronização mas commitaram depois
+    private static final long MARGEM_SINCRONIZACAO_SEGUNDOS = 60;
+
+    private static final int PLACA = 0;
+    private static final int MODELO = 1;
+    private static final int MARCA = 2;
+
+    private final CarroRepository carroRepository;
+    private final Map<Long, IndiceEmpresa> indices = new ConcurrentHashMap<>();
+    private volatile boolean pronto = false;
+    private volatile LocalDateTime ultimaSincronizacao;
+
+    public IndiceBuscaCarroService(CarroRepository carroRepository) {
+        this.carroRepository = carroRepository;
+    }
+
+    /**
+     * Carrega o índice de todas as empresas na inicialização.
+     * Enquanto não termina, as buscas usam o LIKE normalmente.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        LocalDateTime inicio = LocalDateTime.now();
+        indices.clear();
+        List<Object[]> linhas = carroRepository.listarCamposBusca();
+        for (Object[] linha : linhas) {
+            indexar(linha);
+        }
+        ultimaSincronizacao = inicio;
+        pronto = true;
+        System.out.println("Índice de busca de carros carregado: " + linhas.size() + " carro(s)");
+    }
+
+    /**
+     * Aplica alterações feitas por outras instâncias da aplicação (ou perdidas entre
+     * o commit e a atualização local), com base em dataAtualizacao.
+     */
+    @Scheduled(fixedDelayString = "${app.busca.indice.sincronizacao-ms:30000}")
+    public void sincronizar() {
+        if (!pronto) {
+            return;
+        }
+        LocalDateTime inicio = LocalDateTime.now();
+        try {
+            for (Object[] linha : carroRepository.listarCamposBuscaAlteradosDesde(
+                    ultimaSincronizacao.minusSeconds(MARGEM_SINCRONIZACAO_SEGUNDOS))) {
+                indexar(linha);
+            }
+            ultimaSincronizacao = inicio;
+        } catch (Exception e) {
+            System.err.println("Erro ao sincronizar índice de busca de carros: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carros que podem atender ao filtro: os IDs encontrados no índice e todos os alterados
+     * depois de alteradosDesde (que o índice desta instância pode ainda não conhecer).
+     */
+    public record Candidatos(Set<Long> ids, LocalDateTime alteradosDesde) {
+    }
+
+    /**
+     * Resolve os filtros de substring para os carros candidatos da empresa.
+     *
+     * @return vazio quando o índice não pode ser usado (não carregado, empresa sem índice,
+     *         sem filtro de texto ou filtro pouco seletivo); nesse caso a busca deve usar só o LIKE
+     */
+    public Optional<Candidatos> buscarCandidatos(Long empresaId, String placa, String modelo, String marca) {
+        String[] filtros = {normalizar(placa), normalizar(modelo), normalizar(marca)};
+        if (!pronto || (filtros[PLACA] == null && filtros[MODELO] == null && filtros[MARCA] == null)) {
+            return Optional.empty();
+        }
+        IndiceEmpresa indice = indices.get(empresaId);
+        if (indice == null) {
+            return Optional.empty();
+        }
+        // Lido antes do índice: o que a próxima sincronização trouxer já está coberto pela janela
+        LocalDateTime alteradosDesde = ultimaSincronizacao.minusSeconds(MARGEM_SINCRONIZACAO_SEGUNDOS);
+        Set<Long> ids = indice.buscar(filtros, LIMITE_CANDIDATOS);
+        return ids != null ? Optional.of(new Candidatos(ids, alteradosDesde)) : Optional.empty();
+    }
+
+    public void atualizarAposCommit(Carro carro) {
+        atualizarAposCommit(carro.getEmpresa().getId(), carro.getId(), carro.getPlaca(), carro.getModelo(), carro.getMarca());
+    }
+
+    // Para gravações feitas direto via SQL, sem entidade carregada
+    public void atualizarAposCommit(Long empresaId, Long id, String placa, String modelo, String marca) {
+        String[] campos = {normalizar(placa), normalizar(modelo), normalizar(marca)};
+        executarAposCommit(() -> indices.computeIfAbsent(empresaId, k -> new IndiceEmpresa()).adicionar(id, campos));
+    }
+
+    public void removerAposCommit(Long empresaId, Long carroId) {
+        executarAposCommit(() -> {
+            IndiceEmpresa indice = indices.get(empresaId);
+            if (indice != null) {
+                indice.remover(carroId);
+            }
+        });
+    }
+
+    public void removerAposCommit(Long empresaId, Collection<Long> carroIds) {
+        executarAposCommit(() -> {
+            IndiceEmpresa indice = indices.get(empresaId);
+            if (indice != null) {
+                indice.remover(carroIds);
+            }
+        });
+    }
+
+    // Linha: [id, empresaId, placa, modelo, marca]
+    private void indexar(Object[] linha) {
+        Long id = (Long) linha[0];
+        Long empresaId = (Long) linha[1];
+        String[] campos = {normalizar((String) linha[2]), normalizar((String) linha[3]), normalizar((String) linha[4])};
+        indices.computeIfAbsent(empresaId, k -> new IndiceEmpresa()).adicionar(id, campos);
+    }
+
+    private void executarAposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    private static String normalizar(String valor) {
+        if (valor == null || valor.trim().isEmpty()) {
+            return null;
+        }
+        return valor.trim().toUpperCase();
+    }
+
+    /**
+     * Índice de uma empresa. Cada carro recebe uma posição sequencial; as listas de
+     * posições por trigrama crescem só no final e por isso ficam sempre ordenadas.
+     * Remoções apenas desativam a posição, e o índice é compactado quando as posições
+     * inativas passam a ser maioria.
+     */
+    private static final class IndiceEmpresa {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Integer> posicaoPorId = new HashMap<>();
+        private final Map<String, ListaPosicoes> posicoesPorTrigrama = new HashMap<>();
+        private final BitSet ativos = new BitSet();
+        private long[] idPorPosicao = new long[64];
+        private String[][] camposPorPosicao = new String[64][];
+        private int proximaPosicao = 0;
+
+        void adicionar(long id, String[] campos) {
+            lock.writeLock().lock();
+            try {
+                Integer atual = posicaoPorId.get(id);
+                if (atual != null && Arrays.equals(camposPorPosicao[atual], campos)) {
+                    return;
+                }
+                removerSemLock(id);
+
+                int posicao = proximaPosicao++;
+                if (posicao == idPorPosicao.length) {
+                    idPorPosicao = Arrays.copyOf(idPorPosicao, posicao * 2);
+                    camposPorPosicao = Arrays.copyOf(camposPorPosicao, posicao * 2);
+                }
+                idPorPosicao[posicao] = id;
+                camposPorPosicao[posicao] = campos;
+                posicaoPorId.put(id, posicao);
+                ativos.set(posicao);
+
+                for (int campo = 0; campo < campos.length; campo++) {
+                    for (String trigrama : trigramas(campos[campo])) {
+                        posicoesPorTrigrama.computeIfAbsent(campo + trigrama, k -> new ListaPosicoes()).adicionar(posicao);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remover(long id) {
+            lock.writeLock().lock();
+            try {
+                removerSemLock(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remover(Collection<Long> ids) {
+            lock.writeLock().lock();
+            try {
+                ids.forEach(this::removerSemLock);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removerSemLock(long id) {
+            Integer posicao = posicaoPorId.remove(id);
+            if (posicao == null) {
+                return;
+            }
+            ativos.clear(posicao);
+            camposPorPosicao[posicao] = null;
+
+            int inativos = proximaPosicao - posicaoPorId.size();
+            if (inativos > 1024 && inativos > posicaoPorId.size()) {
+                compactar();
+            }
+        }
+
+        private void compactar() {
+            List<Long> ids = new ArrayList<>();
+            List<String[]> campos = new ArrayList<>();
+            for (int posicao = ativos.nextSetBit(0); posicao >= 0; posicao = ativos.nextSetBit(posicao + 1)) {
+                ids.add(idPorPosicao[posicao]);
+                campos.add(camposPorPosicao[posicao]);
+            }
+            posicaoPorId.clear();
+            posicoesPorTrigrama.clear();
+            ativos.clear();
+            idPorPosicao = new long[Math.max(64, ids.size() * 2)];
+            camposPorPosicao = new String[idPorPosicao.length][];
+            proximaPosicao = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                adicionar(ids.get(i), campos.get(i));
+            }
+        }
+
+        /**
+         * @return IDs que contêm todos os filtros, ou null se passarem do limite
+         */
+        Set<Long> buscar(String[] filtros, int limite) {
+            lock.readLock().lock();
+            try {
+                // Interseção das listas de posições de todos os trigramas dos filtros
+                int[] candidatas = null;
+                int totalCandidatas = 0;
+                for (int campo = 0; campo < filtros.length; campo++) {
+                    for (String trigrama : trigramas(filtros[campo])) {
+                        ListaPosicoes lista = posicoesPorTrigrama.get(campo + trigrama);
+                        if (lista == null) {
+                            return Set.of();
+                        }
+                        if (candidatas == null) {
+                            candidatas = Arrays.copyOf(lista.posicoes, lista.tamanho);
+                            totalCandidatas = lista.tamanho;
+                        } else {
+                            totalCandidatas = intersectar(candidatas, totalCandidatas, lista);
+                        }
+                        if (totalCandidatas == 0) {
+                            return Set.of();
+                        }
+                    }
+                }
+
+                // Conferência final (descarta falsos positivos e trata filtros com menos de 3 letras)
+                Set<Long> resultado = new HashSet<>();
+                if (candidatas != null) {
+                    for (int i = 0; i < totalCandidatas; i++) {
+                        if (!conferir(candidatas[i], filtros, resultado, limite)) {
+                            return null;
+                        }
+                    }
+                } else {
+                    for (int posicao = ativos.nextSetBit(0); posicao >= 0; posicao = ativos.nextSetBit(posicao + 1)) {
+                        if (!conferir(posicao, filtros, resultado, limite)) {
+                            return null;
+                        }
+                    }
+                }
+                return resultado;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean conferir(int posicao, String[] filtros, Set<Long> resultado, int limite) {
+            String[] campos = camposPorPosicao[posicao];
+            if (campos == null) {
+                return true;
+            }
+            for (int campo = 0; campo < filtros.length; campo++) {
+                if (filtros[campo] != null && (campos[campo] == null || !campos[campo].contains(filtros[campo]))) {
+                    return true;
+                }
+            }
+            resultado.add(idPorPosicao[posicao]);
+            return resultado.size() <= limite;
+        }
+
+        // Interseção in-place de duas listas ordenadas; retorna o novo tamanho
+        private static int intersectar(int[] candidatas, int total, ListaPosicoes lista) {
+            int i = 0, j = 0, k = 0;
+            while (i < total && j < lista.tamanho) {
+                if (candidatas[i] < lista.posicoes[j]) {
+                    i++;
+                } else if (candidatas[i] > lista.posicoes[j]) {
+                    j++;
+                } else {
+                    candidatas[k++] = candidatas[i];
+                    i++;
+                    j++;
+                }
+            }
+            return k;
+        }
+
+        private static Set<String> trigramas(String valor) {
+            if (valor == null || valor.length() < 3) {
+                return Set.of();
+            }
+            Set<String> trigramas = new HashSet<>();
+            for (int i = 0; i + 3 <= valor.length(); i++) {
+                trigramas.add(valor.substring(i, i + 3));
+            }
+            return trigramas;
+        }
+    }
+
+    private static final class ListaPosicoes {
+        private int[] posicoes = new int[4];
+        private int tamanho = 0;
+
+        void adicionar(int posicao) {
+            if (tamanho == posicoes.length) {
+                posicoes = Arrays.copyOf(posicoes, tamanho * 2);
+            }
+            posicoes[tamanho++] = posicao;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.bancoai.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Leitura de um corpo multipart/form-data direto do stream da requisição, uma parte por vez.
+ *
+ * Diferente do suporte multipart do servlet (que grava cada parte inteira em disco ou memória
+ * antes de o controller ver qualquer byte), cada parte é entregue como um InputStream que lê
+ * do socket até o próximo delimitador; só um buffer fixo fica em memória. A parte atual precisa
+ * ser consumida (ou é descartada) antes de {@link #proximaParte()} devolver a seguinte.
+ */
+public class LeitorMultipart {
+
+    public record Parte(String nome, String nomeArquivo, String tipoConteudo, InputStream conteudo) {
+    }
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+    private static final int MAXIMO_LINHA_CABECALHO = 8 * 1024;
+    private static final int MAXIMO_CABECALHOS = 32;
+
+    private final InputStream entrada;
+    // "\r\n--" + boundary: o delimitador sempre começa em uma nova linha
+    private final byte[] delimitador;
+    private final byte[] buffer;
+    private int posicao;
+    private int limite;
+    private boolean terminado;
+    private Conteudo parteAtual;
+
+    public LeitorMultipart(InputStream entrada, String tipoConteudo) {
+        String boundary = extrairBoundary(tipoConteudo);
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Requisição multipart sem boundary válido");
+        }
+        this.entrada = entrada;
+        this.delimitador = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[TAMANHO_BUFFER];
+        // O corpo começa com "--boundary", sem quebra de linha antes: um CRLF inicial deixa o primeiro
+        // delimitador igual aos demais, e o que vier antes dele (preâmbulo) é lido como uma parte descartada
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        this.limite = 2;
+        this.parteAtual = new Conteudo();
+    }
+
+    /**
+     * Próxima parte do corpo, ou null no delimitador final. Descarta o restante da parte anterior.
+     */
+    public Parte proximaParte() throws IOException {
+        if (terminado) {
+            return null;
+        }
+        parteAtual.descartar();
+        garantir(delimitador.length + 2);
+        posicao += delimitador.length;
+        if (buffer[posicao] == '-' && buffer[posicao + 1] == '-') {
+            terminado = true;
+            return null;
+        }
+        // Resto da linha do delimitador (espaços opcionais) e os cabeçalhos da parte
+        lerLinha();
+        String nome = null;
+        String nomeArquivo = null;
+        String tipoConteudo = null;
+        for (int i = 0; ; i++) {
+            String linha = lerLinha();
+            if (linha.isEmpty()) {
+                break;
+            }
+            if (i >= MAXIMO_CABECALHOS) {
+                throw new IllegalArgumentException("Parte multipart com cabeçalhos demais");
+            }
+            int doisPontos = linha.indexOf(':');
+            if (doisPontos < 0) {
+                continue;
+            }
+            String cabecalho = linha.substring(0, doisPontos).trim().toLowerCase(Locale.ROOT);
+            String valor = linha.substring(doisPontos + 1).trim();
+            if (cabecalho.equals("content-disposition")) {
+                nome = parametro(valor, "name");
+                nomeArquivo = parametro(valor, "filename");
+            } else if (cabecalho.equals("content-type")) {
+                tipoConteudo = valor;
+            }
+        }
+        if (nomeArquivo != null) {
+            // Alguns navegadores antigos mandam o caminho completo
+            nomeArquivo = nomeArquivo.substring(Math.max(nomeArquivo.lastIndexOf('/'), nomeArquivo.lastIndexOf('\\')) + 1);
+        }
+        parteAtual = new Conteudo();
+        return new Parte(nome, nomeArquivo, tipoConteudo, parteAtual);
+    }
+
+    // Conteúdo da parte: bytes até o próximo delimitador
+    private class Conteudo extends InputStream {
+        private boolean fim;
+
+        @Override
+        public int read() throws IOException {
+            byte[] umByte = new byte[1];
+            return read(umByte, 0, 1) < 0 ? -1 : umByte[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destino, int inicio, int quantidade) throws IOException {
+            if (fim) {
+                return -1;
+            }
+            if (quantidade == 0) {
+                return 0;
+            }
+            int disponiveis = disponiveis();
+            if (disponiveis == 0) {
+                fim = true;
+                return -1;
+            }
+            int lidos = Math.min(disponiveis, quantidade);
+            System.arraycopy(buffer, posicao, destino, inicio, lidos);
+            posicao += lidos;
+            return lidos;
+        }
+
+        private void descartar() throws IOException {
+            while (!fim) {
+                int disponiveis = disponiveis();
+                if (disponiveis == 0) {
+                    fim = true;
+                } else {
+                    posicao += disponiveis;
+                }
+            }
+        }
+
+        // Bytes que com certeza são da parte: até o delimitador, ou até onde ele ainda pode começar
+        private int disponiveis() throws IOException {
+            while (true) {
+                int indice = indiceDelimitador();
+                if (indice >= 0) {
+                    return indice - posicao;
+                }
+                int seguros = limite - posicao - (delimitador.length - 1);
+                if (seguros > 0) {
+                    return seguros;
+                }
+                if (!preencher()) {
+                    throw new EOFException("Corpo multipart incompleto");
+                }
+            }
+        }
+    }
+
+    private int indiceDelimitador() {
+        int ultimo = limite - delimitador.length;
+        byte primeiro = delimitador[0];
+        for (int i = posicao; i <= ultimo; i++) {
+            if (buffer[i] != primeiro) {
+                continue;
+            }
+            int j = 1;
+            while (j < delimitador.length && buffer[i + j] == delimitador[j]) {
+                j++;
+            }
+            if (j == delimitador.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String lerLinha() throws IOException {
+        // A partir daqui o CRLF ainda não foi procurado
+        int procurado = posicao;
+        while (true) {
+            for (int i = procurado; i + 1 < limite; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    String linha = new String(buffer, posicao, i - posicao, StandardCharsets.UTF_8);
+                    posicao = i + 2;
+                    return linha;
+                }
+            }
+            if (limite - posicao > MAXIMO_LINHA_CABECALHO) {
+                throw new IllegalArgumentException("Cabeçalho multipart longo demais");
+            }
+            procurado = Math.max(posicao, limite - 1);
+            int deslocamento = posicao;
+            if (!preencher()) {
+                throw new EOFException("Corpo multipart incompleto");
+            }
+            procurado -= deslocamento;
+        }
+    }
+
+    private void garantir(int quantidade) throws IOException {
+        while (limite - posicao < quantidade) {
+            if (!preencher()) {
+                throw new EOFException("Corpo multipart incompleto");
+            }
+        }
+    }
+
+    // Move o que ainda não foi lido para o começo do buffer e completa com a entrada
+    private boolean preencher() throws IOException {
+        if (posicao > 0) {
+            System.arraycopy(buffer, posicao, buffer, 0, limite - posicao);
+            limite -= posicao;
+            posicao = 0;
+        }
+        if (limite == buffer.length) {
+            return false;
+        }
+        int lidos = entrada.read(buffer, limite, buffer.length - limite);
+        if (lidos < 0) {
+            return false;
+        }
+        limite += lidos;
+        return true;
+    }
+
+    private static String extrairBoundary(String tipoConteudo) {
+        return tipoConteudo != null ? parametro(tipoConteudo, "boundary") : null;
+    }
+
+    // Valor de um parâmetro "chave=valor" ou chave="valor" em um cabeçalho com ';'
+    private static String parametro(String cabecalho, String chave) {
+        for (String item : cabecalho.split(";")) {
+            int igual = item.indexOf('=');
+            if (igual < 0 || !item.substring(0, igual).trim().equalsIgnoreCase(chave)) {
+                continue;
+            }
+            String valor = item.substring(igual + 1).trim();
+            if (valor.length() >= 2 && valor.startsWith("\"") && valor.endsWith("\"")) {
+                valor = valor.substring(1, valor.length() - 1);
+            }
+            return valor;
+        }
+        return null;
+    }
+}
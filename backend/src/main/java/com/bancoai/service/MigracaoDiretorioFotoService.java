@@ -0,0 +1,155 @@
+package com.bancoai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Migração dos arquivos gravados direto em uploads/carros e uploads/usuarios para os
+ * subdiretórios ab/cd (ver DiretorioFragmentado), com a aplicação no ar.
+ *
+ * As URLs no banco (fotos_carro.url, usuarios.foto) só têm o nome do arquivo, e o subdiretório
+ * sai do nome, então nenhuma linha precisa ser regravada: a migração só move arquivos. Ela anda
+ * em lotes de app.arquivos.fragmentacao.lote arquivos com uma pausa entre eles, em uma thread
+ * própria. Cada arquivo é movido com um rename atômico no mesmo sistema de arquivos; enquanto
+ * isso os endpoints de foto procuram no subdiretório e, se não acharem, no diretório base.
+ * Roda sozinha na inicialização (app.arquivos.fragmentacao.migrar-na-inicializacao) e pode ser
+ * disparada de novo por um administrador.
+ */
+@Service
+public class MigracaoDiretorioFotoService {
+
+    private static final List<DiretorioFragmentado> DIRETORIOS =
+            List.of(DiretorioFragmentado.FOTOS_CARROS, DiretorioFragmentado.FOTOS_USUARIOS);
+
+    @Value("${app.arquivos.fragmentacao.lote:500}")
+    private int tamanhoLote;
+
+    @Value("${app.arquivos.fragmentacao.pausa-ms:100}")
+    private long pausaMs;
+
+    @Value("${app.arquivos.fragmentacao.migrar-na-inicializacao:true}")
+    private boolean migrarNaInicializacao;
+
+    private final AtomicLong movidos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private Thread execucao;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        if (migrarNaInicializacao) {
+            iniciar();
+        }
+    }
+
+    /**
+     * Inicia a migração em segundo plano; false se já houver uma em andamento.
+     */
+    public synchronized boolean iniciar() {
+        if (execucao != null && execucao.isAlive()) {
+            return false;
+        }
+        movidos.set(0);
+        falhas.set(0);
+        inicio = LocalDateTime.now();
+        fim = null;
+        execucao = new Thread(this::migrar, "migracao-fotos");
+        execucao.setDaemon(true);
+        execucao.start();
+        return true;
+    }
+
+    public synchronized Map<String, Object> obterSituacao() {
+        Map<String, Object> situacao = new LinkedHashMap<>();
+        situacao.put("executando", execucao != null && execucao.isAlive());
+        situacao.put("movidos", movidos.get());
+        situacao.put("falhas", falhas.get());
+        situacao.put("inicio", inicio);
+        situacao.put("fim", fim);
+        return situacao;
+    }
+
+    private void migrar() {
+        try {
+            for (DiretorioFragmentado diretorio : DIRETORIOS) {
+                migrar(diretorio);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Erro na migração de fotos para subdiretórios: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                fim = LocalDateTime.now();
+            }
+            if (movidos.get() > 0 || falhas.get() > 0) {
+                System.out.println("Fotos movidas para subdiretórios: " + movidos.get() + " (falhas: " + falhas.get() + ")");
+            }
+        }
+    }
+
+    private void migrar(DiretorioFragmentado diretorio) throws IOException, InterruptedException {
+        if (!Files.isDirectory(diretorio.getBase())) {
+            return;
+        }
+        // Arquivos que falharam ficam onde estão (continuam sendo servidos do diretório base)
+        Set<Path> ignorados = new HashSet<>();
+        while (true) {
+            List<Path> lote = listarLote(diretorio.getBase(), ignorados);
+            if (lote.isEmpty()) {
+                return;
+            }
+            for (Path origem : lote) {
+                String nomeArquivo = origem.getFileName().toString();
+                try {
+                    // Se o destino já existir (mesmo conteúdo, no armazenamento por hash), é substituído
+                    Files.move(origem, diretorio.caminhoParaGravar(nomeArquivo), StandardCopyOption.ATOMIC_MOVE);
+                    movidos.incrementAndGet();
+                } catch (IOException e) {
+                    // Removido por uma exclusão enquanto o lote andava: nada a fazer
+                    if (Files.exists(origem)) {
+                        System.err.println("Erro ao mover " + origem + ": " + e.getMessage());
+                        falhas.incrementAndGet();
+                        ignorados.add(origem);
+                    }
+                }
+            }
+            // Pausa entre lotes para não disputar I/O de disco com os uploads e downloads
+            Thread.sleep(pausaMs);
+        }
+    }
+
+    // Próximos arquivos no diretório base, fora os subdiretórios e os temporários de upload
+    private List<Path> listarLote(Path base, Set<Path> ignorados) throws IOException {
+        List<Path> lote = new ArrayList<>(tamanhoLote);
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(base)) {
+            for (Path arquivo : arquivos) {
+                if (lote.size() >= tamanhoLote) {
+                    break;
+                }
+                String nome = arquivo.getFileName().toString();
+                if (!nome.endsWith(".tmp") && !ignorados.contains(arquivo) && Files.isRegularFile(arquivo)) {
+                    lote.add(arquivo);
+                }
+            }
+        }
+        return lote;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bancoai.service;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migração das fotos da tabela antiga carro_fotos (coleção de URLs, sem id nem ordem)
+ * para fotos_carro (uma linha por foto, ver CarroFoto). Executada na inicialização: copia
+ * as linhas em lotes e remove a tabela antiga na mesma transação, então roda uma única vez.
+ * Tamanho, dimensões e hash ficam nulos nas fotos migradas.
+ */
+@Service
+public class MigracaoFotoCarroService {
+    
+    private static final String TABELA_LEGADA = "carro_fotos";
+    private static final int TAMANHO_LOTE = 1000;
+    
+    private static final String SQL_INSERIR =
+            "INSERT INTO fotos_carro (id, carro_id, url, ordem, data_cadastro) VALUES (?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenciaService sequenciaService;
+    
+    public MigracaoFotoCarroService(JdbcTemplate jdbcTemplate, SequenciaService sequenciaService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenciaService = sequenciaService;
+    }
+    
+    /**
+     * @return quantidade de fotos migradas (0 se a tabela antiga não existir)
+     */
+    @Transactional
+    public int migrarTabelaLegada() {
+        if (!existeTabelaLegada()) {
+            return 0;
+        }
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Integer> proximaOrdem = new HashMap<>();
+        List<Object[]> lote = new ArrayList<>(TAMANHO_LOTE);
+        int[] total = {0};
+        
+        jdbcTemplate.query("SELECT carro_id, foto_url FROM " + TABELA_LEGADA + " ORDER BY carro_id", (ResultSet rs) -> {
+            long carroId = rs.getLong("carro_id");
+            int ordem = proximaOrdem.merge(carroId, 1, Integer::sum) - 1;
+            lote.add(new Object[]{null, carroId, rs.getString("foto_url"), ordem, agora});
+            if (lote.size() == TAMANHO_LOTE) {
+                total[0] += inserir(lote);
+            }
+        });
+        total[0] += inserir(lote);
+        
+        jdbcTemplate.execute("DROP TABLE " + TABELA_LEGADA);
+        return total[0];
+    }
+    
+    private int inserir(List<Object[]> lote) {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        long[] ids = sequenciaService.reservarIds(SequenciaService.FOTOS_CARRO, lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            lote.get(i)[0] = ids[i];
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERIR, lote);
+        int inseridos = lote.size();
+        lote.clear();
+        return inseridos;
+    }
+    
+    // H2 guarda os nomes em maiúsculas e o PostgreSQL em minúsculas
+    private boolean existeTabelaLegada() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) conexao -> {
+            for (String nome : new String[]{TABELA_LEGADA, TABELA_LEGADA.toUpperCase()}) {
+                try (ResultSet tabelas = conexao.getMetaData().getTables(null, null, nome, new String[]{"TABLE"})) {
+                    if (tabelas.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+}
@@ -0,0 +1,255 @@
+package com.bancoai.service;
+
+import com.bancoai.dto.OperacaoLoteCarroDTO;
+import com.bancoai.dto.ResultadoOperacaoLoteDTO;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reajuste de valor e exclusão de vários carros de uma vez (por lista de ids ou por filtro).
+ *
+ * Em vez de carregar e salvar cada entidade, os carros são processados em lotes de ids com
+ * UPDATE set-based via JDBC: por lote, uma leitura dos dados para auditoria e para o feed de
+ * alterações, o comando em si e um único registro de auditoria. Tudo roda em uma transação e a
+ * versão do catálogo sobe uma vez. A exclusão é lógica; linhas, fotos e arquivos são removidos
+ * depois pelo PurgaCarroService.
+ */
+@Service
+public class OperacaoLoteCarroService {
+
+    public static final String PERCENTUAL = "PERCENTUAL";
+    public static final String ABSOLUTO = "ABSOLUTO";
+
+    private static final int TAMANHO_LOTE = 1000;
+    private static final int LIMITE_CARROS = 100_000;
+
+    private static final String SQL_VALORES =
+            "SELECT id, placa, valor FROM carros " +
+            "WHERE empresa_id = :empresaId AND id IN (:ids) AND valor IS NOT NULL AND data_exclusao IS NULL";
+
+    // Percentual arredondado a centavos; o ajuste absoluto nunca deixa o valor negativo
+    private static final String SQL_AJUSTAR_PERCENTUAL =
+            "UPDATE carros SET valor = ROUND(valor * :fator, 2), data_atualizacao = :agora " +
+            "WHERE empresa_id = :empresaId AND id IN (:ids) AND valor IS NOT NULL AND data_exclusao IS NULL";
+
+    private static final String SQL_AJUSTAR_ABSOLUTO =
+            "UPDATE carros SET valor = GREATEST(valor + :ajuste, 0), data_atualizacao = :agora " +
+            "WHERE empresa_id = :empresaId AND id IN (:ids) AND valor IS NOT NULL AND data_exclusao IS NULL";
+
+    private static final String SQL_PLACAS =
+            "SELECT id, placa FROM carros WHERE empresa_id = :empresaId AND id IN (:ids) AND data_exclusao IS NULL";
+
+    // Exclusão lógica (ver PurgaCarroService): a placa normalizada é liberada para novos cadastros
+    private static final String SQL_EXCLUIR =
+            "UPDATE carros SET data_exclusao = :agora, placa_normalizada = NULL, data_atualizacao = :agora " +
+            "WHERE empresa_id = :empresaId AND id IN (:ids) AND data_exclusao IS NULL";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacao;
+    private final CarroService carroService;
+    private final AuditoriaService auditoriaService;
+    private final CatalogoVersaoService catalogoVersao;
+    private final AlteracaoCarroService alteracaoCarro;
+    private final IndiceBuscaCarroService indiceBusca;
+
+    public OperacaoLoteCarroService(NamedParameterJdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    CarroService carroService,
+                                    AuditoriaService auditoriaService,
+                                    CatalogoVersaoService catalogoVersao,
+                                    AlteracaoCarroService alteracaoCarro,
+                                    IndiceBuscaCarroService indiceBusca) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.carroService = carroService;
+        this.auditoriaService = auditoriaService;
+        this.catalogoVersao = catalogoVersao;
+        this.alteracaoCarro = alteracaoCarro;
+        this.indiceBusca = indiceBusca;
+    }
+
+    /**
+     * Ajusta o valor dos carros selecionados: PERCENTUAL multiplica por (1 + ajuste/100),
+     * ABSOLUTO soma o ajuste. Carros sem valor cadastrado são ignorados.
+     */
+    public ResultadoOperacaoLoteDTO ajustarValor(OperacaoLoteCarroDTO operacao, Long empresaId, String usuarioEmail) {
+        return ajustarValor(operacao, empresaId, usuarioEmail, ProgressoTarefa.NENHUM);
+    }
+    
+    /**
+     * Igual a {@link #ajustarValor(OperacaoLoteCarroDTO, Long, String)}, informando o progresso
+     * (carros selecionados já processados) a cada lote.
+     */
+    public ResultadoOperacaoLoteDTO ajustarValor(OperacaoLoteCarroDTO operacao, Long empresaId, String usuarioEmail,
+                                                 ProgressoTarefa progresso) {
+        String tipo = operacao.getTipoAjuste() != null ? operacao.getTipoAjuste().trim().toUpperCase() : null;
+        BigDecimal ajuste = operacao.getAjuste();
+        if (ajuste == null) {
+            throw new IllegalArgumentException("Ajuste é obrigatório");
+        }
+        String sql;
+        MapSqlParameterSource parametrosBase = new MapSqlParameterSource("empresaId", empresaId);
+        if (PERCENTUAL.equals(tipo)) {
+            if (ajuste.compareTo(BigDecimal.valueOf(-100)) < 0) {
+                throw new IllegalArgumentException("Ajuste percentual não pode ser menor que -100");
+            }
+            sql = SQL_AJUSTAR_PERCENTUAL;
+            parametrosBase.addValue("fator", BigDecimal.ONE.add(ajuste.divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP)));
+        } else if (ABSOLUTO.equals(tipo)) {
+            sql = SQL_AJUSTAR_ABSOLUTO;
+            parametrosBase.addValue("ajuste", ajuste);
+        } else {
+            throw new IllegalArgumentException("Tipo de ajuste inválido: use " + PERCENTUAL + " ou " + ABSOLUTO);
+        }
+
+        long inicio = System.currentTimeMillis();
+        ResultadoOperacaoLoteDTO resultado = transacao.execute(status -> {
+            ResultadoOperacaoLoteDTO parcial = new ResultadoOperacaoLoteDTO();
+            List<Long> ids = resolverIds(operacao, empresaId);
+            parcial.setSelecionados((long) ids.size());
+            Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+            long processados = 0;
+            progresso.atualizar(processados, (long) ids.size());
+
+            for (List<Long> lote : dividir(ids)) {
+                processados += lote.size();
+                MapSqlParameterSource parametros = new MapSqlParameterSource(parametrosBase.getValues())
+                        .addValue("ids", lote)
+                        .addValue("agora", agora);
+
+                Map<Long, String> placasPorId = new LinkedHashMap<>();
+                Map<Long, BigDecimal> valoresAnteriores = new LinkedHashMap<>();
+                jdbcTemplate.query(SQL_VALORES, parametros, rs -> {
+                    long id = rs.getLong("id");
+                    placasPorId.put(id, rs.getString("placa"));
+                    valoresAnteriores.put(id, rs.getBigDecimal("valor"));
+                });
+                if (placasPorId.isEmpty()) {
+                    progresso.atualizar(processados, (long) ids.size());
+                    continue;
+                }
+
+                int alterados = jdbcTemplate.update(sql, parametros);
+                alteracaoCarro.registrarEmLote(AlteracaoCarroService.UPSERT, empresaId, placasPorId);
+
+                Map<String, Object> resumo = new LinkedHashMap<>();
+                resumo.put("tipoAjuste", tipo);
+                resumo.put("ajuste", ajuste);
+                resumo.put("ids", placasPorId.keySet());
+                auditoriaService.registrarAcao("BULK_UPDATE", "CARRO", empresaId, usuarioEmail, empresaId,
+                        valoresAnteriores, resumo, "Ajuste de valor em lote: " + alterados + " carro(s)");
+
+                parcial.setAfetados(parcial.getAfetados() + alterados);
+                parcial.setLotes(parcial.getLotes() + 1);
+                progresso.atualizar(processados, (long) ids.size());
+            }
+
+            if (parcial.getAfetados() > 0) {
+                catalogoVersao.incrementar(empresaId);
+            }
+            return parcial;
+        });
+        resultado.setDuracaoMs(System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    /**
+     * Exclui logicamente os carros selecionados: um UPDATE por lote, sem tocar nas fotos.
+     * Os carros podem ser restaurados até a purga.
+     */
+    public ResultadoOperacaoLoteDTO excluir(OperacaoLoteCarroDTO operacao, Long empresaId, String usuarioEmail) {
+        return excluir(operacao, empresaId, usuarioEmail, ProgressoTarefa.NENHUM);
+    }
+    
+    /**
+     * Igual a {@link #excluir(OperacaoLoteCarroDTO, Long, String)}, informando o progresso a cada lote.
+     */
+    public ResultadoOperacaoLoteDTO excluir(OperacaoLoteCarroDTO operacao, Long empresaId, String usuarioEmail,
+                                            ProgressoTarefa progresso) {
+        long inicio = System.currentTimeMillis();
+        ResultadoOperacaoLoteDTO resultado = transacao.execute(status -> {
+            ResultadoOperacaoLoteDTO parcial = new ResultadoOperacaoLoteDTO();
+            List<Long> ids = resolverIds(operacao, empresaId);
+            parcial.setSelecionados((long) ids.size());
+            List<Long> excluidos = new ArrayList<>();
+            Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+            long processados = 0;
+            progresso.atualizar(processados, (long) ids.size());
+
+            for (List<Long> lote : dividir(ids)) {
+                processados += lote.size();
+                MapSqlParameterSource parametros = new MapSqlParameterSource("empresaId", empresaId)
+                        .addValue("ids", lote);
+
+                // Só os ids ativos que pertencem à empresa seguem para a exclusão
+                Map<Long, String> placasPorId = new LinkedHashMap<>();
+                jdbcTemplate.query(SQL_PLACAS, parametros, rs -> {
+                    placasPorId.put(rs.getLong("id"), rs.getString("placa"));
+                });
+                if (placasPorId.isEmpty()) {
+                    progresso.atualizar(processados, (long) ids.size());
+                    continue;
+                }
+                MapSqlParameterSource daEmpresa = new MapSqlParameterSource("empresaId", empresaId)
+                        .addValue("ids", placasPorId.keySet())
+                        .addValue("agora", agora);
+
+                int removidos = jdbcTemplate.update(SQL_EXCLUIR, daEmpresa);
+                alteracaoCarro.registrarEmLote(AlteracaoCarroService.DELETE, empresaId, placasPorId);
+
+                auditoriaService.registrarAcao("BULK_DELETE", "CARRO", empresaId, usuarioEmail, empresaId,
+                        placasPorId, null, "Exclusão em lote: " + removidos + " carro(s)");
+
+                excluidos.addAll(placasPorId.keySet());
+                parcial.setAfetados(parcial.getAfetados() + removidos);
+                parcial.setLotes(parcial.getLotes() + 1);
+                progresso.atualizar(processados, (long) ids.size());
+            }
+
+            if (!excluidos.isEmpty()) {
+                catalogoVersao.incrementar(empresaId);
+                indiceBusca.removerAposCommit(empresaId, excluidos);
+            }
+            return parcial;
+        });
+        resultado.setDuracaoMs(System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    // Ids informados (sem repetição) ou ids que atendem ao filtro; a empresa é conferida em cada lote
+    private List<Long> resolverIds(OperacaoLoteCarroDTO operacao, Long empresaId) {
+        boolean temIds = operacao.getIds() != null && !operacao.getIds().isEmpty();
+        if (temIds == (operacao.getFiltro() != null)) {
+            throw new IllegalArgumentException("Informe a lista de ids ou o filtro (um dos dois)");
+        }
+        List<Long> ids = temIds
+                ? new ArrayList<>(new LinkedHashSet<>(operacao.getIds()))
+                : carroService.listarIdsPorFiltro(operacao.getFiltro(), empresaId);
+        if (ids.size() > LIMITE_CARROS) {
+            throw new IllegalArgumentException("A operação atinge " + ids.size() +
+                    " carros; o limite por requisição é " + LIMITE_CARROS);
+        }
+        return ids;
+    }
+
+    private static List<List<Long>> dividir(List<Long> ids) {
+        List<List<Long>> lotes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += TAMANHO_LOTE) {
+            lotes.add(ids.subList(i, Math.min(i + TAMANHO_LOTE, ids.size())));
+        }
+        return lotes;
+    }
+}
@@ -0,0 +1,204 @@
+package com.bancoai.service;
+
+import com.bancoai.model.EventoOutbox;
+import com.bancoai.repository.EventoOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox transacional para os efeitos colaterais das escritas de carros (email de notificação,
+ * remoção de arquivos de foto).
+ *
+ * A escrita só grava um evento na própria transação (um INSERT a mais no mesmo batch); o envio
+ * acontece depois do commit em uma thread própria, sem segurar a conexão nem a requisição.
+ * Após o commit o despachante é acordado na hora; uma varredura periódica cobre as novas
+ * tentativas e eventos de instâncias que pararam no meio. Cada rodada reserva um lote de
+ * eventos com um UPDATE condicional, então várias instâncias podem despachar ao mesmo tempo
+ * sem processar o mesmo evento duas vezes.
+ */
+@Service
+public class OutboxService {
+
+    public static final String EMAIL_NOTIFICACAO_CARRO = "EMAIL_NOTIFICACAO_CARRO";
+    public static final String EXCLUIR_FOTOS = "EXCLUIR_FOTOS";
+
+    public static final String FALHA = "FALHA";
+
+    private static final int TAMANHO_LOTE = 100;
+    private static final int MAXIMO_TENTATIVAS = 10;
+    // Tempo que um lote fica reservado; se o despachante parar no meio, o evento volta a ficar disponível
+    private static final long DURACAO_RESERVA_SEGUNDOS = 300;
+    // Espera antes de uma nova tentativa: dobra a cada falha, até o máximo
+    private static final long ESPERA_INICIAL_SEGUNDOS = 30;
+    private static final long ESPERA_MAXIMA_SEGUNDOS = 3600;
+
+    public record NotificacaoCarro(String email, String nome, String marca, String modelo, String placa) {
+    }
+
+    private final EventoOutboxRepository eventoRepository;
+    private final EmailService emailService;
+    private final ArmazenamentoFotoService armazenamentoFoto;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService despachante;
+    private final AtomicBoolean despachoAgendado = new AtomicBoolean();
+
+    public OutboxService(EventoOutboxRepository eventoRepository, EmailService emailService,
+                         ArmazenamentoFotoService armazenamentoFoto, ObjectMapper objectMapper) {
+        this.eventoRepository = eventoRepository;
+        this.emailService = emailService;
+        this.armazenamentoFoto = armazenamentoFoto;
+        this.objectMapper = objectMapper;
+        this.despachante = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-despachante");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        despachante.shutdown();
+    }
+
+    /**
+     * Grava o evento na transação corrente; o efeito só é executado se ela for confirmada.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registrar(String tipo, Object dados) {
+        EventoOutbox evento = new EventoOutbox();
+        evento.setTipo(tipo);
+        try {
+            evento.setPayload(objectMapper.writeValueAsString(dados));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao serializar evento do outbox", e);
+        }
+        eventoRepository.save(evento);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sinalizar();
+            }
+        });
+    }
+
+    // Varredura periódica: novas tentativas e eventos que ficaram para trás
+    @Scheduled(fixedDelayString = "${app.outbox.intervalo-ms:10000}")
+    public void agendarDespacho() {
+        sinalizar();
+    }
+
+    // Acorda o despachante; sinais recebidos enquanto uma rodada está na fila viram uma só
+    private void sinalizar() {
+        if (despachoAgendado.compareAndSet(false, true)) {
+            despachante.execute(() -> {
+                despachoAgendado.set(false);
+                processarPendentes();
+            });
+        }
+    }
+
+    private void processarPendentes() {
+        try {
+            while (true) {
+                LocalDateTime agora = LocalDateTime.now();
+                List<Long> ids = eventoRepository.buscarIdsDisponiveis(agora, PageRequest.of(0, TAMANHO_LOTE));
+                if (ids.isEmpty()) {
+                    return;
+                }
+                String lote = UUID.randomUUID().toString();
+                eventoRepository.reservar(ids, lote, agora, agora.plusSeconds(DURACAO_RESERVA_SEGUNDOS));
+                processarLote(eventoRepository.findByLote(lote));
+                if (ids.size() < TAMANHO_LOTE) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Erro no despachante do outbox: " + e.getMessage());
+        }
+    }
+
+    private void processarLote(List<EventoOutbox> eventos) {
+        List<Long> concluidos = new ArrayList<>();
+        List<EventoOutbox> falhas = new ArrayList<>();
+
+        // Emails do lote: uma única conexão SMTP para todas as mensagens
+        List<EventoOutbox> eventosEmail = new ArrayList<>();
+        List<SimpleMailMessage> mensagens = new ArrayList<>();
+        for (EventoOutbox evento : eventos) {
+            try {
+                switch (evento.getTipo()) {
+                    case EMAIL_NOTIFICACAO_CARRO -> {
+                        NotificacaoCarro notificacao = objectMapper.readValue(evento.getPayload(), NotificacaoCarro.class);
+                        mensagens.add(emailService.criarNotificacaoCarro(notificacao.email(), notificacao.nome(),
+                                notificacao.marca(), notificacao.modelo(), notificacao.placa()));
+                        eventosEmail.add(evento);
+                    }
+                    case EXCLUIR_FOTOS -> {
+                        armazenamentoFoto.deletarFotos(objectMapper.readValue(evento.getPayload(),
+                                new TypeReference<List<String>>() {}));
+                        concluidos.add(evento.getId());
+                    }
+                    default -> throw new IllegalStateException("Tipo de evento desconhecido: " + evento.getTipo());
+                }
+            } catch (Exception e) {
+                falhas.add(registrarFalha(evento, e));
+            }
+        }
+
+        if (!mensagens.isEmpty()) {
+            Set<SimpleMailMessage> naoEnviadas = emailService.enviarLote(mensagens);
+            for (int i = 0; i < mensagens.size(); i++) {
+                EventoOutbox evento = eventosEmail.get(i);
+                if (naoEnviadas.contains(mensagens.get(i))) {
+                    falhas.add(registrarFalha(evento, new RuntimeException("Falha no envio do email")));
+                } else {
+                    concluidos.add(evento.getId());
+                }
+            }
+        }
+
+        if (!concluidos.isEmpty()) {
+            eventoRepository.deleteAllByIdInBatch(concluidos);
+        }
+        if (!falhas.isEmpty()) {
+            eventoRepository.saveAll(falhas);
+        }
+    }
+
+    private EventoOutbox registrarFalha(EventoOutbox evento, Exception erro) {
+        int tentativas = evento.getTentativas() + 1;
+        String mensagem = erro.getMessage() != null ? erro.getMessage() : erro.getClass().getSimpleName();
+        evento.setTentativas(tentativas);
+        evento.setUltimoErro(mensagem.length() > 500 ? mensagem.substring(0, 500) : mensagem);
+        evento.setLote(null);
+        if (tentativas >= MAXIMO_TENTATIVAS) {
+            evento.setStatus(FALHA);
+            System.err.println("Evento do outbox " + evento.getId() + " (" + evento.getTipo() + ") marcado como FALHA após " +
+                    tentativas + " tentativas: " + evento.getUltimoErro());
+        } else {
+            long espera = Math.min(ESPERA_INICIAL_SEGUNDOS << (tentativas - 1), ESPERA_MAXIMA_SEGUNDOS);
+            evento.setProximaTentativa(LocalDateTime.now().plusSeconds(espera));
+        }
+        return evento;
+    }
+}
@@ -0,0 +1,427 @@
+package com.bancoai.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tratamento das fotos enviadas: remoção de metadados EXIF, orientação e variantes reduzidas.
+ *
+ * No upload, o JPEG original perde os segmentos de metadados (EXIF com GPS e dados da câmera,
+ * XMP, IPTC e comentários) sem ser recodificado, enquanto é lido da requisição; só quando a
+ * orientação EXIF pede rotação os pixels são girados e o arquivo é regravado. Em seguida são geradas, em segundo plano, as
+ * variantes {@link #LARGURAS} em JPEG progressivo, usadas pelo GET /api/carros/fotos/{nome}?w=.
+ *
+ * Toda decodificação roda em um pool limitado (app.imagens.threads, fila app.imagens.fila):
+ * imagens grandes ocupam muita memória depois de decodificadas, então o número de
+ * decodificações simultâneas é fixo. Com a fila cheia, a própria requisição faz o trabalho,
+ * o que segura novos uploads em vez de acumular tarefas.
+ */
+@Service
+public class ProcessamentoImagemService {
+
+    // Larguras das variantes, em ordem crescente (miniatura da grade e tamanho médio)
+    public static final int[] LARGURAS = {320, 960};
+
+    private static final float QUALIDADE_VARIANTE = 0.8f;
+    private static final float QUALIDADE_ORIGINAL = 0.92f;
+
+    private static final int MARCADOR_SOI = 0xD8;
+    private static final int MARCADOR_SOS = 0xDA;
+    private static final int MARCADOR_EOI = 0xD9;
+    private static final int MARCADOR_APP1 = 0xE1;
+    private static final int MARCADOR_APP13 = 0xED;
+    private static final int MARCADOR_COM = 0xFE;
+
+    private final ThreadPoolExecutor executor;
+    // Variantes em geração, para não enfileirar o mesmo arquivo duas vezes
+    private final Set<Path> emProcessamento = ConcurrentHashMap.newKeySet();
+
+    public ProcessamentoImagemService(@Value("${app.imagens.threads:2}") int threads,
+                                      @Value("${app.imagens.fila:100}") int fila) {
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(fila),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "imagens-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdown();
+    }
+
+    /**
+     * Copia o conteúdo enviado para o destino sem metadados, em uma única passada e sem guardar
+     * a imagem em memória: JPEGs perdem os segmentos APP1 (EXIF/XMP), APP13 (IPTC) e COM, e
+     * outros formatos são copiados sem alteração.
+     *
+     * @return orientação EXIF encontrada (1 quando normal ou ausente); se for outra, o arquivo
+     *         copiado ainda precisa passar por {@link #aplicarOrientacao(Path, int, OutputStream)}
+     */
+    public int copiarSemMetadados(InputStream origem, OutputStream destino) throws IOException {
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(origem));
+        int primeiro = entrada.read();
+        int segundo = primeiro >= 0 ? entrada.read() : -1;
+        if (primeiro != 0xFF || segundo != MARCADOR_SOI) {
+            if (primeiro >= 0) {
+                destino.write(primeiro);
+            }
+            if (segundo >= 0) {
+                destino.write(segundo);
+            }
+            entrada.transferTo(destino);
+            return 1;
+        }
+        return removerMetadadosJpeg(entrada, destino);
+    }
+
+    public static boolean precisaGirar(int orientacao) {
+        return orientacao > 1 && orientacao <= 8;
+    }
+
+    /**
+     * Regrava o JPEG com os pixels girados/espelhados conforme a orientação EXIF. Decodifica a
+     * imagem inteira: deve rodar no pool (ver {@link #executar(Callable)}).
+     */
+    public void aplicarOrientacao(Path jpeg, int orientacao, OutputStream destino) throws IOException {
+        BufferedImage imagem = ImageIO.read(jpeg.toFile());
+        if (imagem == null) {
+            throw new IOException("Imagem JPEG inválida");
+        }
+        gravarJpeg(aplicarOrientacao(imagem, orientacao), destino, QUALIDADE_ORIGINAL, false);
+    }
+
+    /**
+     * Executa um trabalho de imagem no pool limitado (com a fila cheia, na própria thread).
+     */
+    public <T> Future<T> executar(Callable<T> trabalho) {
+        return executor.submit(trabalho);
+    }
+
+    /**
+     * Agenda a geração das variantes do arquivo (as que ainda não existem).
+     */
+    public void gerarVariantes(Path original) {
+        if (!emProcessamento.add(original)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                criarVariantes(original);
+            } catch (Exception e) {
+                System.err.println("Erro ao gerar variantes de " + original.getFileName() + ": " + e.getMessage());
+            } finally {
+                emProcessamento.remove(original);
+            }
+        });
+    }
+
+    /**
+     * Menor variante com largura maior ou igual à pedida; null quando o original deve ser usado
+     * (largura maior que a da maior variante).
+     */
+    public static Integer larguraVariante(int larguraPedida) {
+        for (int largura : LARGURAS) {
+            if (larguraPedida <= largura) {
+                return largura;
+            }
+        }
+        return null;
+    }
+
+    // RG1_uuid.png -> RG1_uuid_w320.jpg (variantes são sempre JPEG)
+    public static Path caminhoVariante(Path original, int largura) {
+        String nome = original.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        String base = ponto > 0 ? nome.substring(0, ponto) : nome;
+        return original.resolveSibling(base + "_w" + largura + ".jpg");
+    }
+
+    public static List<Path> caminhosVariantes(Path original) {
+        List<Path> caminhos = new ArrayList<>(LARGURAS.length);
+        for (int largura : LARGURAS) {
+            caminhos.add(caminhoVariante(original, largura));
+        }
+        return caminhos;
+    }
+
+    private void criarVariantes(Path original) throws IOException {
+        if (!Files.exists(original)) {
+            return;
+        }
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> leitores = entrada != null ? ImageIO.getImageReaders(entrada) : null;
+            if (leitores == null || !leitores.hasNext()) {
+                // Formato que o ImageIO não lê (ex: WebP, HEIC): o original continua sendo servido
+                return;
+            }
+            ImageReader leitor = leitores.next();
+            try {
+                leitor.setInput(entrada, true, true);
+                int larguraOriginal = leitor.getWidth(0);
+                // Só variantes menores que o original e que ainda não existem
+                List<Integer> pendentes = new ArrayList<>();
+                for (int largura : LARGURAS) {
+                    if (largura < larguraOriginal && !Files.exists(caminhoVariante(original, largura))) {
+                        pendentes.add(largura);
+                    }
+                }
+                if (pendentes.isEmpty()) {
+                    return;
+                }
+                // Subamostragem na decodificação, ficando com pelo menos o dobro da maior largura
+                // pedida: a imagem inteira nunca é carregada na memória
+                ImageReadParam parametros = leitor.getDefaultReadParam();
+                int fator = Math.max(1, larguraOriginal / (pendentes.get(pendentes.size() - 1) * 2));
+                parametros.setSourceSubsampling(fator, fator, 0, 0);
+                gravarVariantes(original, leitor.read(0, parametros), pendentes);
+            } finally {
+                leitor.dispose();
+            }
+        }
+    }
+
+    // Da maior para a menor: cada redução parte da anterior
+    private static void gravarVariantes(Path original, BufferedImage imagem, List<Integer> larguras) throws IOException {
+        for (int i = larguras.size() - 1; i >= 0; i--) {
+            int largura = larguras.get(i);
+            if (imagem.getWidth() > largura) {
+                imagem = redimensionar(imagem, largura);
+            }
+            Path destino = caminhoVariante(original, largura);
+            Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+            try (OutputStream saida = Files.newOutputStream(temporario)) {
+                gravarJpeg(imagem, saida, QUALIDADE_VARIANTE, true);
+            }
+            // Rename atômico: o endpoint nunca serve uma variante pela metade
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Reduções sucessivas pela metade e um passo final bilinear: qualidade próxima à de área média, bem mais rápido
+    private static BufferedImage redimensionar(BufferedImage imagem, int largura) {
+        BufferedImage atual = imagem;
+        int larguraAtual = imagem.getWidth();
+        int alturaAtual = imagem.getHeight();
+        while (larguraAtual > largura) {
+            larguraAtual = Math.max(largura, larguraAtual / 2);
+            alturaAtual = Math.max(1, (int) Math.round((double) imagem.getHeight() * larguraAtual / imagem.getWidth()));
+            BufferedImage reduzida = new BufferedImage(larguraAtual, alturaAtual, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = reduzida.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(atual, 0, 0, larguraAtual, alturaAtual, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            atual = reduzida;
+        }
+        return atual;
+    }
+
+    private static BufferedImage aplicarOrientacao(BufferedImage imagem, int orientacao) {
+        int w = imagem.getWidth();
+        int h = imagem.getHeight();
+        AffineTransform transformacao = switch (orientacao) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);    // espelhada na horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);   // 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);    // espelhada na vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);     // transposta
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);    // 90° horário
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);   // transversa
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);    // 90° anti-horário
+            default -> null;
+        };
+        if (transformacao == null) {
+            return imagem;
+        }
+        boolean troca = orientacao >= 5;
+        BufferedImage resultado = new BufferedImage(troca ? h : w, troca ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resultado.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, resultado.getWidth(), resultado.getHeight());
+            g.drawImage(imagem, transformacao, null);
+        } finally {
+            g.dispose();
+        }
+        return resultado;
+    }
+
+    private static void gravarJpeg(BufferedImage imagem, OutputStream destino, float qualidade,
+                                   boolean progressivo) throws IOException {
+        if (imagem.getType() != BufferedImage.TYPE_INT_RGB) {
+            // JPEG não tem transparência: achata sobre fundo branco
+            BufferedImage rgb = new BufferedImage(imagem.getWidth(), imagem.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            try {
+                g.drawImage(imagem, 0, 0, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            imagem = rgb;
+        }
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream saida = ImageIO.createImageOutputStream(destino)) {
+            escritor.setOutput(saida);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(qualidade);
+            if (progressivo) {
+                parametros.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            escritor.write(null, new IIOImage(imagem, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+    }
+
+    private static int orientacaoTiff(byte[] dados, int inicio) {
+        boolean littleEndian = dados[inicio] == 'I';
+        int ifd = inicio + lerInt(dados, inicio + 4, littleEndian);
+        int entradas = lerShort(dados, ifd, littleEndian);
+        for (int i = 0; i < entradas; i++) {
+            int entrada = ifd + 2 + i * 12;
+            if (lerShort(dados, entrada, littleEndian) == 0x0112) {
+                return lerShort(dados, entrada + 8, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int lerShort(byte[] dados, int posicao, boolean littleEndian) {
+        int a = dados[posicao] & 0xFF;
+        int b = dados[posicao + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static int lerInt(byte[] dados, int posicao, boolean littleEndian) {
+        int alto = lerShort(dados, posicao + (littleEndian ? 2 : 0), littleEndian);
+        int baixo = lerShort(dados, posicao + (littleEndian ? 0 : 2), littleEndian);
+        return (alto << 16) | baixo;
+    }
+
+    // Copia os segmentos do cabeçalho, exceto os de metadados, e os dados da imagem byte a byte;
+    // o SOI já foi lido. Devolve a orientação do segmento EXIF
+    private static int removerMetadadosJpeg(DataInputStream entrada, OutputStream destino) throws IOException {
+        destino.write(0xFF);
+        destino.write(MARCADOR_SOI);
+        int orientacao = 1;
+        while (true) {
+            int marcador = lerMarcador(entrada);
+            if (marcador == MARCADOR_EOI) {
+                destino.write(0xFF);
+                destino.write(marcador);
+                return orientacao;
+            }
+            int tamanho = entrada.readUnsignedShort();
+            if (tamanho < 2) {
+                throw new EOFException("Segmento JPEG inválido");
+            }
+            if (marcador == MARCADOR_APP1) {
+                byte[] dados = new byte[tamanho - 2];
+                entrada.readFully(dados);
+                if (dados.length > 14 && dados[0] == 'E' && dados[1] == 'x' && dados[2] == 'i' && dados[3] == 'f') {
+                    orientacao = lerOrientacao(dados);
+                }
+                continue;
+            }
+            if (marcador == MARCADOR_APP13 || marcador == MARCADOR_COM) {
+                entrada.skipNBytes(tamanho - 2);
+                continue;
+            }
+            destino.write(0xFF);
+            destino.write(marcador);
+            destino.write(tamanho >> 8);
+            destino.write(tamanho & 0xFF);
+            if (marcador == MARCADOR_SOS) {
+                // Daqui em diante só dados comprimidos (e marcadores RST/EOI dentro deles)
+                entrada.transferTo(destino);
+                return orientacao;
+            }
+            byte[] dados = new byte[tamanho - 2];
+            entrada.readFully(dados);
+            destino.write(dados);
+        }
+    }
+
+    // Tag 0x0112 do IFD0 do segmento EXIF; 1 (normal) quando ausente ou ilegível
+    private static int lerOrientacao(byte[] exif) {
+        try {
+            return orientacaoTiff(exif, 6);
+        } catch (RuntimeException e) {
+            return 1;
+        }
+    }
+
+    // Próximo marcador, ignorando bytes de preenchimento 0xFF
+    private static int lerMarcador(DataInputStream entrada) throws IOException {
+        int b = entrada.readUnsignedByte();
+        if (b != 0xFF) {
+            throw new EOFException("Marcador JPEG inválido");
+        }
+        int marcador;
+        do {
+            marcador = entrada.readUnsignedByte();
+        } while (marcador == 0xFF);
+        return marcador;
+    }
+
+    /**
+     * Resultado de um trabalho do pool; exceções não verificadas do trabalho são repassadas como vieram.
+     */
+    public static <T> T aguardar(Future<T> tarefa) throws IOException {
+        try {
+            return tarefa.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Processamento de imagem interrompido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException erro) {
+                throw erro;
+            }
+            throw new IOException("Erro ao processar imagem", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.bancoai.service;
+
+/**
+ * Recebe o progresso de uma operação longa (ver TarefaService). As chamadas podem ser
+ * frequentes: quem implementa decide quando gravar.
+ */
+@FunctionalInterface
+public interface ProgressoTarefa {
+    
+    ProgressoTarefa NENHUM = (processados, total) -> { };
+    
+    /**
+     * @param processados itens processados até agora
+     * @param total total de itens, ou null se ainda não for conhecido
+     */
+    void atualizar(long processados, Long total);
+}
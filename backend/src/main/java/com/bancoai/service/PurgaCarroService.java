@@ -0,0 +1,136 @@
+package com.bancoai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Remoção física dos carros excluídos logicamente.
+ *
+ * A exclusão pelo usuário só marca data_exclusao (um UPDATE); durante a janela de
+ * app.carros.exclusao.retencao-horas o carro ainda pode ser restaurado. Depois disso, uma
+ * rodada agendada para um horário de pouco movimento (app.carros.purga.cron, padrão 3h) apaga
+ * as linhas em lotes pequenos, cada um em sua própria transação e com uma pausa entre eles,
+ * libera as referências às fotos e entrega ao outbox os arquivos que ficaram sem referência.
+ */
+@Service
+public class PurgaCarroService {
+
+    private static final int TAMANHO_LOTE = 500;
+
+    private static final String SQL_IDS =
+            "SELECT id FROM carros WHERE data_exclusao < :limite ORDER BY id LIMIT " + TAMANHO_LOTE;
+
+    private static final String SQL_FOTOS =
+            "SELECT url FROM fotos_carro WHERE carro_id IN (:ids)";
+
+    private static final String SQL_EXCLUIR_FOTOS =
+            "DELETE FROM fotos_carro WHERE carro_id IN (:ids)";
+
+    private static final String SQL_IDS_EMPRESA =
+            "SELECT id FROM carros WHERE empresa_id = :empresaId AND data_exclusao IS NOT NULL";
+
+    // A restauração só aceita carros dentro da janela, então os ids lidos não voltam a ficar ativos;
+    // a condição é só uma garantia de que um carro ativo nunca é apagado
+    private static final String SQL_EXCLUIR =
+            "DELETE FROM carros WHERE id IN (:ids) AND data_exclusao IS NOT NULL";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacao;
+    private final OutboxService outbox;
+    private final ArmazenamentoFotoService armazenamentoFoto;
+
+    @Value("${app.carros.exclusao.retencao-horas:72}")
+    private long retencaoHoras;
+
+    @Value("${app.carros.purga.pausa-ms:200}")
+    private long pausaMs;
+
+    public PurgaCarroService(NamedParameterJdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             OutboxService outbox,
+                             ArmazenamentoFotoService armazenamentoFoto) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.outbox = outbox;
+        this.armazenamentoFoto = armazenamentoFoto;
+    }
+
+    /**
+     * Carros excluídos depois deste instante ainda podem ser restaurados (e não são purgados).
+     */
+    public LocalDateTime limiteRestauracao() {
+        return LocalDateTime.now().minusHours(retencaoHoras);
+    }
+
+    @Scheduled(cron = "${app.carros.purga.cron:0 0 3 * * *}")
+    public void purgar() {
+        Timestamp limite = Timestamp.valueOf(limiteRestauracao());
+        long inicio = System.currentTimeMillis();
+        int total = 0;
+        try {
+            while (true) {
+                Integer removidos = transacao.execute(status -> purgarLote(limite));
+                total += removidos;
+                if (removidos < TAMANHO_LOTE) {
+                    break;
+                }
+                // Pausa entre lotes para não disputar conexões e I/O com as requisições
+                Thread.sleep(pausaMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Erro na purga de carros excluídos: " + e.getMessage());
+        }
+        if (total > 0) {
+            System.out.println("Carros excluídos removidos definitivamente: " + total +
+                    " (" + (System.currentTimeMillis() - inicio) + " ms)");
+        }
+    }
+
+    /**
+     * Remove na hora todos os carros excluídos de uma empresa, sem esperar a janela de retenção
+     * (usado na remoção da empresa, que não pode ficar com linhas apontando para ela).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int purgarEmpresa(Long empresaId) {
+        List<Long> ids = jdbcTemplate.queryForList(SQL_IDS_EMPRESA,
+                new MapSqlParameterSource("empresaId", empresaId), Long.class);
+        int total = 0;
+        for (int i = 0; i < ids.size(); i += TAMANHO_LOTE) {
+            total += excluir(ids.subList(i, Math.min(i + TAMANHO_LOTE, ids.size())));
+        }
+        return total;
+    }
+
+    private int purgarLote(Timestamp limite) {
+        List<Long> ids = jdbcTemplate.queryForList(SQL_IDS, new MapSqlParameterSource("limite", limite), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return excluir(ids);
+    }
+
+    private int excluir(List<Long> ids) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("ids", ids);
+        List<String> fotos = jdbcTemplate.queryForList(SQL_FOTOS, parametros, String.class);
+        jdbcTemplate.update(SQL_EXCLUIR_FOTOS, parametros);
+        jdbcTemplate.update(SQL_EXCLUIR, parametros);
+        List<String> semReferencia = armazenamentoFoto.liberarFotos(fotos);
+        if (!semReferencia.isEmpty()) {
+            outbox.registrar(OutboxService.EXCLUIR_FOTOS, semReferencia);
+        }
+        return ids.size();
+    }
+}
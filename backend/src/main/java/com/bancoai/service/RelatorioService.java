@@ -3,7 +3,8 @@ package com.bancoai.service;
 import com.bancoai.dto.RelatorioDTO;
 import com.bancoai.repository.CarroRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,13 +15,32 @@ import java.util.Map;
 public class RelatorioService {
     
     private final CarroRepository carroRepository;
+    private final CatalogoVersaoService catalogoVersao;
+    private final ExecucaoCompartilhadaService execucaoCompartilhada;
+    private final TransactionTemplate transacaoLeitura;
     
-    public RelatorioService(CarroRepository carroRepository) {
+    public RelatorioService(CarroRepository carroRepository,
+                            CatalogoVersaoService catalogoVersao,
+                            ExecucaoCompartilhadaService execucaoCompartilhada,
+                            PlatformTransactionManager transactionManager) {
         this.carroRepository = carroRepository;
+        this.catalogoVersao = catalogoVersao;
+        this.execucaoCompartilhada = execucaoCompartilhada;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
     }
     
-    @Transactional(readOnly = true)
+    /**
+     * Gera o relatório da empresa. Pedidos simultâneos da mesma empresa, na mesma versão
+     * do catálogo, compartilham uma única execução (e uma única conexão do pool).
+     */
     public RelatorioDTO gerarRelatorio(Long empresaId) {
+        String chave = "relatorio|" + empresaId + "|" + catalogoVersao.obterVersao(empresaId);
+        return execucaoCompartilhada.executar(chave,
+                () -> transacaoLeitura.execute(status -> montarRelatorio(empresaId)));
+    }
+    
+    private RelatorioDTO montarRelatorio(Long empresaId) {
         RelatorioDTO relatorio = new RelatorioDTO();
         
         // Total de carros
@@ -0,0 +1,115 @@
+package com.bancoai.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sequências das entidades (otimizador pooled, blocos de 50 ids) e reserva de ids para
+ * INSERTs feitos direto via JDBC.
+ *
+ * Cada nextval devolve o limite superior V de um bloco [V-49, V], que passa a ser de uso
+ * exclusivo de quem o obteve (Hibernate ou JDBC), então os dois caminhos nunca colidem.
+ */
+@Service
+public class SequenciaService {
+    
+    public static final int TAMANHO_BLOCO = 50;
+    
+    public static final String CARROS = "carros_seq";
+    public static final String FOTOS_CARRO = "fotos_carro_seq";
+    
+    // Sequência -> tabela
+    private static final Map<String, String> SEQUENCIAS = new LinkedHashMap<>();
+    static {
+        SEQUENCIAS.put("empresas_seq", "empresas");
+        SEQUENCIAS.put("usuarios_seq", "usuarios");
+        SEQUENCIAS.put(CARROS, "carros");
+        SEQUENCIAS.put("auditoria_seq", "auditoria");
+        SEQUENCIAS.put("api_keys_seq", "api_keys");
+        SEQUENCIAS.put(FOTOS_CARRO, "fotos_carro");
+    }
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+    
+    // Blocos em uso por proximoId: sequência -> [próximo id, limite superior]
+    private final Map<String, long[]> blocosAtuais = new HashMap<>();
+    
+    public SequenciaService(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+    
+    /**
+     * Executado na inicialização, antes de qualquer INSERT:
+     * - PostgreSQL: se a tabela já tem ids maiores que a sequência (tabelas criadas com IDENTITY),
+     *   avança a sequência até o maior id;
+     * - descarta o primeiro valor de cada sequência. No valor inicial o otimizador pooled do
+     *   Hibernate reserva [1, próximo valor], e não [V-49, V], o que poderia sobrepor um bloco
+     *   reservado via JDBC.
+     */
+    @PostConstruct
+    public void preparar() {
+        for (Map.Entry<String, String> sequencia : SEQUENCIAS.entrySet()) {
+            try {
+                if (isPostgreSQL()) {
+                    jdbcTemplate.queryForList("SELECT setval('" + sequencia.getKey() + "', t.maximo) " +
+                            "FROM (SELECT MAX(id) AS maximo FROM " + sequencia.getValue() + ") t, " + sequencia.getKey() + " s " +
+                            "WHERE t.maximo > s.last_value");
+                }
+                proximoValor(sequencia.getKey());
+            } catch (Exception e) {
+                System.err.println("AVISO: Não foi possível preparar a sequência " + sequencia.getKey() + ": " + e.getMessage());
+                System.err.println("Execute o script migracao-sequencias.sql manualmente.");
+            }
+        }
+    }
+    
+    /**
+     * Reserva {@code quantidade} ids da sequência para INSERTs via JDBC (um nextval a cada 50 ids).
+     */
+    public long[] reservarIds(String sequencia, int quantidade) {
+        long[] ids = new long[quantidade];
+        int preenchidos = 0;
+        while (preenchidos < quantidade) {
+            long limiteSuperior = proximoValor(sequencia);
+            for (long id = limiteSuperior - TAMANHO_BLOCO + 1; id <= limiteSuperior && preenchidos < quantidade; id++) {
+                ids[preenchidos++] = id;
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Um id por vez para INSERTs unitários via JDBC, servido de um bloco em memória
+     * (um nextval a cada 50 chamadas, como o Hibernate faz).
+     */
+    public synchronized long proximoId(String sequencia) {
+        long[] bloco = blocosAtuais.get(sequencia);
+        if (bloco == null || bloco[0] > bloco[1]) {
+            long limiteSuperior = proximoValor(sequencia);
+            bloco = new long[]{limiteSuperior - TAMANHO_BLOCO + 1, limiteSuperior};
+            blocosAtuais.put(sequencia, bloco);
+        }
+        return bloco[0]++;
+    }
+    
+    public boolean isPostgreSQL() {
+        return dialect instanceof PostgreSQLDialect;
+    }
+    
+    private long proximoValor(String sequencia) {
+        Long valor = jdbcTemplate.queryForObject(
+                dialect.getSequenceSupport().getSequenceNextValString(sequencia), Long.class);
+        return valor != null ? valor : 0L;
+    }
+}
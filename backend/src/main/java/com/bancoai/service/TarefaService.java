@@ -0,0 +1,577 @@
+package com.bancoai.service;
+
+import com.bancoai.dto.OperacaoLoteCarroDTO;
+import com.bancoai.dto.ResultadoImportacaoDTO;
+import com.bancoai.dto.ResultadoOperacaoLoteDTO;
+import com.bancoai.dto.TarefaDTO;
+import com.bancoai.model.Tarefa;
+import com.bancoai.repository.TarefaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tarefas em segundo plano para operações longas: importação, exportação, reajuste e exclusão
+ * em lote e relatório. A requisição só grava a tarefa e devolve o id; a execução acontece em um
+ * pool próprio de tamanho fixo, sem segurar uma thread do Tomcat nem uma conexão durante a espera.
+ *
+ * Cada empresa tem no máximo app.tarefas.maximo-por-empresa tarefas executando ao mesmo tempo:
+ * na vez de uma empresa que já está no limite, a fila passa para a próxima tarefa de outra empresa,
+ * então uma carga pesada de uma empresa não ocupa o pool inteiro. O progresso é gravado no máximo
+ * uma vez por segundo, em transação própria (visível enquanto a operação ainda não terminou).
+ *
+ * Com várias instâncias, cada uma tem sua fila em memória, mas ela é só uma indicação: a tarefa
+ * é pega com um UPDATE condicional (PENDENTE -> EXECUTANDO, gravando o id da instância), e uma
+ * varredura periódica põe na fila as pendentes que nenhuma instância pegou (inclusive as agendadas
+ * em uma instância que parou). Enquanto executa, a instância renova ultimoSinal a cada
+ * app.tarefas.sinal-ms; só as tarefas sem sinal há mais de app.tarefas.sinal-expira-ms são dadas
+ * como interrompidas (FALHA), nunca as que continuam rodando em outra instância. Por isso os
+ * arquivos de entrada e de resultado ficam em app.tarefas.diretorio, que com mais de uma
+ * instância precisa ser um armazenamento compartilhado (ex: NFS) montado no mesmo caminho em
+ * todas: a tarefa pode executar em uma instância e o resultado ser baixado por outra.
+ */
+@Service
+public class TarefaService {
+    
+    public static final String IMPORTACAO_CARROS = "IMPORTACAO_CARROS";
+    public static final String EXPORTACAO_CARROS = "EXPORTACAO_CARROS";
+    public static final String REAJUSTE_VALOR = "REAJUSTE_VALOR";
+    public static final String EXCLUSAO_LOTE = "EXCLUSAO_LOTE";
+    public static final String RELATORIO = "RELATORIO";
+    
+    public static final String PENDENTE = "PENDENTE";
+    public static final String EXECUTANDO = "EXECUTANDO";
+    public static final String CONCLUIDA = "CONCLUIDA";
+    public static final String FALHA = "FALHA";
+    
+    private static final long INTERVALO_PROGRESSO_MS = 1000;
+    private static final int LIMITE_LISTAGEM = 50;
+    
+    private final Path diretorio;
+    
+    private final TarefaRepository tarefaRepository;
+    private final ImportacaoCarroService importacaoCarroService;
+    private final OperacaoLoteCarroService operacaoLoteCarroService;
+    private final RelatorioService relatorioService;
+    private final CarroService carroService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transacaoNova;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor sinal;
+    private final int threads;
+    private final int maximoPorEmpresa;
+    private final int filaPorEmpresa;
+    
+    // Identifica esta execução do servidor (pid@host e um sufixo aleatório) como dona das tarefas
+    private final String instancia = ManagementFactory.getRuntimeMXBean().getName() + "-" +
+            UUID.randomUUID().toString().substring(0, 8);
+    
+    @Value("${app.tarefas.retencao-horas:24}")
+    private long retencaoHoras;
+    
+    @Value("${app.tarefas.sinal-ms:15000}")
+    private long sinalMs;
+    
+    @Value("${app.tarefas.sinal-expira-ms:120000}")
+    private long sinalExpiraMs;
+    
+    // Fila de espera e contagem de execuções (protegidas pelo monitor deste serviço); conhecidas
+    // são as tarefas na fila ou executando aqui, para a varredura não enfileirar duas vezes
+    private final ArrayDeque<TarefaNaFila> fila = new ArrayDeque<>();
+    private final Set<Long> conhecidas = new HashSet<>();
+    private final Map<Long, Integer> emExecucaoPorEmpresa = new HashMap<>();
+    private int emExecucao;
+    
+    private record TarefaNaFila(Long id, Long empresaId) {
+    }
+    
+    /**
+     * Arquivo de resultado de uma tarefa concluída.
+     */
+    public record ResultadoTarefa(Path arquivo, String tipoConteudo, String nomeArquivo) {
+    }
+    
+    public TarefaService(TarefaRepository tarefaRepository,
+                         ImportacaoCarroService importacaoCarroService,
+                         OperacaoLoteCarroService operacaoLoteCarroService,
+                         RelatorioService relatorioService,
+                         CarroService carroService,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.tarefas.threads:2}") int threads,
+                         @Value("${app.tarefas.maximo-por-empresa:1}") int maximoPorEmpresa,
+                         @Value("${app.tarefas.fila-por-empresa:20}") int filaPorEmpresa,
+                         @Value("${app.tarefas.diretorio:uploads/tarefas}") String diretorio) {
+        this.tarefaRepository = tarefaRepository;
+        this.importacaoCarroService = importacaoCarroService;
+        this.operacaoLoteCarroService = operacaoLoteCarroService;
+        this.relatorioService = relatorioService;
+        this.carroService = carroService;
+        this.objectMapper = objectMapper;
+        this.transacaoNova = new TransactionTemplate(transactionManager);
+        this.transacaoNova.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.threads = threads;
+        this.maximoPorEmpresa = maximoPorEmpresa;
+        this.filaPorEmpresa = filaPorEmpresa;
+        this.diretorio = Paths.get(diretorio);
+        
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "tarefas-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Thread própria: o agendador do Spring tem uma só thread, e uma purga longa atrasaria o sinal
+        this.sinal = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "tarefas-sinal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            Files.createDirectories(this.diretorio);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao criar diretório de tarefas", e);
+        }
+    }
+    
+    @PreDestroy
+    public void encerrar() {
+        sinal.shutdownNow();
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Grava o corpo da importação em arquivo e agenda a tarefa.
+     *
+     * @param ndjson true para NDJSON, false para CSV com cabeçalho (mesmo formato de POST /api/carros/importar)
+     */
+    public TarefaDTO agendarImportacao(InputStream entrada, boolean ndjson, Long empresaId, String usuarioEmail) {
+        verificarLimite(empresaId);
+        Path temporario = null;
+        try {
+            // O arquivo só recebe o nome definitivo depois de completo: uma tarefa nunca lê entrada pela metade
+            temporario = Files.createTempFile(diretorio, "entrada-", ".tmp");
+            Files.copy(entrada, temporario, StandardCopyOption.REPLACE_EXISTING);
+            // E já está no lugar quando a tarefa é gravada: a varredura (desta ou de outra instância)
+            // pode pegar a tarefa logo após o commit. O nome vem de um UUID guardado nos parâmetros
+            String nomeEntrada = UUID.randomUUID() + "-entrada";
+            Path definitivo = diretorio.resolve(nomeEntrada);
+            Files.move(temporario, definitivo, StandardCopyOption.ATOMIC_MOVE);
+            temporario = definitivo; // removido no finally se a tarefa não chegar a ser gravada
+            Tarefa tarefa = criar(IMPORTACAO_CARROS, Map.of("ndjson", ndjson, "arquivoEntrada", nomeEntrada),
+                    empresaId, usuarioEmail);
+            temporario = null;
+            enfileirar(tarefa);
+            return converterParaDTO(tarefa);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao gravar arquivo da importação", e);
+        } finally {
+            if (temporario != null) {
+                try {
+                    Files.deleteIfExists(temporario);
+                } catch (IOException e) {
+                    System.err.println("Erro ao remover arquivo temporário: " + temporario);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Agenda uma tarefa sem arquivo de entrada (exportação, operações em lote, relatório).
+     *
+     * @param parametros dados da operação (ex: OperacaoLoteCarroDTO), ou null
+     */
+    public TarefaDTO agendar(String tipo, Object parametros, Long empresaId, String usuarioEmail) {
+        verificarLimite(empresaId);
+        Tarefa tarefa = criar(tipo, parametros, empresaId, usuarioEmail);
+        enfileirar(tarefa);
+        return converterParaDTO(tarefa);
+    }
+    
+    public TarefaDTO buscar(Long id, Long empresaId) {
+        return converterParaDTO(buscarDaEmpresa(id, empresaId));
+    }
+    
+    public List<TarefaDTO> listar(Long empresaId) {
+        return tarefaRepository.findByEmpresaIdOrderByIdDesc(empresaId, PageRequest.of(0, LIMITE_LISTAGEM)).stream()
+                .map(this::converterParaDTO)
+                .collect(Collectors.toList());
+    }
+    
+    public ResultadoTarefa obterResultado(Long id, Long empresaId) {
+        Tarefa tarefa = buscarDaEmpresa(id, empresaId);
+        if (!CONCLUIDA.equals(tarefa.getStatus()) || tarefa.getArquivoResultado() == null) {
+            throw new IllegalStateException("A tarefa ainda não tem resultado (status " + tarefa.getStatus() + ")");
+        }
+        Path arquivo = diretorio.resolve(tarefa.getArquivoResultado());
+        if (!Files.exists(arquivo)) {
+            throw new RuntimeException("Resultado não encontrado");
+        }
+        return new ResultadoTarefa(arquivo, tarefa.getTipoConteudoResultado(),
+                "tarefa-" + tarefa.getId() + "-" + tarefa.getTipo().toLowerCase() + extensao(tarefa.getTipoConteudoResultado()));
+    }
+    
+    /**
+     * Na inicialização: começa a renovar o sinal de vida e faz a primeira varredura.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void retomar() {
+        sinal.scheduleWithFixedDelay(this::sinalizar, sinalMs, sinalMs, TimeUnit.MILLISECONDS);
+        varrer();
+    }
+    
+    /**
+     * Tarefas sem sinal de vida há mais que o limite foram interrompidas com a instância que as
+     * executava (as operações em lote são desfeitas pelo rollback, a importação pode ter gravado
+     * parte dos lotes) e passam para FALHA; as pendentes que nenhuma instância pegou entram na fila.
+     */
+    @Scheduled(fixedDelayString = "${app.tarefas.varredura-ms:30000}", initialDelayString = "${app.tarefas.varredura-ms:30000}")
+    public void varrer() {
+        LocalDateTime limite = LocalDateTime.now().minusNanos(sinalExpiraMs * 1_000_000);
+        for (Tarefa tarefa : tarefaRepository.buscarSemSinalDesde(limite)) {
+            if (tarefaRepository.interromper(tarefa.getId(), limite, LocalDateTime.now(),
+                    "Interrompida: a instância que executava a tarefa parou de responder") > 0) {
+                removerArquivos(tarefa, true);
+            }
+        }
+        for (Tarefa tarefa : tarefaRepository.findByStatusOrderByIdAsc(PENDENTE)) {
+            enfileirar(tarefa);
+        }
+    }
+    
+    private void sinalizar() {
+        try {
+            tarefaRepository.sinalizar(instancia, LocalDateTime.now());
+        } catch (Exception e) {
+            System.err.println("Erro ao renovar o sinal das tarefas em execução: " + e.getMessage());
+        }
+    }
+    
+    // Limpeza periódica: tarefas concluídas há mais que o período de retenção, com seus arquivos
+    @Scheduled(fixedDelayString = "${app.tarefas.limpeza-ms:3600000}")
+    public void removerAntigas() {
+        List<Tarefa> antigas = tarefaRepository.buscarConcluidasAntesDe(LocalDateTime.now().minusHours(retencaoHoras));
+        if (antigas.isEmpty()) {
+            return;
+        }
+        antigas.forEach(tarefa -> removerArquivos(tarefa, true));
+        tarefaRepository.deleteAllInBatch(antigas);
+        System.out.println("Tarefas antigas removidas: " + antigas.size());
+    }
+    
+    private void verificarLimite(Long empresaId) {
+        long abertas = tarefaRepository.countByEmpresaIdAndStatusIn(empresaId, List.of(PENDENTE, EXECUTANDO));
+        if (abertas >= filaPorEmpresa) {
+            throw new IllegalStateException("A empresa já tem " + abertas + " tarefas pendentes ou em execução; " +
+                    "aguarde a conclusão de alguma antes de agendar outra");
+        }
+    }
+    
+    private Tarefa criar(String tipo, Object parametros, Long empresaId, String usuarioEmail) {
+        Tarefa tarefa = new Tarefa();
+        tarefa.setTipo(tipo);
+        tarefa.setEmpresaId(empresaId);
+        tarefa.setUsuarioEmail(usuarioEmail);
+        try {
+            tarefa.setParametros(parametros != null ? objectMapper.writeValueAsString(parametros) : null);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao serializar parâmetros da tarefa", e);
+        }
+        return tarefaRepository.save(tarefa);
+    }
+    
+    private Tarefa buscarDaEmpresa(Long id, Long empresaId) {
+        Tarefa tarefa = tarefaRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Tarefa não encontrada"));
+        if (!tarefa.getEmpresaId().equals(empresaId)) {
+            throw new RuntimeException("Tarefa não encontrada");
+        }
+        return tarefa;
+    }
+    
+    private synchronized void enfileirar(Tarefa tarefa) {
+        if (!conhecidas.add(tarefa.getId())) {
+            return;
+        }
+        fila.addLast(new TarefaNaFila(tarefa.getId(), tarefa.getEmpresaId()));
+        despachar();
+    }
+    
+    // Inicia as próximas tarefas da fila enquanto houver thread livre, pulando as empresas no limite
+    private synchronized void despachar() {
+        Iterator<TarefaNaFila> iterator = fila.iterator();
+        while (emExecucao < threads && iterator.hasNext()) {
+            TarefaNaFila tarefa = iterator.next();
+            if (emExecucaoPorEmpresa.getOrDefault(tarefa.empresaId(), 0) >= maximoPorEmpresa) {
+                continue;
+            }
+            iterator.remove();
+            emExecucao++;
+            emExecucaoPorEmpresa.merge(tarefa.empresaId(), 1, Integer::sum);
+            executor.execute(() -> {
+                try {
+                    executar(tarefa.id());
+                } finally {
+                    liberar(tarefa);
+                }
+            });
+        }
+    }
+    
+    private synchronized void liberar(TarefaNaFila tarefa) {
+        conhecidas.remove(tarefa.id());
+        emExecucao--;
+        emExecucaoPorEmpresa.computeIfPresent(tarefa.empresaId(), (id, quantidade) -> quantidade > 1 ? quantidade - 1 : null);
+        despachar();
+    }
+    
+    private void executar(Long id) {
+        // Início condicional: se outra execução (desta ou de outra instância) já pegou a tarefa, esta desiste
+        if (tarefaRepository.iniciar(id, instancia, LocalDateTime.now()) == 0) {
+            return;
+        }
+        Tarefa tarefa = tarefaRepository.findById(id).orElse(null);
+        if (tarefa == null) {
+            return;
+        }
+        Progresso progresso = new Progresso(id);
+        String status;
+        String mensagem;
+        try {
+            mensagem = switch (tarefa.getTipo()) {
+                case IMPORTACAO_CARROS -> executarImportacao(tarefa, progresso);
+                case EXPORTACAO_CARROS -> executarExportacao(tarefa, progresso);
+                case REAJUSTE_VALOR -> executarOperacaoLote(tarefa, progresso, true);
+                case EXCLUSAO_LOTE -> executarOperacaoLote(tarefa, progresso, false);
+                case RELATORIO -> executarRelatorio(tarefa, progresso);
+                default -> throw new IllegalStateException("Tipo de tarefa desconhecido: " + tarefa.getTipo());
+            };
+            status = CONCLUIDA;
+        } catch (Exception e) {
+            System.err.println("Erro na tarefa " + id + " (" + tarefa.getTipo() + "): " + e.getMessage());
+            mensagem = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            status = FALHA;
+            removerArquivos(tarefa, true);
+            tarefa.setArquivoResultado(null);
+            tarefa.setTipoConteudoResultado(null);
+        }
+        removerArquivos(tarefa, false);
+        
+        int gravadas = tarefaRepository.concluir(id, instancia, status,
+                mensagem.length() > 500 ? mensagem.substring(0, 500) : mensagem,
+                progresso.processados, progresso.total,
+                tarefa.getArquivoResultado(), tarefa.getTipoConteudoResultado(), LocalDateTime.now());
+        if (gravadas == 0) {
+            // Sem sinal por tempo demais (ex: pausa longa da JVM) e já dada como interrompida
+            System.err.println("Tarefa " + id + " terminou depois de ser marcada como interrompida; resultado descartado");
+            removerArquivos(tarefa, true);
+        }
+    }
+    
+    private String executarImportacao(Tarefa tarefa, Progresso progresso) throws IOException {
+        boolean ndjson = objectMapper.readTree(tarefa.getParametros()).path("ndjson").asBoolean();
+        Path entrada = arquivoEntrada(tarefa);
+        long tamanho = Files.size(entrada);
+        progresso.atualizar(0, tamanho);
+        ResultadoImportacaoDTO resultado;
+        try (InputStream arquivo = new ContagemInputStream(Files.newInputStream(entrada), tamanho, progresso)) {
+            resultado = importacaoCarroService.importar(arquivo, ndjson, tarefa.getEmpresaId(), tarefa.getUsuarioEmail());
+        }
+        progresso.atualizar(tamanho, tamanho);
+        gravarResultadoJson(tarefa, resultado);
+        return resultado.getImportados() + " carro(s) importado(s), " + resultado.getComErro() + " linha(s) com erro";
+    }
+    
+    // NDJSON com um carro por linha, lido em fluxo (memória constante)
+    private String executarExportacao(Tarefa tarefa, Progresso progresso) throws IOException {
+        long total = carroService.contarPorEmpresa(tarefa.getEmpresaId());
+        progresso.atualizar(0, total);
+        String nomeArquivo = tarefa.getId() + "-resultado.ndjson";
+        ObjectWriter writer = objectMapper.writer();
+        long[] exportados = {0};
+        try (OutputStream saida = Files.newOutputStream(diretorio.resolve(nomeArquivo))) {
+            tarefa.setArquivoResultado(nomeArquivo);
+            tarefa.setTipoConteudoResultado("application/x-ndjson");
+            carroService.percorrerPorEmpresa(tarefa.getEmpresaId(), carro -> {
+                try {
+                    saida.write(writer.writeValueAsBytes(carro));
+                    saida.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                progresso.atualizar(++exportados[0], Math.max(total, exportados[0]));
+            });
+        }
+        return exportados[0] + " carro(s) exportado(s)";
+    }
+    
+    private String executarOperacaoLote(Tarefa tarefa, Progresso progresso, boolean reajuste) throws IOException {
+        OperacaoLoteCarroDTO operacao = objectMapper.readValue(tarefa.getParametros(), OperacaoLoteCarroDTO.class);
+        ResultadoOperacaoLoteDTO resultado = reajuste
+                ? operacaoLoteCarroService.ajustarValor(operacao, tarefa.getEmpresaId(), tarefa.getUsuarioEmail(), progresso)
+                : operacaoLoteCarroService.excluir(operacao, tarefa.getEmpresaId(), tarefa.getUsuarioEmail(), progresso);
+        gravarResultadoJson(tarefa, resultado);
+        return resultado.getAfetados() + (reajuste ? " carro(s) alterado(s)" : " carro(s) excluído(s)");
+    }
+    
+    private String executarRelatorio(Tarefa tarefa, Progresso progresso) throws IOException {
+        progresso.atualizar(0, 1L);
+        gravarResultadoJson(tarefa, relatorioService.gerarRelatorio(tarefa.getEmpresaId()));
+        progresso.atualizar(1, 1L);
+        return "Relatório gerado";
+    }
+    
+    private void gravarResultadoJson(Tarefa tarefa, Object resultado) throws IOException {
+        String nomeArquivo = tarefa.getId() + "-resultado.json";
+        tarefa.setArquivoResultado(nomeArquivo);
+        tarefa.setTipoConteudoResultado("application/json");
+        try (OutputStream saida = Files.newOutputStream(diretorio.resolve(nomeArquivo))) {
+            objectMapper.writeValue(saida, resultado);
+        }
+    }
+    
+    // Tarefas agendadas antes do nome por UUID usam {id}-entrada
+    private Path arquivoEntrada(Tarefa tarefa) throws IOException {
+        String nome = tarefa.getParametros() != null
+                ? objectMapper.readTree(tarefa.getParametros()).path("arquivoEntrada").asText(null)
+                : null;
+        return diretorio.resolve(nome != null ? nome : tarefa.getId() + "-entrada");
+    }
+    
+    // Remove o arquivo de entrada e, se pedido, o de resultado
+    private void removerArquivos(Tarefa tarefa, boolean incluirResultado) {
+        try {
+            Files.deleteIfExists(arquivoEntrada(tarefa));
+            if (incluirResultado && tarefa.getArquivoResultado() != null) {
+                Files.deleteIfExists(diretorio.resolve(tarefa.getArquivoResultado()));
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao remover arquivos da tarefa " + tarefa.getId() + ": " + e.getMessage());
+        }
+    }
+    
+    private static String extensao(String tipoConteudo) {
+        return "application/x-ndjson".equals(tipoConteudo) ? ".ndjson" : ".json";
+    }
+    
+    private TarefaDTO converterParaDTO(Tarefa tarefa) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+        TarefaDTO dto = new TarefaDTO();
+        dto.setId(tarefa.getId());
+        dto.setTipo(tarefa.getTipo());
+        dto.setStatus(tarefa.getStatus());
+        dto.setProcessados(tarefa.getProcessados());
+        dto.setTotal(tarefa.getTotal());
+        if (tarefa.getTotal() != null && tarefa.getTotal() > 0) {
+            dto.setPercentual((int) Math.min(100, tarefa.getProcessados() * 100 / tarefa.getTotal()));
+        } else if (CONCLUIDA.equals(tarefa.getStatus())) {
+            dto.setPercentual(100);
+        }
+        dto.setMensagem(tarefa.getMensagem());
+        if (CONCLUIDA.equals(tarefa.getStatus()) && tarefa.getArquivoResultado() != null) {
+            dto.setUrlResultado("/api/tarefas/" + tarefa.getId() + "/resultado");
+        }
+        dto.setDataCriacao(tarefa.getDataCriacao() != null ? tarefa.getDataCriacao().format(formatter) : null);
+        dto.setDataInicio(tarefa.getDataInicio() != null ? tarefa.getDataInicio().format(formatter) : null);
+        dto.setDataConclusao(tarefa.getDataConclusao() != null ? tarefa.getDataConclusao().format(formatter) : null);
+        return dto;
+    }
+    
+    // Guarda o último progresso e grava no banco no máximo uma vez por intervalo
+    private class Progresso implements ProgressoTarefa {
+        private final Long tarefaId;
+        private long processados;
+        private Long total;
+        private long ultimaGravacao;
+        
+        private Progresso(Long tarefaId) {
+            this.tarefaId = tarefaId;
+        }
+        
+        @Override
+        public synchronized void atualizar(long processados, Long total) {
+            this.processados = processados;
+            this.total = total;
+            long agora = System.currentTimeMillis();
+            if (agora - ultimaGravacao >= INTERVALO_PROGRESSO_MS) {
+                ultimaGravacao = agora;
+                transacaoNova.executeWithoutResult(status ->
+                        tarefaRepository.atualizarProgresso(tarefaId, processados, total, LocalDateTime.now()));
+            }
+        }
+    }
+    
+    // Conta os bytes lidos do arquivo de entrada como progresso da importação
+    private static class ContagemInputStream extends FilterInputStream {
+        private final long tamanho;
+        private final ProgressoTarefa progresso;
+        private long lidos;
+        
+        private ContagemInputStream(InputStream entrada, long tamanho, ProgressoTarefa progresso) {
+            super(entrada);
+            this.tamanho = tamanho;
+            this.progresso = progresso;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int valor = super.read();
+            if (valor >= 0) {
+                contar(1);
+            }
+            return valor;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int inicio, int quantidade) throws IOException {
+            int lidosAgora = super.read(buffer, inicio, quantidade);
+            if (lidosAgora > 0) {
+                contar(lidosAgora);
+            }
+            return lidosAgora;
+        }
+        
+        private void contar(int quantidade) {
+            lidos += quantidade;
+            progresso.atualizar(lidos, tamanho);
+        }
+    }
+}
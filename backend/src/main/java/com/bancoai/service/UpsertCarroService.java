@@ -0,0 +1,135 @@
+package com.bancoai.service;
+
+import com.bancoai.dto.CarroDTO;
+import com.bancoai.dto.ResultadoUpsertCarroDTO;
+import com.bancoai.model.Carro;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Criação ou atualização de um carro pela placa em um único comando, para integrações
+ * que sincronizam o catálogo (ex: feed de outro sistema).
+ *
+ * Não há consulta prévia de existência: quem decide entre INSERT e UPDATE é a restrição
+ * única (empresa_id, placa_normalizada), então duas integrações gravando a mesma placa ao
+ * mesmo tempo nunca geram duplicidade nem erro. O id novo é reservado antes do comando;
+ * se o id gravado for outro, o carro já existia.
+ */
+@Service
+public class UpsertCarroService {
+
+    private static final String SQL_UPSERT_POSTGRESQL =
+            "INSERT INTO carros (id, empresa_id, placa, placa_normalizada, quilometragem, modelo, marca, valor, " +
+            "observacoes, data_cadastro, data_atualizacao) " +
+            "VALUES (:id, :empresaId, :placa, :placaNormalizada, :quilometragem, :modelo, :marca, :valor, " +
+            ":observacoes, :agora, :agora) " +
+            "ON CONFLICT (empresa_id, placa_normalizada) DO UPDATE SET placa = EXCLUDED.placa, " +
+            "quilometragem = EXCLUDED.quilometragem, modelo = EXCLUDED.modelo, marca = EXCLUDED.marca, " +
+            "valor = EXCLUDED.valor, observacoes = EXCLUDED.observacoes, data_atualizacao = EXCLUDED.data_atualizacao " +
+            "RETURNING id";
+
+    // H2 (desenvolvimento): MERGE padrão, sem RETURNING; o id é lido em seguida pela mesma chave única
+    private static final String SQL_UPSERT_H2 =
+            "MERGE INTO carros c USING (SELECT CAST(:empresaId AS BIGINT) AS empresa_id, " +
+            "CAST(:placaNormalizada AS VARCHAR(10)) AS placa_normalizada) s " +
+            "ON (c.empresa_id = s.empresa_id AND c.placa_normalizada = s.placa_normalizada) " +
+            "WHEN MATCHED THEN UPDATE SET placa = :placa, quilometragem = :quilometragem, modelo = :modelo, " +
+            "marca = :marca, valor = :valor, observacoes = :observacoes, data_atualizacao = :agora " +
+            "WHEN NOT MATCHED THEN INSERT (id, empresa_id, placa, placa_normalizada, quilometragem, modelo, marca, " +
+            "valor, observacoes, data_cadastro, data_atualizacao) " +
+            "VALUES (:id, :empresaId, :placa, :placaNormalizada, :quilometragem, :modelo, :marca, :valor, " +
+            ":observacoes, :agora, :agora)";
+
+    private static final String SQL_ID_POR_PLACA =
+            "SELECT id FROM carros WHERE empresa_id = :empresaId AND placa_normalizada = :placaNormalizada";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SequenciaService sequenciaService;
+    private final AuditoriaService auditoriaService;
+    private final CatalogoVersaoService catalogoVersao;
+    private final AlteracaoCarroService alteracaoCarro;
+    private final IndiceBuscaCarroService indiceBusca;
+
+    public UpsertCarroService(NamedParameterJdbcTemplate jdbcTemplate,
+                              SequenciaService sequenciaService,
+                              AuditoriaService auditoriaService,
+                              CatalogoVersaoService catalogoVersao,
+                              AlteracaoCarroService alteracaoCarro,
+                              IndiceBuscaCarroService indiceBusca) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenciaService = sequenciaService;
+        this.auditoriaService = auditoriaService;
+        this.catalogoVersao = catalogoVersao;
+        this.alteracaoCarro = alteracaoCarro;
+        this.indiceBusca = indiceBusca;
+    }
+
+    /**
+     * Grava o carro com a placa informada na empresa: cria se não existir, senão atualiza
+     * quilometragem, modelo, marca, valor e observações (as fotos não são alteradas).
+     */
+    @Transactional
+    public ResultadoUpsertCarroDTO gravarPorPlaca(String placa, CarroDTO carroDTO, Long empresaId, String usuarioEmail) {
+        String placaNormalizada = Carro.normalizarPlaca(placa);
+        if (placaNormalizada == null || placaNormalizada.isEmpty() || placa.trim().length() > 10) {
+            throw new IllegalArgumentException("Placa inválida: " + placa);
+        }
+        if (carroDTO.getQuilometragem() == null || carroDTO.getQuilometragem() < 0) {
+            throw new IllegalArgumentException("Quilometragem é obrigatória e não pode ser negativa");
+        }
+        if (carroDTO.getModelo() == null || carroDTO.getModelo().isBlank()
+                || carroDTO.getMarca() == null || carroDTO.getMarca().isBlank()) {
+            throw new IllegalArgumentException("Modelo e marca são obrigatórios");
+        }
+        if (carroDTO.getValor() != null && carroDTO.getValor().signum() < 0) {
+            throw new IllegalArgumentException("Valor deve ser maior ou igual a zero");
+        }
+
+        long idReservado = sequenciaService.proximoId(SequenciaService.CARROS);
+        String placaExibicao = placa.trim().toUpperCase();
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", idReservado)
+                .addValue("empresaId", empresaId)
+                .addValue("placa", placaExibicao)
+                .addValue("placaNormalizada", placaNormalizada)
+                .addValue("quilometragem", carroDTO.getQuilometragem())
+                .addValue("modelo", carroDTO.getModelo())
+                .addValue("marca", carroDTO.getMarca())
+                .addValue("valor", carroDTO.getValor())
+                .addValue("observacoes", carroDTO.getObservacoes())
+                .addValue("agora", Timestamp.valueOf(LocalDateTime.now()));
+
+        Long id;
+        if (sequenciaService.isPostgreSQL()) {
+            id = jdbcTemplate.queryForObject(SQL_UPSERT_POSTGRESQL, parametros, Long.class);
+        } else {
+            try {
+                jdbcTemplate.update(SQL_UPSERT_H2, parametros);
+            } catch (DuplicateKeyException e) {
+                // O MERGE do H2 não é atômico: outra transação inseriu a placa entre o ON e o INSERT.
+                // Na segunda execução a linha já existe e o MERGE cai no UPDATE
+                jdbcTemplate.update(SQL_UPSERT_H2, parametros);
+            }
+            id = jdbcTemplate.queryForObject(SQL_ID_POR_PLACA, parametros, Long.class);
+        }
+        boolean criado = id != null && id == idReservado;
+
+        alteracaoCarro.registrarEmLote(AlteracaoCarroService.UPSERT, empresaId, Map.of(id, placaExibicao));
+        indiceBusca.atualizarAposCommit(empresaId, id, placaExibicao, carroDTO.getModelo(), carroDTO.getMarca());
+
+        carroDTO.setId(id);
+        carroDTO.setEmpresaId(empresaId);
+        carroDTO.setPlaca(placaExibicao);
+        auditoriaService.registrarAcao(criado ? "CREATE" : "UPDATE", "CARRO", id, usuarioEmail, empresaId,
+                null, carroDTO, criado ? "Carro criado via API (upsert por placa)" : "Carro atualizado via API (upsert por placa)");
+        catalogoVersao.incrementar(empresaId);
+
+        return new ResultadoUpsertCarroDTO(id, placaExibicao, criado);
+    }
+}
@@ -24,7 +24,6 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.UUID;
@@ -37,7 +36,7 @@ public class UsuarioService {
     private final EmpresaRepository empresaRepository;
     private final ApiKeyRepository apiKeyRepository;
     private final PasswordEncoder passwordEncoder;
-    private final String uploadDir = "uploads/usuarios";
+    private final DiretorioFragmentado diretorioFotos = DiretorioFragmentado.FOTOS_USUARIOS;
     
     public UsuarioService(UsuarioRepository usuarioRepository,
                           EmpresaRepository empresaRepository,
@@ -52,10 +51,7 @@ public class UsuarioService {
     
     private void createUploadDirectory() {
         try {
-            Path path = Paths.get(uploadDir);
-            if (!Files.exists(path)) {
-                Files.createDirectories(path);
-            }
+            Files.createDirectories(diretorioFotos.getBase());
         } catch (IOException e) {
             System.err.println("Erro ao criar diretório de upload de usuários: " + e.getMessage());
         }
@@ -181,7 +177,7 @@ public class UsuarioService {
                     ? foto.getOriginalFilename().substring(foto.getOriginalFilename().lastIndexOf("."))
                     : ".jpg";
             String nomeArquivo = email.replace("@", "_").replace(".", "_") + "_" + UUID.randomUUID().toString() + extensao;
-            Path caminhoArquivo = Paths.get(uploadDir, nomeArquivo);
+            Path caminhoArquivo = diretorioFotos.caminhoParaGravar(nomeArquivo);
             
             Files.copy(foto.getInputStream(), caminhoArquivo, StandardCopyOption.REPLACE_EXISTING);
             
@@ -195,8 +191,11 @@ public class UsuarioService {
         try {
             if (fotoUrl != null && fotoUrl.startsWith("/api/usuarios/fotos/")) {
                 String nomeArquivo = fotoUrl.substring(fotoUrl.lastIndexOf("/") + 1);
-                Path caminhoArquivo = Paths.get(uploadDir, nomeArquivo);
-                Files.deleteIfExists(caminhoArquivo);
+                if (DiretorioFragmentado.nomeValido(nomeArquivo)) {
+                    // Local antigo primeiro: se a migração mover o arquivo no meio, a segunda remoção o encontra
+                    Files.deleteIfExists(diretorioFotos.caminhoLegado(nomeArquivo));
+                    Files.deleteIfExists(diretorioFotos.caminho(nomeArquivo));
+                }
             }
         } catch (IOException e) {
             System.err.println("Erro ao deletar foto do usuário: " + fotoUrl);
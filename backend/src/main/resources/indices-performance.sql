@@ -10,6 +10,13 @@ CREATE INDEX IF NOT EXISTS idx_carros_data_cadastro ON carros(data_cadastro DESC
 CREATE INDEX IF NOT EXISTS idx_carros_quilometragem ON carros(quilometragem);
 CREATE INDEX IF NOT EXISTS idx_carros_valor ON carros(valor);
 CREATE INDEX IF NOT EXISTS idx_carros_empresa_placa ON carros(empresa_id, UPPER(placa));
+-- Paginação por cursor (keyset) na ordenação padrão: WHERE empresa_id = ? AND (data_cadastro, id) < (?, ?)
+-- Índice parcial: só carros ativos (todas as leituras filtram data_exclusao IS NULL)
+DROP INDEX IF EXISTS idx_carros_empresa_data_id;
+CREATE INDEX IF NOT EXISTS idx_carros_empresa_data_id_ativos ON carros(empresa_id, data_cadastro DESC, id DESC)
+    WHERE data_exclusao IS NULL;
+-- Purga dos carros excluídos logicamente: indexa só as linhas excluídas
+CREATE INDEX IF NOT EXISTS idx_carros_data_exclusao ON carros(data_exclusao) WHERE data_exclusao IS NOT NULL;
 
 -- Índices para a tabela usuarios
 CREATE INDEX IF NOT EXISTS idx_usuarios_email ON usuarios(email);
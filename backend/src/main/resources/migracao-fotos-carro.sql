@@ -0,0 +1,46 @@
+-- Migração: fotos dos carros em uma entidade própria (fotos_carro) em vez da coleção carro_fotos
+-- A tabela antiga guardava só (carro_id, foto_url), sem id nem ordem: qualquer alteração
+-- nas fotos de um carro apagava e regravava todas as linhas do carro. Em fotos_carro cada
+-- foto tem id, ordem de exibição, tamanho, dimensões e hash do conteúdo.
+--
+-- O Hibernate (ddl-auto=update) cria fotos_carro e a sequência, e o MigracaoFotoCarroService
+-- copia as linhas e remove carro_fotos na inicialização; este script faz o mesmo e pode
+-- ser executado antes do deploy no PostgreSQL em produção.
+--
+-- IMPORTANTE: parar as instâncias antigas antes - elas continuariam gravando em carro_fotos.
+
+BEGIN;
+
+-- 1. Tabela e sequência (mesmo incremento do allocationSize)
+CREATE SEQUENCE IF NOT EXISTS fotos_carro_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS fotos_carro (
+    id BIGINT PRIMARY KEY,
+    carro_id BIGINT NOT NULL REFERENCES carros(id),
+    url VARCHAR(500) NOT NULL,
+    ordem INTEGER NOT NULL,
+    tamanho_bytes BIGINT,
+    largura INTEGER,
+    altura INTEGER,
+    hash_conteudo VARCHAR(64),
+    data_cadastro TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_fotos_carro_carro_ordem ON fotos_carro (carro_id, ordem);
+
+-- 2. Copiar as fotos; a ordem de cada carro segue a ordem física das linhas antigas
+INSERT INTO fotos_carro (id, carro_id, url, ordem, data_cadastro)
+SELECT ROW_NUMBER() OVER (ORDER BY carro_id, ctid),
+       carro_id,
+       foto_url,
+       ROW_NUMBER() OVER (PARTITION BY carro_id ORDER BY ctid) - 1,
+       NOW()
+FROM carro_fotos;
+
+-- 3. Posicionar a sequência após o maior id copiado
+SELECT setval('fotos_carro_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM fotos_carro;
+
+-- 4. Remover a tabela antiga
+DROP TABLE carro_fotos;
+
+COMMIT;
@@ -0,0 +1,32 @@
+-- Migração: coluna placa_normalizada (maiúsculas, só letras e números) em carros
+-- O Hibernate (ddl-auto=update) cria a coluna, o índice e a restrição única;
+-- este script pode ser executado antes do deploy no PostgreSQL em produção
+
+ALTER TABLE carros ADD COLUMN IF NOT EXISTS placa_normalizada VARCHAR(10);
+-- Carros excluídos logicamente ficam com placa_normalizada NULL (a placa pode ser reutilizada)
+-- e não são preenchidos; a coluna é criada aqui caso o script rode antes da exclusão lógica
+ALTER TABLE carros ADD COLUMN IF NOT EXISTS data_exclusao TIMESTAMP;
+
+-- Mesma normalização de Carro.normalizarPlaca: remove tudo que não for letra ou número
+-- (o 'g' faz o REGEXP_REPLACE do PostgreSQL trocar todas as ocorrências, não só a primeira)
+
+-- 1. Localizar placas que passam a ser duplicadas na mesma empresa (ex: ABC-1234, ABC.1234 e ABC1234)
+--    Estas precisam ser corrigidas manualmente antes de criar a restrição única
+SELECT empresa_id, REGEXP_REPLACE(UPPER(placa), '[^A-Z0-9]', '', 'g') AS placa_normalizada, COUNT(*) AS quantidade
+FROM carros
+WHERE data_exclusao IS NULL
+GROUP BY empresa_id, REGEXP_REPLACE(UPPER(placa), '[^A-Z0-9]', '', 'g')
+HAVING COUNT(*) > 1;
+
+-- 2. Preencher a coluna nos registros existentes
+UPDATE carros
+SET placa_normalizada = REGEXP_REPLACE(UPPER(placa), '[^A-Z0-9]', '', 'g')
+WHERE placa_normalizada IS NULL
+  AND data_exclusao IS NULL;
+
+-- 3. Índice único por empresa e índice para a busca entre empresas (API pública)
+ALTER TABLE carros DROP CONSTRAINT IF EXISTS uk_carros_empresa_placa_normalizada;
+ALTER TABLE carros ADD CONSTRAINT uk_carros_empresa_placa_normalizada UNIQUE (empresa_id, placa_normalizada);
+CREATE INDEX IF NOT EXISTS idx_carros_placa_normalizada ON carros(placa_normalizada);
+
+ANALYZE carros;
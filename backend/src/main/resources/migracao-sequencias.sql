@@ -0,0 +1,37 @@
+-- Migração: ids por sequência (allocationSize=50) em vez de IDENTITY
+-- Com IDENTITY o Hibernate precisa executar cada INSERT na hora para ler o id gerado,
+-- o que impede o batch de INSERTs. As entidades passam a usar sequências com
+-- incremento 50 (o Hibernate reserva blocos de 50 ids por ida ao banco).
+--
+-- O Hibernate (ddl-auto=update) cria as sequências, e o SequenciaService realinha
+-- cada sequência ao MAX(id) da tabela na inicialização; este script pode ser
+-- executado antes do deploy no PostgreSQL em produção.
+--
+-- IMPORTANTE: não misturar instâncias antigas (IDENTITY) e novas (sequência) no
+-- mesmo banco durante um deploy gradual - parar as instâncias antigas antes.
+
+-- 1. Criar as sequências com o mesmo incremento do allocationSize
+CREATE SEQUENCE IF NOT EXISTS empresas_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS usuarios_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS carros_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS auditoria_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS api_keys_seq INCREMENT BY 50;
+
+-- 2. Posicionar cada sequência após o maior id existente
+SELECT setval('empresas_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM empresas;
+SELECT setval('usuarios_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM usuarios;
+SELECT setval('carros_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM carros;
+SELECT setval('auditoria_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM auditoria;
+SELECT setval('api_keys_seq', GREATEST(COALESCE(MAX(id), 0), 1)) FROM api_keys;
+
+-- 3. (Opcional, depois que todas as instâncias estiverem na versão nova)
+--    Remover o default IDENTITY das colunas id, que deixa de ser usado
+-- ALTER TABLE empresas ALTER COLUMN id DROP IDENTITY IF EXISTS;
+-- ALTER TABLE usuarios ALTER COLUMN id DROP IDENTITY IF EXISTS;
+-- ALTER TABLE carros ALTER COLUMN id DROP IDENTITY IF EXISTS;
+-- ALTER TABLE auditoria ALTER COLUMN id DROP IDENTITY IF EXISTS;
+-- ALTER TABLE api_keys ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+-- carro_alteracoes e reset_tokens continuam com IDENTITY: o feed de alterações
+-- depende de ids atribuídos na ordem de inserção (que o bloqueio de
+-- carro_alteracoes_controle torna também a ordem de commit)
@@ -0,0 +1,50 @@
+package com.bancoai;
+
+import org.hibernate.SessionEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conta os comandos preparados e os batches JDBC executados pelo Hibernate na thread que está
+ * medindo. As estatísticas do Hibernate são globais e não contam batches: somariam também o que
+ * roda em segundo plano (ex: o despachante do outbox, acordado pelo commit da operação medida).
+ * Registrado em todas as sessões por hibernate.session.events.auto (ver TesteComContagemSql).
+ */
+public class ContadorJdbc implements SessionEventListener {
+
+    private static final AtomicLong COMANDOS = new AtomicLong();
+    private static final AtomicLong BATCHES = new AtomicLong();
+    private static volatile Thread medindo;
+
+    public static void iniciar() {
+        COMANDOS.set(0);
+        BATCHES.set(0);
+        medindo = Thread.currentThread();
+    }
+
+    public static void encerrar() {
+        medindo = null;
+    }
+
+    public static long comandos() {
+        return COMANDOS.get();
+    }
+
+    public static long batches() {
+        return BATCHES.get();
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        if (Thread.currentThread() == medindo) {
+            COMANDOS.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        if (Thread.currentThread() == medindo) {
+            BATCHES.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bancoai;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Base dos testes que conferem quantos comandos SQL uma operação custa no H2 em memória: os
+ * comandos e batches da thread que executa a operação (ContadorJdbc) e as estatísticas do
+ * Hibernate para as contagens por entidade. Os agendamentos de segundo plano ficam com intervalos longos para
+ * não somarem comandos durante a medição.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.session.events.auto=com.bancoai.ContadorJdbc",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "app.email.enabled=false",
+        "app.outbox.intervalo-ms=3600000",
+        "app.busca.indice.sincronizacao-ms=3600000",
+        "app.arquivos.fragmentacao.migrar-na-inicializacao=false"
+})
+public abstract class TesteComContagemSql {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    protected Statistics estatisticas() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Comandos preparados pelo Hibernate durante a execução da operação (inclusive no commit).
+     */
+    protected long contarStatements(Runnable operacao) {
+        estatisticas().clear();
+        ContadorJdbc.iniciar();
+        try {
+            operacao.run();
+        } finally {
+            ContadorJdbc.encerrar();
+        }
+        return ContadorJdbc.comandos();
+    }
+
+    /**
+     * Batches JDBC executados na última operação medida por {@link #contarStatements(Runnable)}.
+     */
+    protected long batchesDaUltimaMedicao() {
+        return ContadorJdbc.batches();
+    }
+}
@@ -0,0 +1,132 @@
+package com.bancoai.repository;
+
+import com.bancoai.TesteComContagemSql;
+import com.bancoai.dto.CarroDTO;
+import com.bancoai.model.ApiKey;
+import com.bancoai.model.Auditoria;
+import com.bancoai.model.Carro;
+import com.bancoai.model.CarroFoto;
+import com.bancoai.model.Empresa;
+import com.bancoai.model.EventoOutbox;
+import com.bancoai.model.Tarefa;
+import com.bancoai.model.Usuario;
+import com.bancoai.service.CarroService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.MappingMetamodel;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cadastro de um carro com várias fotos pelo CarroService: carro, fotos, auditoria e outbox têm
+ * ids das sequências em memória (allocationSize=50), então os INSERTs saem em batch no flush.
+ * Uma entidade com IDENTITY (ou um flush antecipado de uma delas) faria o Hibernate gravar linha
+ * a linha, e o número de comandos passaria a crescer com o de fotos.
+ */
+class GravacaoCarroEmBatchTest extends TesteComContagemSql {
+
+    private static final int POUCAS_FOTOS = 2;
+    private static final int FOTOS = 20;
+
+    @Autowired
+    private CarroService carroService;
+
+    @Autowired
+    private EmpresaRepository empresaRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cadastroDeCarroComVariasFotosEhGravadoEmBatch() throws IOException {
+        Empresa empresa = new Empresa();
+        empresa.setNome("Empresa " + UUID.randomUUID());
+        empresa = empresaRepository.save(empresa);
+        Usuario usuario = criarUsuario(empresa);
+        byte[] imagem = imagemJpeg();
+        Long empresaId = empresa.getId();
+        // Cadastros só para carregar os blocos das sequências
+        for (int i = 0; i < 2; i++) {
+            carroService.criarCarro(novoCarro(), fotos(imagem, 1), empresaId, usuario.getEmail());
+        }
+
+        long comPoucas = contarStatements(() ->
+                carroService.criarCarro(novoCarro(), fotos(imagem, POUCAS_FOTOS), empresaId, usuario.getEmail()));
+        long batchesComPoucas = batchesDaUltimaMedicao();
+
+        long comandos = contarStatements(() ->
+                carroService.criarCarro(novoCarro(), fotos(imagem, FOTOS), empresaId, usuario.getEmail()));
+
+        Statistics estatisticas = estatisticas();
+        assertThat(estatisticas.getEntityStatistics(Carro.class.getName()).getInsertCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityStatistics(CarroFoto.class.getName()).getInsertCount()).isEqualTo(FOTOS);
+        assertThat(estatisticas.getEntityStatistics(Auditoria.class.getName()).getInsertCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityStatistics(EventoOutbox.class.getName()).getInsertCount()).isEqualTo(1);
+        // Leituras (empresa, placa e usuário), versão do catálogo, um INSERT em batch por tabela (carro,
+        // fotos, auditoria, outbox) e o registro do log de alterações no commit, com qualquer número de fotos
+        assertThat(comandos).isEqualTo(comPoucas).isEqualTo(10);
+        assertThat(batchesDaUltimaMedicao()).isEqualTo(batchesComPoucas).isEqualTo(4);
+    }
+
+    @Test
+    void entidadesGravadasEmLoteNaoUsamIdentity() {
+        MappingMetamodel metamodelo = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getMappingMetamodel();
+        for (Class<?> entidade : List.of(Carro.class, CarroFoto.class, Auditoria.class, Empresa.class,
+                Usuario.class, ApiKey.class, EventoOutbox.class, Tarefa.class)) {
+            assertThat(metamodelo.getEntityDescriptor(entidade).getGenerator().generatedOnExecution())
+                    .as("id de %s gerado no INSERT (IDENTITY) desliga o batch", entidade.getSimpleName())
+                    .isFalse();
+        }
+    }
+
+    private Usuario criarUsuario(Empresa empresa) {
+        Usuario usuario = new Usuario();
+        usuario.setEmail(UUID.randomUUID() + "@teste.com");
+        usuario.setSenha("senha");
+        usuario.setNome("Teste");
+        usuario.setEmpresa(empresa);
+        // Com a notificação ativada o cadastro também grava o evento do outbox
+        usuario.setEmailNotificacoesAtivadas(true);
+        return usuarioRepository.save(usuario);
+    }
+
+    private static CarroDTO novoCarro() {
+        CarroDTO carro = new CarroDTO();
+        carro.setPlaca(UUID.randomUUID().toString().substring(0, 7).toUpperCase());
+        carro.setQuilometragem(50000);
+        carro.setModelo("Gol");
+        carro.setMarca("VW");
+        return carro;
+    }
+
+    // A mesma imagem em todas as fotos: um único arquivo em disco, uma linha de foto por envio
+    private static List<MultipartFile> fotos(byte[] imagem, int quantidade) {
+        List<MultipartFile> fotos = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            fotos.add(new MockMultipartFile("fotos", "foto" + i + ".jpg", "image/jpeg", imagem));
+        }
+        return fotos;
+    }
+
+    private static byte[] imagemJpeg() throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "jpg", saida);
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,172 @@
+package com.bancoai.service;
+
+import com.bancoai.TesteComContagemSql;
+import com.bancoai.dto.BuscaCarroDTO;
+import com.bancoai.dto.CarroDTO;
+import com.bancoai.model.Carro;
+import com.bancoai.model.CarroFoto;
+import com.bancoai.model.Empresa;
+import com.bancoai.repository.CarroRepository;
+import com.bancoai.repository.EmpresaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Leituras de carros por projeção: o número de comandos por página não pode depender de quantos
+ * carros (e fotos) a página tem, senão o padrão 1+N (fotos carregadas carro a carro) voltou.
+ */
+class CarroServiceConsultasTest extends TesteComContagemSql {
+
+    private static final int FOTOS_POR_CARRO = 3;
+
+    @Autowired
+    private CarroService carroService;
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private EmpresaRepository empresaRepository;
+
+    @Test
+    void buscaPaginadaCustaOMesmoNumeroDeComandosParaQualquerTamanhoDePagina() {
+        Empresa empresa = criarEmpresa();
+        criarCarros(empresa, 30);
+
+        List<Long> comandos = new ArrayList<>();
+        for (int tamanho : new int[]{1, 5, 10, 25}) {
+            BuscaCarroDTO busca = new BuscaCarroDTO();
+            busca.setTamanho(tamanho);
+            comandos.add(contarStatements(() -> {
+                Page<CarroDTO> pagina = carroService.buscarComFiltros(busca, empresa.getId());
+                assertThat(pagina.getContent()).hasSize(tamanho)
+                        .allSatisfy(carro -> assertThat(carro.getFotos()).hasSize(FOTOS_POR_CARRO));
+            }));
+        }
+
+        // Versão do catálogo (chave do cache), linhas da página, contagem e fotos da página
+        assertThat(comandos).containsOnly(comandos.get(0));
+        assertThat(comandos.get(0)).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void listagemDaEmpresaNaoCresceComONumeroDeCarros() {
+        Empresa empresa = criarEmpresa();
+        criarCarros(empresa, 5);
+        long comPoucos = contarStatements(() -> assertThat(carroService.listarTodos(empresa.getId())).hasSize(5));
+
+        criarCarros(empresa, 20);
+        long comMais = contarStatements(() -> assertThat(carroService.listarTodos(empresa.getId())).hasSize(25));
+
+        assertThat(comMais).isEqualTo(comPoucos).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void listagemPublicaNaoCresceComONumeroDeCarros() {
+        Empresa empresa = criarEmpresa();
+        criarCarros(empresa, 5);
+        long comPoucos = contarStatements(carroService::listarTodosPublico);
+
+        criarCarros(empresa, 20);
+        long comMais = contarStatements(carroService::listarTodosPublico);
+
+        assertThat(comMais).isEqualTo(comPoucos).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void buscaPorIdCarregaCarroEFotosEmDoisComandos() {
+        Empresa empresa = criarEmpresa();
+        Carro carro = criarCarros(empresa, 1).get(0);
+
+        long comandos = contarStatements(() -> {
+            CarroDTO dto = carroService.buscarPorId(carro.getId(), empresa.getId());
+            assertThat(dto.getFotos()).hasSize(FOTOS_POR_CARRO);
+        });
+
+        assertThat(comandos).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void buscaPorPlacaCarregaCarroEFotosEmDoisComandos() {
+        Empresa empresa = criarEmpresa();
+        Carro carro = criarCarros(empresa, 1).get(0);
+        
+        long daEmpresa = contarStatements(() ->
+                assertThat(carroService.buscarPorPlaca(carro.getPlaca(), empresa.getId()).getFotos()).hasSize(FOTOS_POR_CARRO));
+        long publica = contarStatements(() ->
+                assertThat(carroService.buscarPorPlacaPublico(carro.getPlaca()).getFotos()).hasSize(FOTOS_POR_CARRO));
+        
+        assertThat(daEmpresa).isLessThanOrEqualTo(2);
+        assertThat(publica).isLessThanOrEqualTo(2);
+    }
+    
+    @Test
+    void buscaEmLoteDePlacasNaoCresceComONumeroDePlacas() {
+        List<String> placas = new ArrayList<>();
+        for (Carro carro : criarCarros(criarEmpresa(), 33)) {
+            placas.add(carro.getPlaca());
+        }
+        long comPoucas = contarStatements(() ->
+                assertThat(carroService.buscarPorPlacasPublico(placas.subList(0, 3))).hasSize(3));
+        long comMais = contarStatements(() ->
+                assertThat(carroService.buscarPorPlacasPublico(placas)).hasSize(33)
+                        .allSatisfy((placa, carro) -> assertThat(carro.getFotos()).hasSize(FOTOS_POR_CARRO)));
+        
+        // Carros das placas e fotos desses carros
+        assertThat(comMais).isEqualTo(comPoucas).isLessThanOrEqualTo(2);
+    }
+    
+    @Test
+    void filtroDeTextoTrataCuringasComoLiterais() {
+        Empresa empresa = criarEmpresa();
+        List<Carro> carros = criarCarros(empresa, 3);
+        carros.get(0).setModelo("Gol_1.6");
+        carros.get(1).setModelo("GolX1.6");
+        carros.get(2).setModelo("Gol 100%");
+        carroRepository.saveAll(carros);
+        
+        BuscaCarroDTO sublinhado = new BuscaCarroDTO();
+        sublinhado.setModelo("gol_1");
+        assertThat(carroService.buscarComFiltros(sublinhado, empresa.getId()).getContent())
+                .extracting(CarroDTO::getModelo).containsExactly("Gol_1.6");
+        
+        BuscaCarroDTO porcentagem = new BuscaCarroDTO();
+        porcentagem.setModelo("0%");
+        assertThat(carroService.buscarComFiltros(porcentagem, empresa.getId()).getContent())
+                .extracting(CarroDTO::getModelo).containsExactly("Gol 100%");
+    }
+    
+    private Empresa criarEmpresa() {
+        Empresa empresa = new Empresa();
+        empresa.setNome("Empresa " + UUID.randomUUID());
+        return empresaRepository.save(empresa);
+    }
+
+    private List<Carro> criarCarros(Empresa empresa, int quantidade) {
+        List<Carro> carros = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            Carro carro = new Carro();
+            carro.setEmpresa(empresa);
+            carro.setPlaca(UUID.randomUUID().toString().substring(0, 7).toUpperCase());
+            carro.setQuilometragem(1000 * i);
+            carro.setModelo("Gol");
+            carro.setMarca("VW");
+            for (int ordem = 0; ordem < FOTOS_POR_CARRO; ordem++) {
+                CarroFoto foto = new CarroFoto();
+                foto.setCarro(carro);
+                foto.setUrl("/api/carros/fotos/" + UUID.randomUUID() + ".jpg");
+                foto.setOrdem(ordem);
+                carro.getFotos().add(foto);
+            }
+            carros.add(carro);
+        }
+        return carroRepository.saveAll(carros);
+    }
+}
@@ -38,8 +38,13 @@ function CarroCard({ carro, onEdit, onDelete, canEdit = true, canDelete = true }
       <div className="h-48 bg-gray-800 flex items-center justify-center overflow-hidden relative group">
         {fotoExibida ? (
           <>
+            {/* Variantes reduzidas geradas no upload: o navegador escolhe pela largura do card */}
             <img 
-              src={fotoExibida} 
+              src={`${fotoExibida}?w=320`}
+              srcSet={`${fotoExibida}?w=320 320w, ${fotoExibida}?w=960 960w`}
+              sizes="(min-width: 1024px) 33vw, (min-width: 768px) 50vw, 100vw"
+              loading="lazy"
+              decoding="async"
               alt={`${carro.marca} ${carro.modelo} - Foto ${fotoAtual + 1}`}
               className="w-full h-full object-cover transition-opacity duration-300"
               onError={handleImageError}